@@ -44,6 +44,10 @@ public class Constant {
 	 * 量词文件的名称,不需要路径,只需要名称.
 	 */
 	public final static String quantifier_file_name = "quantifiers.dict";
+	/**
+	 * 编译后的词典文件的名称,保存在词典目录中,不会当作词典源文件加载.
+	 */
+	public final static String compiled_dict_file_name = "yg.compiled";
 	/**
 	 * 默认的数词正则.
 	 */
@@ -56,10 +60,6 @@ public class Constant {
 	public final static String important_type_npc = "npc";
 	public final static String important_type_npu = "npu";
 	public final static String important_type_npb = "npb";
-	/**
-	 * 缓存词典的map的初始化容量.
-	 */
-	public final static int initialCapacity = 60000000;
 	/**
 	 * token类型是英文字母和数字
 	 */
@@ -0,0 +1,197 @@
+package com.wuda.analysis;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 双数组结构的前缀树.状态就是数组的下标,所有状态都小于{@link #getStateLimit()},并且每个状态可以直接找到父节点,
+ * 因此可以在构建完成后为它编译{@link AhoCorasick}自动机.
+ *
+ * @author wuda
+ *
+ */
+public abstract class AbstractDoubleArrayTrie extends Trie {
+
+	private static final Logger logger = LoggerFactory.getLogger(AbstractDoubleArrayTrie.class);
+
+	/**
+	 * 没有指定{@link #setLoadScheduler(DictLoadScheduler)}时使用的安排,比如离线编译时创建的前缀树.
+	 */
+	private static final DictLoadScheduler defaultLoadScheduler = new DictLoadScheduler();
+
+	/**
+	 * 第一次使用时才在后台编译.
+	 */
+	private volatile AhoCorasick automaton = null;
+
+	/**
+	 * 是否已经开始编译自动机.
+	 */
+	private final AtomicBoolean automatonStarted = new AtomicBoolean(false);
+
+	/**
+	 * 在它的{@link DictLoadScheduler#getParallelPool()}中编译自动机,null-使用{@link #defaultLoadScheduler}.
+	 */
+	private volatile DictLoadScheduler loadScheduler = null;
+
+	/**
+	 * 第一次使用时才构建.
+	 */
+	private volatile FirstCharFilter firstCharFilter = null;
+
+	/**
+	 * 状态的上限,所有状态都小于这个值.
+	 *
+	 * @return 状态的上限
+	 */
+	public abstract int getStateLimit();
+
+	/**
+	 * 获取父节点的状态.
+	 *
+	 * @param state
+	 *            状态
+	 * @return 父节点的状态,{@link #NO_STATE}-如果是根节点或者这个位置没有被使用
+	 */
+	public abstract int getParentState(int state);
+
+	/**
+	 * 获取从父节点到这个节点的字符.
+	 *
+	 * @param state
+	 *            状态,必须有父节点
+	 * @return 字符
+	 */
+	public abstract char getStateChar(int state);
+
+	/**
+	 * 获取这个词典的Aho-Corasick自动机.第一次调用时在{@link DictLoadScheduler#getParallelPool()}中编译,编译完成之前返回null,
+	 * 调用者逐个位置查找,不需要等待.编译失败时记录日志,下一次调用时重新编译.不枚举所有单词时不会调用,自动机不占用内存,
+	 * 内存映射的词典仍然可以立即使用.
+	 */
+	@Override
+	public AhoCorasick getAutomaton() {
+		AhoCorasick current = automaton;
+		if (current == null && automatonStarted.compareAndSet(false, true)) {
+			DictLoadScheduler scheduler = loadScheduler;
+			if (scheduler == null) {
+				scheduler = defaultLoadScheduler;
+			}
+			scheduler.getParallelPool().execute(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						automaton = AhoCorasick.build(AbstractDoubleArrayTrie.this);
+					} catch (RuntimeException | OutOfMemoryError e) {
+						logger.warn(e.getMessage() + "\t编译Aho-Corasick自动机错误", e);
+						automatonStarted.set(false);
+					}
+				}
+			});
+		}
+		return current;
+	}
+
+	/**
+	 * 设置编译自动机使用的线程池,发布到{@link DirectoryDictionary}时设置为它的安排.
+	 *
+	 * @param loadScheduler
+	 *            加载词典文件的安排
+	 */
+	void setLoadScheduler(DictLoadScheduler loadScheduler) {
+		this.loadScheduler = loadScheduler;
+	}
+
+	/**
+	 * 从{@link #getFirstCharFilter()}得到,第一次调用时构建过滤器.
+	 */
+	@Override
+	public int getMaxTokenLength() {
+		return getFirstCharFilter().getMaxLength();
+	}
+
+	/**
+	 * 获取这个词典中单词的第一个字符的过滤器,第一次调用时构建.
+	 */
+	@Override
+	public FirstCharFilter getFirstCharFilter() {
+		FirstCharFilter current = firstCharFilter;
+		if (current == null) {
+			synchronized (this) {
+				current = firstCharFilter;
+				if (current == null) {
+					current = FirstCharFilter.build(this);
+					firstCharFilter = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * 按状态顺序统计,通过父节点的链接得到深度和扇出,不需要像{@link Trie#getStats()}那样调用{@link #getChildChars(int)}
+	 * 检查所有可能的位置.需要一个和{@link #getStateLimit()}一样长的临时数组.
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder();
+		int root = getRootState();
+		int limit = getStateLimit();
+		int[] fanouts = new int[limit];
+		for (int state = 0; state < limit; state++) {
+			int parent = state == root ? NO_STATE : getParentState(state);
+			if (parent != NO_STATE) {
+				fanouts[parent]++;
+			}
+		}
+		for (int state = 0; state < limit; state++) {
+			if (state != root && getParentState(state) == NO_STATE) {// 没有被使用的位置
+				continue;
+			}
+			int depth = 0;
+			for (int s = state; s != root; s = getParentState(s)) {
+				depth++;
+			}
+			builder.addNode(depth, fanouts[state]);
+			if (state != root && isTokenEnd(state)) {
+				builder.addToken(getTypes(state));
+			}
+		}
+		return builder.build(estimateBytes(), getOffHeapBytes());
+	}
+
+	/**
+	 * 按状态顺序遍历,通过父节点的链接得到单词的字符,不需要调用{@link #getChildChars(int)}.
+	 */
+	@Override
+	public void forEachToken(TokenVisitor visitor) {
+		int root = getRootState();
+		int limit = getStateLimit();
+		StringBuilder token = new StringBuilder();
+		for (int state = 0; state < limit; state++) {
+			if (state == root || getParentState(state) == NO_STATE || !isTokenEnd(state)) {
+				continue;
+			}
+			token.setLength(0);
+			for (int s = state; s != root; s = getParentState(s)) {
+				token.append(getStateChar(s));
+			}
+			visitor.visit(token.reverse().toString(), getTypes(state));
+		}
+	}
+
+	/**
+	 * 已经编译的自动机和过滤器占用的内存.
+	 *
+	 * @return 字节数
+	 */
+	protected long getCacheBytes() {
+		AhoCorasick currentAutomaton = automaton;
+		FirstCharFilter currentFilter = firstCharFilter;
+		return (currentAutomaton == null ? 0 : currentAutomaton.estimateBytes())
+				+ (currentFilter == null ? 0 : currentFilter.estimateBytes());
+	}
+}
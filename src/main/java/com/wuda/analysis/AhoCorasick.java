@@ -0,0 +1,193 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+
+/**
+ * 基于{@link AbstractDoubleArrayTrie}的Aho-Corasick自动机.在前缀树上增加失败链接和输出链接,扫描一遍文本就可以找到所有的单词,
+ * 不需要从每个位置开始重新查找.
+ *
+ * @author wuda
+ *
+ */
+public final class AhoCorasick {
+
+	private final AbstractDoubleArrayTrie trie;
+
+	/**
+	 * 失败链接,即当前节点所表示的字符串的最长真后缀所在的节点.
+	 */
+	private final int[] fail;
+
+	/**
+	 * 输出链接,即沿着失败链接找到的第一个token(单词)结尾的节点,{@link Trie#NO_STATE}-如果没有.
+	 */
+	private final int[] output;
+
+	/**
+	 * 节点的深度,即从根节点到当前节点的字符数量.
+	 */
+	private final int[] depth;
+
+	/**
+	 * 单词的第一个字符,在根节点时跳过不可能是单词开头的字符.
+	 */
+	private final FirstCharFilter firstCharFilter;
+
+	private AhoCorasick(AbstractDoubleArrayTrie trie, int[] fail, int[] output, int[] depth) {
+		this.trie = trie;
+		this.fail = fail;
+		this.output = output;
+		this.depth = depth;
+		this.firstCharFilter = trie.getFirstCharFilter();
+	}
+
+	/**
+	 * 估算占用的内存,三个int数组.过滤器属于前缀树,不包括在内.
+	 *
+	 * @return 字节数
+	 */
+	long estimateBytes() {
+		return 12L * fail.length;
+	}
+
+	/**
+	 * 为前缀树编译自动机.
+	 *
+	 * @param trie
+	 *            前缀树
+	 * @return 自动机
+	 */
+	static AhoCorasick build(AbstractDoubleArrayTrie trie) {
+		int limit = trie.getStateLimit();
+		int root = trie.getRootState();
+		/**
+		 * 按父节点分组所有的子节点,用于广度优先遍历.
+		 */
+		int[] childStart = new int[limit + 1];
+		for (int state = 0; state < limit; state++) {
+			int parent = trie.getParentState(state);
+			if (parent != Trie.NO_STATE) {
+				childStart[parent + 1]++;
+			}
+		}
+		for (int i = 0; i < limit; i++) {
+			childStart[i + 1] += childStart[i];
+		}
+		int[] children = new int[childStart[limit]];
+		int[] filled = Arrays.copyOf(childStart, limit);
+		for (int state = 0; state < limit; state++) {
+			int parent = trie.getParentState(state);
+			if (parent != Trie.NO_STATE) {
+				children[filled[parent]++] = state;
+			}
+		}
+		filled = null;
+
+		int[] fail = new int[limit];
+		int[] output = new int[limit];
+		int[] depth = new int[limit];
+		Arrays.fill(output, Trie.NO_STATE);
+		fail[root] = root;
+		int[] queue = new int[children.length + 1];
+		int head = 0, tail = 0;
+		queue[tail++] = root;
+		while (head < tail) {
+			int parent = queue[head++];
+			for (int i = childStart[parent]; i < childStart[parent + 1]; i++) {
+				int state = children[i];
+				depth[state] = depth[parent] + 1;
+				if (parent == root) {
+					fail[state] = root;
+				} else {
+					char c = trie.getStateChar(state);
+					int f = fail[parent];
+					int target;
+					while ((target = trie.find(f, c)) == Trie.NO_STATE && f != root) {
+						f = fail[f];
+					}
+					fail[state] = target == Trie.NO_STATE ? root : target;
+				}
+				int suffix = fail[state];
+				output[state] = trie.isTokenEnd(suffix) ? suffix : output[suffix];
+				queue[tail++] = state;
+			}
+		}
+		return new AhoCorasick(trie, fail, output, depth);
+	}
+
+	/**
+	 * 查找input中所有的单词.按结束位置从小到大返回,结束位置相同时按开始位置从小到大返回.
+	 *
+	 * @param input
+	 *            输入
+	 * @param handler
+	 *            接收找到的单词
+	 */
+	public void findAll(char[] input, MatchHandler handler) {
+		findAll(input, 0, input.length, handler);
+	}
+
+	/**
+	 * 找出输入的一部分中的所有单词,偏移是在input中的位置.
+	 *
+	 * @param input
+	 *            输入
+	 * @param offset
+	 *            开始位置
+	 * @param length
+	 *            字符的数量
+	 * @param handler
+	 *            接收找到的单词
+	 */
+	public void findAll(char[] input, int offset, int length, MatchHandler handler) {
+		AbstractDoubleArrayTrie trie = this.trie;
+		FirstCharFilter firstCharFilter = this.firstCharFilter;
+		int root = trie.getRootState();
+		int state = root;
+		int limit = offset + length;
+		for (int i = offset; i < limit; i++) {
+			char c = input[i];
+			if (state == root && !firstCharFilter.canStart(c)) {// 仍然在根节点,不需要查找
+				continue;
+			}
+			int next;
+			while ((next = trie.find(state, c)) == Trie.NO_STATE && state != root) {
+				state = fail[state];
+			}
+			state = next == Trie.NO_STATE ? root : next;
+			int match = trie.isTokenEnd(state) ? state : output[state];
+			while (match != Trie.NO_STATE) {
+				handler.onMatch(i - depth[match] + 1, i, match);
+				match = output[match];
+			}
+		}
+	}
+
+	/**
+	 * @return 自动机所在的前缀树
+	 */
+	public AbstractDoubleArrayTrie getTrie() {
+		return trie;
+	}
+
+	/**
+	 * 接收{@link AhoCorasick#findAll(char[], MatchHandler)}找到的单词.
+	 *
+	 * @author wuda
+	 *
+	 */
+	public interface MatchHandler {
+
+		/**
+		 * 找到一个单词.
+		 *
+		 * @param startOffset
+		 *            单词在输入中的开始偏移
+		 * @param endOffset
+		 *            单词在输入中的结尾偏移(包含)
+		 * @param state
+		 *            单词最后一个字符所在节点的状态
+		 */
+		void onMatch(int startOffset, int endOffset, int state);
+	}
+}
@@ -9,36 +9,17 @@ package com.wuda.analysis;
 public class AnalysisUtil {
 
 	/**
-	 * 判断字符是否句分割标点.
+	 * 判断字符是否句分割标点,使用默认的标点符号,见{@link CharClass#DEFAULT_PUNCTUATION}.
 	 * 
 	 * @param character
 	 *            字符
 	 * @return true-如果是
 	 */
 	public static boolean isSentencePunctuation(int character) {
-		if (character == 0x3002 || character == 0xFF1F || character == 0xFF01 || character == 0xFF0C
-				|| character == 0xFF1B || character == 33 || character == 39 || character == 44 || character == 46
-				|| character == 59) {
-			return true;
+		if (character < Character.MIN_VALUE || character > Character.MAX_VALUE) {
+			return false;
 		}
-		if (character == c1 || character == c2 || character == c3 || character == c4 || character == c5
-				|| character == c74 || character == c6 || character == c7 || character == c8 || character == c9
-				|| character == c10 || character == c11 || character == c12 || character == c13 || character == c14
-				|| character == c15 || character == c16 || character == c17 || character == c18 || character == c19
-				|| character == c20 || character == c21 || character == c22 || character == c23 || character == c24
-				|| character == c25 || character == c26 || character == c27 || character == c28 || character == c29
-				|| character == c30 || character == c31 || character == c32 || character == c33 || character == c34
-				|| character == c35 || character == c36 || character == c37 || character == c38 || character == c39
-				|| character == c40 || character == c41 || character == c42 || character == c43 || character == c44
-				|| character == c45 || character == c46 || character == c47 || character == c48 || character == c49
-				|| character == c50 || character == c51 || character == c52 || character == c53 || character == c54
-				|| character == c55 || character == c56 || character == c57 || character == c58 || character == c59
-				|| character == c60 || character == c61 || character == c62 || character == c63 || character == c64
-				|| character == c65 || character == c66 || character == c67 || character == c68 || character == c69
-				|| character == c70 || character == c71 || character == c73) {
-			return true;
-		}
-		return false;
+		return CharClass.getDefault().isPunctuation((char) character);
 	}
 
 	/**
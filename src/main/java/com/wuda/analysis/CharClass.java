@@ -0,0 +1,226 @@
+package com.wuda.analysis;
+
+/**
+ * 字符的分类表.每个char对应一个byte,保存这个字符属于哪些分类(每个分类一位),一共65536个字节.
+ * 分割句子,识别英文和数字等需要判断字符分类的地方都只查一次表,不需要逐个比较标点符号,也不需要调用
+ * {@link Character#isWhitespace(char)}和正则表达式.
+ * <p>
+ * 除了标点符号之外的分类对所有的表都是一样的.句子的标点符号可以配置,见{@link #withPunctuation(String)},
+ * 在创建analyzer时编译成表,之后只读,多个线程可以共享同一个表.
+ *
+ * @author wuda
+ *
+ */
+public final class CharClass {
+
+	/**
+	 * 分割句子的标点符号.
+	 */
+	public final static int PUNCTUATION = 1;
+	/**
+	 * 空白字符,{@link Character#isWhitespace(char)}或者{@link Character#isSpaceChar(char)}.
+	 */
+	public final static int WHITESPACE = 1 << 1;
+	/**
+	 * 汉字,{@link Character.UnicodeScript#HAN}.
+	 */
+	public final static int CJK = 1 << 2;
+	/**
+	 * 英文字母,a-z和A-Z.
+	 */
+	public final static int LETTER = 1 << 3;
+	/**
+	 * 数字,0-9.
+	 */
+	public final static int DIGIT = 1 << 4;
+	/**
+	 * 全角字符,！-～和全角空格　.
+	 */
+	public final static int FULL_WIDTH = 1 << 5;
+	/**
+	 * 句子的分割字符,标点符号和空白字符.
+	 */
+	public final static int SENTENCE_BOUNDARY = PUNCTUATION | WHITESPACE;
+
+	/**
+	 * 默认的句子标点符号,见{@link AnalysisUtil}中的常量.
+	 */
+	public final static String DEFAULT_PUNCTUATION;
+
+	static {
+		int[] punctuations = { AnalysisUtil.c1, AnalysisUtil.c2, AnalysisUtil.c3, AnalysisUtil.c4, AnalysisUtil.c5,
+				AnalysisUtil.c6, AnalysisUtil.c7, AnalysisUtil.c8, AnalysisUtil.c9, AnalysisUtil.c10, AnalysisUtil.c11,
+				AnalysisUtil.c12, AnalysisUtil.c13, AnalysisUtil.c14, AnalysisUtil.c15, AnalysisUtil.c16,
+				AnalysisUtil.c17, AnalysisUtil.c18, AnalysisUtil.c19, AnalysisUtil.c20, AnalysisUtil.c21,
+				AnalysisUtil.c22, AnalysisUtil.c23, AnalysisUtil.c24, AnalysisUtil.c25, AnalysisUtil.c26,
+				AnalysisUtil.c27, AnalysisUtil.c28, AnalysisUtil.c29, AnalysisUtil.c31, AnalysisUtil.c32,
+				AnalysisUtil.c33, AnalysisUtil.c34, AnalysisUtil.c35, AnalysisUtil.c36, AnalysisUtil.c37,
+				AnalysisUtil.c38, AnalysisUtil.c39, AnalysisUtil.c40, AnalysisUtil.c41, AnalysisUtil.c42,
+				AnalysisUtil.c43, AnalysisUtil.c44, AnalysisUtil.c45, AnalysisUtil.c46, AnalysisUtil.c47,
+				AnalysisUtil.c48, AnalysisUtil.c49, AnalysisUtil.c50, AnalysisUtil.c51, AnalysisUtil.c52,
+				AnalysisUtil.c53, AnalysisUtil.c54, AnalysisUtil.c55, AnalysisUtil.c56, AnalysisUtil.c57,
+				AnalysisUtil.c58, AnalysisUtil.c59, AnalysisUtil.c60, AnalysisUtil.c61, AnalysisUtil.c62,
+				AnalysisUtil.c63, AnalysisUtil.c64, AnalysisUtil.c65, AnalysisUtil.c66, AnalysisUtil.c67,
+				AnalysisUtil.c68, AnalysisUtil.c69, AnalysisUtil.c70, AnalysisUtil.c71, AnalysisUtil.c73,
+				AnalysisUtil.c74, '\'' };
+		StringBuilder builder = new StringBuilder(punctuations.length);
+		for (int punctuation : punctuations) {
+			builder.append((char) punctuation);
+		}
+		DEFAULT_PUNCTUATION = builder.toString();
+	}
+
+	/**
+	 * 使用默认标点符号的表.
+	 */
+	private final static CharClass DEFAULT = new CharClass(buildBaseClasses(), DEFAULT_PUNCTUATION);
+
+	/**
+	 * 每个字符的分类.
+	 */
+	private final byte[] classes;
+
+	private CharClass(byte[] classes, String punctuation) {
+		for (int i = 0; i < punctuation.length(); i++) {
+			classes[punctuation.charAt(i)] |= PUNCTUATION;
+		}
+		this.classes = classes;
+	}
+
+	/**
+	 * 构建除了标点符号之外的分类.
+	 *
+	 * @return 分类表
+	 */
+	private static byte[] buildBaseClasses() {
+		byte[] classes = new byte[Character.MAX_VALUE + 1];
+		for (int c = 0; c <= Character.MAX_VALUE; c++) {
+			int flags = 0;
+			if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+				flags |= WHITESPACE;
+			}
+			if (Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN) {
+				flags |= CJK;
+			}
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+				flags |= LETTER;
+			}
+			if (c >= '0' && c <= '9') {
+				flags |= DIGIT;
+			}
+			if ((c >= 0xff01 && c <= 0xff5e) || c == 0x3000) {
+				flags |= FULL_WIDTH;
+			}
+			classes[c] = (byte) flags;
+		}
+		return classes;
+	}
+
+	/**
+	 * @return 使用{@link #DEFAULT_PUNCTUATION}的表
+	 */
+	public static CharClass getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 使用指定的句子标点符号编译一个新的表.
+	 *
+	 * @param punctuation
+	 *            所有的标点符号,每个字符是一个标点符号,代替{@link #DEFAULT_PUNCTUATION}.空白字符总是分割句子,不需要包含
+	 * @return 分类表
+	 */
+	public static CharClass withPunctuation(String punctuation) {
+		if (punctuation == null) {
+			throw new IllegalArgumentException("标点符号不能为null");
+		}
+		if (punctuation.equals(DEFAULT_PUNCTUATION)) {
+			return DEFAULT;
+		}
+		byte[] classes = DEFAULT.classes.clone();
+		for (int c = 0; c < classes.length; c++) {
+			classes[c] &= ~PUNCTUATION;
+		}
+		return new CharClass(classes, punctuation);
+	}
+
+	/**
+	 * @param c
+	 *            字符
+	 * @return 字符的所有分类,比如{@link #PUNCTUATION}|{@link #FULL_WIDTH}
+	 */
+	public int getClasses(char c) {
+		return classes[c];
+	}
+
+	/**
+	 * 字符是否属于任意一个指定的分类.
+	 *
+	 * @param c
+	 *            字符
+	 * @param mask
+	 *            一个或者多个分类,比如{@link #LETTER}|{@link #DIGIT}
+	 * @return true-如果属于其中之一
+	 */
+	public boolean is(char c, int mask) {
+		return (classes[c] & mask) != 0;
+	}
+
+	/**
+	 * @param c
+	 *            字符
+	 * @return true-如果是句子的标点符号
+	 */
+	public boolean isPunctuation(char c) {
+		return (classes[c] & PUNCTUATION) != 0;
+	}
+
+	/**
+	 * @param c
+	 *            字符
+	 * @return true-如果是句子的标点符号或者空白字符
+	 */
+	public boolean isSentenceBoundary(char c) {
+		return (classes[c] & SENTENCE_BOUNDARY) != 0;
+	}
+
+	/**
+	 * 从指定的位置开始查找连续的属于指定分类的字符.
+	 *
+	 * @param chars
+	 *            字符
+	 * @param from
+	 *            开始位置(包含)
+	 * @param to
+	 *            结束位置(不包含)
+	 * @param mask
+	 *            一个或者多个分类
+	 * @return 第一个不属于这些分类的字符的位置,to-如果都属于
+	 */
+	public int skip(char[] chars, int from, int to, int mask) {
+		while (from < to && (classes[chars[from]] & mask) != 0) {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * 从指定的位置开始查找第一个属于指定分类的字符.
+	 *
+	 * @param chars
+	 *            字符
+	 * @param from
+	 *            开始位置(包含)
+	 * @param to
+	 *            结束位置(不包含)
+	 * @param mask
+	 *            一个或者多个分类
+	 * @return 第一个属于这些分类的字符的位置,to-如果没有
+	 */
+	public int find(char[] chars, int from, int to, int mask) {
+		while (from < to && (classes[chars[from]] & mask) == 0) {
+			from++;
+		}
+		return from;
+	}
+}
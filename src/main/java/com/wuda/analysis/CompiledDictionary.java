@@ -0,0 +1,430 @@
+package com.wuda.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 编译后的二进制词典文件.第一次从文本加载完词典后写入,或者由{@link DictionaryCompiler}离线编译,之后启动时直接通过
+ * <code>FileChannel.map</code>打开,不需要再解析文本和构建前缀树.文件的结构(little-endian)如下
+ * <ol>
+ * <li>文件头:magic,版本号,标志,词典源文件的指纹,单词数量,数组长度,元数据的字节数,文件头之后所有内容的CRC32校验和</li>
+ * <li>元数据:所有不同的token类型,停止词,数词,量词</li>
+ * <li>按8字节对齐后依次是{@link DoubleArrayTrie}的base,check,value三个int数组</li>
+ * </ol>
+ * 三个数组映射到内存后由{@link MappedTrie}直接查找,不会复制到jvm堆中.
+ *
+ * @author wuda
+ *
+ */
+public class CompiledDictionary {
+
+	/**
+	 * 文件的magic,即"YGDC".
+	 */
+	private final static int MAGIC = 0x59474443;
+
+	/**
+	 * 文件格式的版本号,格式变化时递增.
+	 */
+	private final static int VERSION = 2;
+
+	/**
+	 * 文件头的字节数.
+	 */
+	private final static int HEADER_LENGTH = 40;
+
+	/**
+	 * 标志:离线编译的词典文件,和词典目录中的词典源文件无关,见{@link DictionaryCompiler}.
+	 */
+	public final static int FLAG_OFFLINE = 1;
+
+	/**
+	 * 写文件时的缓冲区大小.
+	 */
+	private final static int BUFFER_SIZE = 1 << 16;
+
+	private final int flags;
+	private final long fingerprint;
+	private final MappedTrie trie;
+	private final List<String> stopwords;
+	private final List<String> numerals;
+	private final List<String> quantifiers;
+
+	private CompiledDictionary(int flags, long fingerprint, MappedTrie trie, List<String> stopwords,
+			List<String> numerals, List<String> quantifiers) {
+		this.flags = flags;
+		this.fingerprint = fingerprint;
+		this.trie = trie;
+		this.stopwords = stopwords;
+		this.numerals = numerals;
+		this.quantifiers = quantifiers;
+	}
+
+	/**
+	 * 计算词典源文件的指纹,任何一个文件的名称,大小或者修改时间发生变化,或者内存预算发生变化,指纹都会变化.
+	 *
+	 * @param files
+	 *            词典源文件
+	 * @param memoryBudget
+	 *            加载时的内存预算,预算不同时加载的单词可能不同
+	 * @return 指纹
+	 */
+	public static long fingerprint(File[] files, long memoryBudget) {
+		File[] sorted = files.clone();
+		Arrays.sort(sorted);
+		CRC32 crc = new CRC32();
+		for (File file : sorted) {
+			String line = file.getName() + ":" + file.length() + ":" + file.lastModified() + "\n";
+			crc.update(line.getBytes(StandardCharsets.UTF_8));
+		}
+		crc.update(("budget:" + memoryBudget).getBytes(StandardCharsets.UTF_8));
+		return crc.getValue() ^ ((long) sorted.length << 32);
+	}
+
+	/**
+	 * 把词典写入文件.先写入同目录下的临时文件,完成后再替换目标文件,避免其他进程打开不完整的文件.
+	 *
+	 * @param file
+	 *            目标文件
+	 * @param trie
+	 *            双数组前缀树
+	 * @param stopwords
+	 *            停止词
+	 * @param numerals
+	 *            数词
+	 * @param quantifiers
+	 *            量词
+	 * @param fingerprint
+	 *            词典源文件的指纹,见{@link #fingerprint(File[], long)}
+	 * @throws IOException
+	 *             写文件出错
+	 */
+	public static void write(File file, DoubleArrayTrie trie, Collection<String> stopwords,
+			Collection<String> numerals, Collection<String> quantifiers, long fingerprint) throws IOException {
+		write(file, trie, stopwords, numerals, quantifiers, fingerprint, 0);
+	}
+
+	/**
+	 * 把词典写入文件.先写入同目录下的临时文件,完成后再替换目标文件,避免其他进程打开不完整的文件.
+	 *
+	 * @param file
+	 *            目标文件
+	 * @param trie
+	 *            双数组前缀树
+	 * @param stopwords
+	 *            停止词
+	 * @param numerals
+	 *            数词
+	 * @param quantifiers
+	 *            量词
+	 * @param fingerprint
+	 *            词典源文件的指纹,见{@link #fingerprint(File[], long)}
+	 * @param flags
+	 *            标志,比如{@link #FLAG_OFFLINE}
+	 * @throws IOException
+	 *             写文件出错
+	 */
+	public static void write(File file, DoubleArrayTrie trie, Collection<String> stopwords,
+			Collection<String> numerals, Collection<String> quantifiers, long fingerprint, int flags)
+			throws IOException {
+		ByteArrayOutputStream metaBytes = new ByteArrayOutputStream();
+		DataOutputStream meta = new DataOutputStream(metaBytes);
+		String[] typeTable = trie.getTypeTable();
+		meta.writeInt(typeTable.length);
+		for (String types : typeTable) {
+			meta.writeBoolean(types != null);
+			if (types != null) {
+				meta.writeUTF(types);
+			}
+		}
+		writeStrings(meta, stopwords);
+		writeStrings(meta, numerals);
+		writeStrings(meta, quantifiers);
+		meta.flush();
+
+		int length = trie.getArrayLength();
+		File tmp = new File(file.getPath() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			CRC32 crc = new CRC32();
+			channel.position(HEADER_LENGTH);// 校验和计算完成后再写文件头
+			writeFully(channel, ByteBuffer.wrap(metaBytes.toByteArray()), crc);
+			long arraysOffset = align(HEADER_LENGTH + metaBytes.size());
+			writeFully(channel, ByteBuffer.allocate((int) (arraysOffset - channel.position())), crc);
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			writeInts(channel, buffer, trie.getBase(), crc);
+			writeInts(channel, buffer, trie.getCheck(), crc);
+			writeInts(channel, buffer, trie.getValue(), crc);
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(flags);
+			header.putLong(fingerprint);
+			header.putInt(trie.size());
+			header.putInt(length);
+			header.putInt(metaBytes.size());
+			header.putLong(crc.getValue());
+			header.flip();
+			channel.position(0);
+			writeFully(channel, header, null);
+			channel.force(false);
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * 读取文件头,检查magic和版本号.
+	 *
+	 * @param file
+	 *            文件
+	 * @param channel
+	 *            打开的文件
+	 * @return 文件头,位于flags
+	 * @throws IOException
+	 *             读文件出错,或者不是合法的词典文件
+	 */
+	private static ByteBuffer readHeader(File file, FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, header);
+		if (header.getInt() != MAGIC) {
+			throw new IOException(file + " 不是编译后的词典文件");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException(file + " 的版本是" + version + ",只支持" + VERSION);
+		}
+		return header;
+	}
+
+	/**
+	 * 是否是离线编译的词典文件.只读取文件头.
+	 *
+	 * @param file
+	 *            文件
+	 * @return true-如果是,false-如果文件不存在,不是合法的词典文件,或者不是离线编译的
+	 */
+	public static boolean isOffline(File file) {
+		if (!file.isFile()) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return (readHeader(file, channel).getInt() & FLAG_OFFLINE) != 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 打开词典文件.先检查校验和,然后三个数组通过内存映射读取,不会加载到jvm堆中.
+	 *
+	 * @param file
+	 *            {@link #write}写入的文件
+	 * @return 词典
+	 * @throws IOException
+	 *             读文件出错,或者不是合法的词典文件
+	 */
+	public static CompiledDictionary open(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = readHeader(file, channel);
+			int flags = header.getInt();
+			long fingerprint = header.getLong();
+			int size = header.getInt();
+			int length = header.getInt();
+			int metaLength = header.getInt();
+			long checksum = header.getLong();
+			long arraysOffset = align(HEADER_LENGTH + metaLength);
+			long arrayBytes = (long) length * 4;
+			if (channel.size() != arraysOffset + arrayBytes * 3) {
+				throw new IOException(file + " 不完整,期望" + (arraysOffset + arrayBytes * 3) + "字节,实际"
+						+ channel.size() + "字节");
+			}
+			if (checksum(channel) != checksum) {
+				throw new IOException(file + " 的校验和错误,文件已经损坏");
+			}
+
+			ByteBuffer metaBytes = ByteBuffer.allocate(metaLength);
+			readFully(channel, metaBytes);
+			DataInputStream meta = new DataInputStream(new ByteArrayInputStream(metaBytes.array()));
+			String[] typeTable = new String[meta.readInt()];
+			for (int i = 0; i < typeTable.length; i++) {
+				typeTable[i] = meta.readBoolean() ? meta.readUTF() : null;
+			}
+			List<String> stopwords = readStrings(meta);
+			List<String> numerals = readStrings(meta);
+			List<String> quantifiers = readStrings(meta);
+
+			IntBuffer base = map(channel, arraysOffset, arrayBytes);
+			IntBuffer check = map(channel, arraysOffset + arrayBytes, arrayBytes);
+			IntBuffer value = map(channel, arraysOffset + arrayBytes * 2, arrayBytes);
+			MappedTrie trie = new MappedTrie(base, check, value, typeTable, size);
+			return new CompiledDictionary(flags, fingerprint, trie, stopwords, numerals, quantifiers);
+		}
+	}
+
+	/**
+	 * 计算文件头之后所有内容的校验和.
+	 *
+	 * @param channel
+	 *            打开的文件
+	 * @return 校验和
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	private static long checksum(FileChannel channel) throws IOException {
+		CRC32 crc = new CRC32();
+		long position = HEADER_LENGTH;
+		long end = channel.size();
+		while (position < end) {
+			long size = Math.min(end - position, Integer.MAX_VALUE);
+			crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, size));
+			position += size;
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * 只读映射文件的一部分.
+	 *
+	 * @param channel
+	 *            文件
+	 * @param position
+	 *            开始位置
+	 * @param size
+	 *            字节数
+	 * @return int视图
+	 * @throws IOException
+	 *             映射失败
+	 */
+	private static IntBuffer map(FileChannel channel, long position, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("数组太大,不能映射到内存:" + size + "字节");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN)
+				.asIntBuffer();
+	}
+
+	private static long align(long position) {
+		return (position + 7) & ~7L;
+	}
+
+	private static void writeStrings(DataOutputStream out, Collection<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String string : strings) {
+			out.writeUTF(string);
+		}
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<String> strings = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			strings.add(in.readUTF());
+		}
+		return strings;
+	}
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] array, CRC32 crc)
+			throws IOException {
+		for (int i : array) {
+			if (buffer.remaining() < 4) {
+				buffer.flip();
+				writeFully(channel, buffer, crc);
+				buffer.clear();
+			}
+			buffer.putInt(i);
+		}
+		buffer.flip();
+		writeFully(channel, buffer, crc);
+		buffer.clear();
+	}
+
+	/**
+	 * 写入buffer中的所有内容.
+	 *
+	 * @param channel
+	 *            文件
+	 * @param buffer
+	 *            内容
+	 * @param crc
+	 *            同时计算校验和,可以是null
+	 * @throws IOException
+	 *             写文件出错
+	 */
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+		if (crc != null) {
+			crc.update(buffer.duplicate());
+		}
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new IOException("文件不完整");
+			}
+		}
+		buffer.flip();
+	}
+
+	/**
+	 * @return 是否是离线编译的,见{@link #FLAG_OFFLINE}
+	 */
+	public boolean isOffline() {
+		return (flags & FLAG_OFFLINE) != 0;
+	}
+
+	/**
+	 * @return 词典源文件的指纹
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @return 前缀树
+	 */
+	public MappedTrie getTrie() {
+		return trie;
+	}
+
+	/**
+	 * @return 停止词
+	 */
+	public List<String> getStopwords() {
+		return stopwords;
+	}
+
+	/**
+	 * @return 数词
+	 */
+	public List<String> getNumerals() {
+		return numerals;
+	}
+
+	/**
+	 * @return 量词
+	 */
+	public List<String> getQuantifiers() {
+		return quantifiers;
+	}
+}
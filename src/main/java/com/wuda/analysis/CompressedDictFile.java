@@ -0,0 +1,233 @@
+package com.wuda.analysis;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 压缩的词典文件.名称以{@link #SUFFIX}结尾的词典文件是gzip格式,加载时流式解压后直接解析,不需要先解压成文本文件.
+ * <p>
+ * 如果文件是分块压缩的BGZF格式(比如用htslib的bgzip压缩),每一块都是一个独立的gzip成员,并且在头部的扩展字段中记录了块的大小,
+ * 不需要解压就可以找到每一块的位置,多个块可以同时解压.BGZF文件也是合法的gzip文件,可以用gunzip解压.
+ *
+ * @author wuda
+ *
+ */
+final class CompressedDictFile {
+
+	/**
+	 * 压缩的词典文件的后缀.
+	 */
+	final static String SUFFIX = ".gz";
+	/**
+	 * gzip头部固定部分的长度,加上扩展字段的长度(2个字节).
+	 */
+	private final static int HEADER_SIZE = 12;
+	/**
+	 * BGZF块的头部的长度,包含一个记录块大小的扩展字段.
+	 */
+	private final static int BGZF_HEADER_SIZE = 18;
+
+	/**
+	 * 禁止实例化.
+	 */
+	private CompressedDictFile() {
+
+	}
+
+	/**
+	 * 是否是压缩的词典文件的名称.
+	 *
+	 * @param fileName
+	 *            文件名称
+	 * @return true-如果以{@link #SUFFIX}结尾
+	 */
+	static boolean isCompressed(String fileName) {
+		return fileName.endsWith(SUFFIX);
+	}
+
+	/**
+	 * 去掉压缩的后缀,用于确定词典文件的类型,比如“stopwords.dict.gz”也是停止词文件.
+	 *
+	 * @param fileName
+	 *            文件名称
+	 * @return 解压后的文件名称,不是压缩的文件时返回原来的名称
+	 */
+	static String uncompressedName(String fileName) {
+		return isCompressed(fileName) ? fileName.substring(0, fileName.length() - SUFFIX.length()) : fileName;
+	}
+
+	/**
+	 * 流式解压.多个gzip成员连接在一起时依次解压.
+	 *
+	 * @param in
+	 *            压缩的内容
+	 * @return 解压后的内容
+	 * @throws IOException
+	 *             不是gzip格式
+	 */
+	static InputStream decompress(InputStream in) throws IOException {
+		return new GZIPInputStream(in, 65536);
+	}
+
+	/**
+	 * 流式压缩成gzip格式,可以用{@link #decompress(InputStream)}解压.压缩的速度优先,用于在内存中保留大文件的内容.
+	 *
+	 * @param out
+	 *            压缩后的内容
+	 * @return 压缩的输出流,关闭时写入gzip的结尾
+	 * @throws IOException
+	 *             写入出错
+	 */
+	static OutputStream compress(OutputStream out) throws IOException {
+		return new GZIPOutputStream(out, 65536) {
+			{
+				def.setLevel(Deflater.BEST_SPEED);
+			}
+		};
+	}
+
+	/**
+	 * 把BGZF文件按块分组,每一组包含连续的多个块,可以单独解压.
+	 *
+	 * @param channel
+	 *            文件
+	 * @param groupSize
+	 *            每一组大约的压缩后的字节数
+	 * @return 每一组的开始位置,最后一个元素是文件的大小;null-如果不是BGZF格式,只能按顺序解压
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	static long[] blockGroups(FileChannel channel, long groupSize) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[(int) (size / groupSize) + 2];
+		int count = 0;
+		bounds[count++] = 0;
+		ByteBuffer header = ByteBuffer.allocate(BGZF_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		long position = 0;
+		long groupStart = 0;
+		while (position < size) {
+			header.clear();
+			while (header.hasRemaining() && channel.read(header, position + header.position()) > 0) {
+			}
+			int blockSize = header.hasRemaining() ? -1 : blockSize(header, 0);
+			if (blockSize < 0 || position + blockSize > size) {
+				return null;
+			}
+			position += blockSize;
+			if (position - groupStart >= groupSize && position < size) {
+				if (count == bounds.length) {
+					bounds = Arrays.copyOf(bounds, count * 2);
+				}
+				bounds[count++] = position;
+				groupStart = position;
+			}
+		}
+		if (count == bounds.length) {
+			bounds = Arrays.copyOf(bounds, count + 1);
+		}
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * 解压一组BGZF块.
+	 *
+	 * @param blocks
+	 *            从当前位置到limit的连续的块,见{@link #blockGroups(FileChannel, long)}
+	 * @return 解压后的内容
+	 * @throws IOException
+	 *             格式错误
+	 */
+	static byte[] decompressBlocks(ByteBuffer blocks) throws IOException {
+		ByteBuffer in = blocks.slice().order(ByteOrder.LITTLE_ENDIAN);
+		long length = 0;
+		for (int position = 0; position < in.limit();) {
+			int blockSize = in.limit() - position >= BGZF_HEADER_SIZE ? blockSize(in, position) : -1;
+			if (blockSize < 0 || position + blockSize > in.limit()) {
+				throw new IOException("BGZF块的格式错误,位置" + position);
+			}
+			position += blockSize;
+			length += in.getInt(position - 4) & 0xFFFFFFFFL;// 块的最后4个字节是解压后的长度
+		}
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IOException("一组BGZF块解压后超过了2G");
+		}
+		byte[] content = new byte[(int) length];
+		try (InputStream gzip = decompress(new ByteBufferInputStream(in))) {
+			int read = 0;
+			while (read < content.length) {
+				int n = gzip.read(content, read, content.length - read);
+				if (n < 0) {
+					throw new EOFException("BGZF块解压后的长度小于" + length);
+				}
+				read += n;
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * BGZF块的大小.
+	 *
+	 * @param in
+	 *            小端字节序
+	 * @param position
+	 *            块的开始位置
+	 * @return 块的字节数,-1-如果不是BGZF块
+	 */
+	private static int blockSize(ByteBuffer in, int position) {
+		if ((in.get(position) & 0xFF) != 0x1F || (in.get(position + 1) & 0xFF) != 0x8B || in.get(position + 2) != 8
+				|| (in.get(position + 3) & 4) == 0) {// 必须有扩展字段
+			return -1;
+		}
+		int extraLength = in.getShort(position + 10) & 0xFFFF;
+		if (extraLength != 6 || in.get(position + HEADER_SIZE) != 'B' || in.get(position + HEADER_SIZE + 1) != 'C'
+				|| in.getShort(position + HEADER_SIZE + 2) != 2) {
+			return -1;
+		}
+		return (in.getShort(position + HEADER_SIZE + 4) & 0xFFFF) + 1;
+	}
+
+	/**
+	 * 读取{@link ByteBuffer}的输入流.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+}
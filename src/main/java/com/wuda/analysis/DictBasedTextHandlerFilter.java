@@ -1,11 +1,13 @@
 package com.wuda.analysis;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.List;
 
 /**
  * 基于词典的分词.不是单词的文本也会被返回,并且这些文本的{@link TextHandlerSharedAttribute#isWord()}等于<code>false</code>.
+ * <p>
+ * 太长的句子被{@link SentenceTextHandler}截断成多个窗口时,相邻的窗口重叠词典中最长的单词的长度减1个字符,
+ * 开始于重叠部分的单词留到下一个窗口返回;不枚举所有的单词时,下一个窗口从上一个窗口的最后一个单词之后开始查找.
+ * 因此单词和不截断时完全一样,只有不是单词的文本在窗口的边界处被分开.
  * 
  * @author wuda
  *
@@ -17,23 +19,59 @@ public class DictBasedTextHandlerFilter extends TextHandlerFilter {
 	 */
 	private YgSegmenter segmenter;
 
+	/**
+	 * 词典.
+	 */
+	private FileDictionaryHandler dictionaryHandler;
+
 	/**
 	 * 是否枚举所有的单词.
 	 */
 	private boolean enumerateAll = true;
 
 	/**
-	 * 所有的token(单词).
+	 * 当前句子的字符,重复使用.
 	 */
-	private List<Token> tokens = null;
+	private char[] sentence = new char[256];
 
 	/**
-	 * token迭代器.
+	 * 当前句子的所有token(单词),重复使用.
 	 */
-	private Iterator<Token> iterator = null;
+	private final SegmentResult tokens = new SegmentResult();
+
+	/**
+	 * 下一个要返回的token.
+	 */
+	private int next = 0;
 
 	private int baseCoord = 0;
 
+	/**
+	 * 相邻的窗口重叠的字符数量,根据词典中最长的单词计算.
+	 */
+	private int windowOverlap = TextHandlerSharedAttribute.DEFAULT_WINDOW_OVERLAP;
+
+	/**
+	 * 当前的窗口是否被截断,上一个窗口是否被截断.有一个被截断时,单词之间的文本由这个类计算.
+	 */
+	private boolean truncated = false;
+	private boolean continued = false;
+
+	/**
+	 * 当前窗口中开始位置小于这个值的token才返回,其他的留到下一个窗口.
+	 */
+	private int windowLimit = 0;
+
+	/**
+	 * 最近返回的一个token在文本中的结尾位置(包含),跨越窗口.
+	 */
+	private int latestTokenEndPosition = -1;
+
+	/**
+	 * 不枚举所有的单词时,下一个窗口开始查找的位置.
+	 */
+	private int resumePosition = 0;
+
 	public DictBasedTextHandlerFilter(TextHandler input, TextHandlerSharedAttribute attribute) {
 		super(input, attribute);
 	}
@@ -45,47 +83,158 @@ public class DictBasedTextHandlerFilter extends TextHandlerFilter {
 	public boolean incrementToken() throws IOException {
 		if (segmenter == null) {
 			segmenter = new YgSegmenter();
-			FileDictionaryHandler dictionaryHandler = new FileDictionaryHandler();
-			Trie dictionary = dictionaryHandler.getDictionary();// 获取词典,词典是多线程异步加载的,不会阻塞
-			segmenter.setDictionary(dictionary);
+			if (dictionaryHandler == null) {// 没有指定时使用最近一次指定的词典目录
+				dictionaryHandler = new FileDictionaryHandler();
+			}
+			setDictionary(dictionaryHandler.getDictionary());// 获取词典,词典是多线程异步加载的,不会阻塞
 			segmenter.setEnumerateAll(enumerateAll);
 		}
-		if (iterator != null && iterator.hasNext()) {
-			fillSharedAttr();
+		if (nextToken()) {
 			return true;
 		}
-		if (input.incrementToken()) {
+		attribute.setWindowOverlap(windowOverlap);
+		while (input.incrementToken()) {
 			baseCoord = attribute.getStartOffset();
-			tokens = segmenter.getTokens(attribute.getTokenString());// 此时的token中保存的是句子,获取分词
-			if (tokens == null || tokens.isEmpty()) {
+			int length = attribute.getTokenLength();// 此时的token中保存的是句子,获取分词
+			if (sentence.length < length) {
+				sentence = new char[Math.max(length, sentence.length * 2)];
+			}
+			System.arraycopy(attribute.getTokenBuffer(), 0, sentence, 0, length);// 返回单词时会覆盖属性中的句子
+			continued = truncated;
+			truncated = attribute.isTruncated();
+			windowLimit = truncated ? length - windowOverlap : length;
+			if (!continued) {
+				latestTokenEndPosition = baseCoord - 1;
+			}
+			next = 0;
+			int skip = continued && !enumerateAll ? Math.min(length, resumePosition - baseCoord) : 0;
+			if (segmenter.segment(sentence, skip, length - skip, tokens) == 0 && !continued) {
 				return false;
 			}
-			iterator = tokens.iterator();
-			fillSharedAttr();
+			if (truncated && !enumerateAll) {
+				resumePosition = getResumePosition();
+			}
+			if (nextToken()) {
+				return true;
+			}
+			attribute.setWindowOverlap(windowOverlap);
+		}
+		return false;
+	}
+
+	/**
+	 * 返回当前窗口的下一个token.
+	 * 
+	 * @return true-如果还有token
+	 */
+	private boolean nextToken() {
+		if (!truncated && !continued) {// 完整的句子
+			if (next < tokens.size()) {
+				int index = next++;
+				fillSharedAttr(tokens.getStartOffset(index), tokens.getEndOffset(index), tokens.getTypes(index),
+						tokens.isWord(index));
+				return true;
+			}
+			return false;
+		}
+		/**
+		 * 只使用分词结果中的单词,单词之间的文本和{@link YgSegmenter}一样计算,但是要跨越窗口.
+		 */
+		while (next < tokens.size()) {
+			int startOffset = tokens.getStartOffset(next);
+			if (startOffset >= windowLimit || !tokens.isWord(next)) {// 留到下一个窗口
+				next++;
+				continue;
+			}
+			if (baseCoord + startOffset > latestTokenEndPosition + 1) {// 上一个单词与当前单词之间的文本
+				fillSharedAttr(latestTokenEndPosition + 1 - baseCoord, startOffset - 1, null, false);
+				latestTokenEndPosition = baseCoord + startOffset - 1;
+				return true;
+			}
+			int index = next++;
+			fillSharedAttr(startOffset, tokens.getEndOffset(index), tokens.getTypes(index), true);
+			latestTokenEndPosition = baseCoord + tokens.getEndOffset(index);
+			return true;
+		}
+		int lastCharIndex = baseCoord + windowLimit - 1;// 最后一个单词与窗口的边界之间的文本
+		if (lastCharIndex > latestTokenEndPosition) {
+			fillSharedAttr(latestTokenEndPosition + 1 - baseCoord, windowLimit - 1, null, false);
+			latestTokenEndPosition = lastCharIndex;
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * 不枚举所有的单词时,从一个位置找到单词后,下一次从这个单词的结尾之后开始查找.开始于窗口的边界之前的单词在当前窗口中是完整的,
+	 * 下一个窗口从其中最后一个单词的结尾之后开始查找,和不截断时一样.
+	 * 
+	 * @return 下一个窗口开始查找的位置
+	 */
+	private int getResumePosition() {
+		int position = windowLimit;
+		for (int i = 0; i < tokens.size(); i++) {
+			if (tokens.isWord(i) && tokens.getStartOffset(i) < windowLimit) {
+				position = Math.max(position, tokens.getEndOffset(i) + 1);
+			}
+		}
+		return baseCoord + position;
+	}
+
 	/**
 	 * 填充属性.
+	 * 
+	 * @param startOffset
+	 *            在当前句子中的开始偏移
+	 * @param endOffset
+	 *            在当前句子中的结尾偏移(包含)
+	 * @param types
+	 *            token类型
+	 * @param isWord
+	 *            是否单词
 	 */
-	private void fillSharedAttr() {
+	private void fillSharedAttr(int startOffset, int endOffset, String types, boolean isWord) {
 		attribute.clearAttributes();
-		Token token = iterator.next();
-		attribute.tokenAppend(token.getValue());
-		attribute.setType(token.getTypes());
-		attribute.setStartOffset(baseCoord + token.getStartOffset());
-		attribute.setEndOffset(baseCoord + token.getEndOffset() + 1);
-		attribute.setWord(token.isWord());
+		attribute.tokenAppend(sentence, startOffset, endOffset - startOffset + 1);
+		attribute.setType(types);
+		attribute.setStartOffset(baseCoord + startOffset);
+		attribute.setEndOffset(baseCoord + endOffset + 1);
+		attribute.setWord(isWord);
+	}
+
+	/**
+	 * 设置分词使用的词典,同时根据词典中最长的单词计算窗口重叠的字符数量.
+	 * 
+	 * @param dictionary
+	 *            词典
+	 */
+	private void setDictionary(Trie dictionary) {
+		segmenter.setDictionary(dictionary);
+		windowOverlap = Math.max(0, dictionary.getMaxTokenLength() - 1);
 	}
 
 	@Override
 	public void reset() throws IOException {
 		super.reset();
-		tokens = null;
-		iterator = null;
+		if (segmenter != null) {// 词典会不断重新构建,每处理一个新的文本时获取最新的词典快照,同一个文本始终使用同一个快照
+			setDictionary(dictionaryHandler.getDictionary());
+		}
+		tokens.clear(null);
+		next = 0;
 		baseCoord = 0;
+		truncated = continued = false;
+		latestTokenEndPosition = -1;
+		resumePosition = 0;
+	}
+
+	/**
+	 * 指定使用的词典,需要在第一次{@link #incrementToken()}之前设置.
+	 *
+	 * @param dictionaryHandler
+	 *            词典
+	 */
+	public void setDictionaryHandler(FileDictionaryHandler dictionaryHandler) {
+		this.dictionaryHandler = dictionaryHandler;
 	}
 
 	/**
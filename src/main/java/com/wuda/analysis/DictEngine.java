@@ -0,0 +1,96 @@
+package com.wuda.analysis;
+
+/**
+ * 词典引擎,即分词时使用的{@link Trie}的实现方式.
+ *
+ * @author wuda
+ *
+ */
+public enum DictEngine {
+	/**
+	 * 常规树型结构,{@link TreeTrie}.
+	 */
+	TREE("tree"),
+	/**
+	 * 基本类型哈希表,{@link HashTrie}.
+	 */
+	HASH("hash"),
+	/**
+	 * 双数组,{@link DoubleArrayTrie}.加载时先用{@link HashTrie}添加单词,再一次性构建.
+	 */
+	DOUBLE_ARRAY("double_array"),
+	/**
+	 * 内存映射的双数组,{@link MappedTrie}.第一次加载时和{@link #DOUBLE_ARRAY}一样构建,然后写入{@link CompiledDictionary}
+	 * 文件,之后启动时如果词典源文件没有变化,直接映射这个文件,不需要再加载文本.
+	 */
+	MAPPED("mapped"),
+	/**
+	 * lucene的FST,{@link FstTrie}.和{@link #DOUBLE_ARRAY}一样加载,然后构建FST,内存最少,但是查找比双数组慢.
+	 */
+	FST("fst");
+
+	private String engineKey;
+
+	private DictEngine(String engineKey) {
+		this.engineKey = engineKey;
+	}
+
+	/**
+	 * 获取对应的引擎.
+	 *
+	 * @param engineKey
+	 *            引擎名称
+	 * @return 对应的引擎,null-如果没有
+	 */
+	public static DictEngine getByEngineKey(String engineKey) {
+		if (engineKey == null || engineKey.isEmpty()) {
+			return null;
+		}
+		engineKey = engineKey.toLowerCase().trim();
+		DictEngine[] engines = DictEngine.values();
+		for (DictEngine engine : engines) {
+			if (engine.engineKey.equals(engineKey)) {
+				return engine;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 创建加载单词时使用的前缀树.
+	 *
+	 * @return 前缀树
+	 */
+	MutableTrie newBuilder() {
+		if (this == TREE) {
+			return new TreeTrie();
+		}
+		return new HashTrie();
+	}
+
+	/**
+	 * 把加载单词时使用的前缀树转换成分词时使用的前缀树.{@link #TREE}和{@link #HASH}直接返回builder,
+	 * 返回的前缀树发布之后builder就不能再修改.
+	 *
+	 * @param builder
+	 *            {@link #newBuilder()}创建的前缀树,或者增量更新时的{@link OverlayTrie}
+	 * @return 分词时使用的前缀树
+	 */
+	Trie compile(MutableTrie builder) {
+		if (builder instanceof OverlayTrie) {// 增量更新,基础词典已经构建过了
+			return builder;
+		} else if (this == DOUBLE_ARRAY || this == MAPPED) {
+			return DoubleArrayTrie.build(builder);
+		} else if (this == FST) {
+			return FstTrie.build(builder);
+		}
+		return builder;
+	}
+
+	/**
+	 * @return the engineKey
+	 */
+	public String getEngineKey() {
+		return engineKey;
+	}
+}
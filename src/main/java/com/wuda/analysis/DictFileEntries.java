@@ -0,0 +1,286 @@
+package com.wuda.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.wuda.analysis.FileDictionaryHandler.DictType;
+
+/**
+ * 一个词典源文件上一次加载的内容.文件变化时和新的内容比较,只需要添加新增的单词和删除被删除的单词,不需要重新加载所有的词典文件.
+ * 每个单词(和类型)只保存一个64位的哈希值,用于判断文件中是否还有相同的单词,被删除的单词从保存的原始内容中得到.
+ * 比较时先跳过两个版本相同的开头和结尾,只解析中间变化的行,因此修改大文件中的几行只需要比较一次字节.
+ * <p>
+ * 大文件和压缩的文件不保留原始内容,见{@link #unretained(DictType, byte[], byte[], long[], int)},只保存哈希值,
+ * 加载时计算的摘要和压缩的原始内容(压缩的文件就是文件本身).变化时重新解析整个文件,和保存的哈希值比较得到删除的行,
+ * 然后解压这个文件上一次的内容找到被删除的单词,见{@link #findEntries(long[], DictFileParser.Entries)},不需要遍历词典.
+ *
+ * @author wuda
+ *
+ */
+final class DictFileEntries {
+
+	private final DictType dictType;
+
+	/**
+	 * 文件的原始内容,null-没有保留.
+	 */
+	private final byte[] content;
+
+	/**
+	 * 没有保留原始内容时,gzip压缩的原始内容;null-保留了原始内容.
+	 */
+	private final byte[] compressedContent;
+
+	/**
+	 * 每一行单词的哈希值,从小到大排序,重复的行有重复的值.
+	 */
+	private final long[] hashes;
+
+	/**
+	 * 文件内容的摘要,第一次使用时计算.
+	 */
+	private volatile byte[] digest;
+
+	/**
+	 * @param dictType
+	 *            文件的类型
+	 * @param content
+	 *            文件的原始内容
+	 * @param hashes
+	 *            每一行单词的哈希值,见{@link #hash(String, String)}
+	 * @param count
+	 *            hashes中有效的数量
+	 */
+	DictFileEntries(DictType dictType, byte[] content, long[] hashes, int count) {
+		this(dictType, content, null, sort(hashes, count));
+	}
+
+	private DictFileEntries(DictType dictType, byte[] content, byte[] compressedContent, long[] sortedHashes) {
+		this.dictType = dictType;
+		this.content = content;
+		this.compressedContent = compressedContent;
+		this.hashes = sortedHashes;
+	}
+
+	/**
+	 * 创建不保留原始内容的版本.
+	 *
+	 * @param dictType
+	 *            文件的类型
+	 * @param digest
+	 *            文件内容的摘要,见{@link #getDigest()}
+	 * @param compressedContent
+	 *            gzip压缩的原始内容
+	 * @param hashes
+	 *            每一行单词的哈希值,见{@link #hash(String, String)}
+	 * @param count
+	 *            hashes中有效的数量
+	 * @return 只有哈希值,摘要和压缩的内容的版本
+	 */
+	static DictFileEntries unretained(DictType dictType, byte[] digest, byte[] compressedContent, long[] hashes,
+			int count) {
+		DictFileEntries entries = new DictFileEntries(dictType, null, compressedContent, sort(hashes, count));
+		entries.digest = digest;
+		return entries;
+	}
+
+	private static long[] sort(long[] hashes, int count) {
+		long[] sorted = Arrays.copyOf(hashes, count);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * 找到和新的内容相比发生变化的区域.跳过相同的开头和结尾,并且扩展到整行,区域之外的行在两个版本中完全相同.
+	 *
+	 * @param newContent
+	 *            文件新的内容
+	 * @return 数组的下标0是区域的开始(两个版本相同),下标1是区域在原来的内容中的结尾(不包含),下标2是区域在新的内容中的结尾(不包含)
+	 */
+	int[] changedRegion(byte[] newContent) {
+		byte[] oldContent = content;
+		int max = Math.min(oldContent.length, newContent.length);
+		int prefix = 0;
+		while (prefix < max && oldContent[prefix] == newContent[prefix]) {
+			prefix++;
+		}
+		while (prefix > 0 && oldContent[prefix - 1] != '\n') {// 回到行首
+			prefix--;
+		}
+		int suffix = 0;
+		while (suffix < max - prefix
+				&& oldContent[oldContent.length - 1 - suffix] == newContent[newContent.length - 1 - suffix]) {
+			suffix++;
+		}
+		while (suffix > 0 && !(isLineStart(oldContent, oldContent.length - suffix)
+				&& isLineStart(newContent, newContent.length - suffix))) {// 结尾也从行首开始
+			suffix--;
+		}
+		return new int[] { prefix, oldContent.length - suffix, newContent.length - suffix };
+	}
+
+	private static boolean isLineStart(byte[] content, int position) {
+		return position == 0 || content[position - 1] == '\n';
+	}
+
+	/**
+	 * 在这个版本的基础上删除和添加一些行,得到新的版本.
+	 *
+	 * @param newContent
+	 *            文件新的内容
+	 * @param removed
+	 *            删除的行的哈希值
+	 * @param removedCount
+	 *            removed中有效的数量
+	 * @param added
+	 *            添加的行的哈希值
+	 * @param addedCount
+	 *            added中有效的数量
+	 * @return 新的版本
+	 */
+	DictFileEntries update(byte[] newContent, long[] removed, int removedCount, long[] added, int addedCount) {
+		long[] sortedRemoved = sort(removed, removedCount);
+		long[] sortedAdded = sort(added, addedCount);
+		long[] merged = new long[hashes.length - removedCount + addedCount];
+		int count = 0, r = 0, a = 0;
+		for (long hash : hashes) {
+			if (r < sortedRemoved.length && sortedRemoved[r] == hash) {// 每个删除的行只跳过一次
+				r++;
+				continue;
+			}
+			while (a < sortedAdded.length && sortedAdded[a] < hash) {
+				merged[count++] = sortedAdded[a++];
+			}
+			merged[count++] = hash;
+		}
+		while (a < sortedAdded.length) {
+			merged[count++] = sortedAdded[a++];
+		}
+		return new DictFileEntries(dictType, newContent, null, merged);
+	}
+
+	/**
+	 * 计算单词和类型的哈希值.和前缀树一样,单词忽略大小写.
+	 *
+	 * @param token
+	 *            单词
+	 * @param tokenType
+	 *            类型,可以是null
+	 * @return 哈希值
+	 */
+	static long hash(String token, String tokenType) {
+		long h = 0xcbf29ce484222325L;// FNV-1a
+		for (int i = 0; i < token.length(); i++) {
+			h = (h ^ Character.toLowerCase(token.charAt(i))) * 0x100000001b3L;
+		}
+		if (tokenType != null) {
+			h = (h ^ '\t') * 0x100000001b3L;
+			for (int i = 0; i < tokenType.length(); i++) {
+				h = (h ^ tokenType.charAt(i)) * 0x100000001b3L;
+			}
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * 和新的版本相比删除的行,重复的行只有在新的版本中全部删除时才算删除.
+	 *
+	 * @param updated
+	 *            新的版本
+	 * @return 删除的行的哈希值,从小到大排序,没有重复
+	 */
+	long[] removedHashes(DictFileEntries updated) {
+		long[] removed = new long[hashes.length];
+		int count = 0;
+		for (int i = 0; i < hashes.length; i++) {
+			if ((i == 0 || hashes[i] != hashes[i - 1]) && (updated == null || !updated.contains(hashes[i]))) {
+				removed[count++] = hashes[i];
+			}
+		}
+		return Arrays.copyOf(removed, count);
+	}
+
+	/**
+	 * 从这个版本的内容中找到指定的行的单词和类型.只解析这一个文件,没有保留原始内容时解压保存的压缩内容.
+	 *
+	 * @param lineHashes
+	 *            行的哈希值,从小到大排序,没有重复,比如{@link #removedHashes(DictFileEntries)}
+	 * @param entries
+	 *            接收找到的单词和类型,重复的行只接收一次
+	 * @throws IOException
+	 *             解压出错
+	 */
+	void findEntries(final long[] lineHashes, final DictFileParser.Entries entries) throws IOException {
+		if (lineHashes.length == 0) {
+			return;
+		}
+		final boolean[] found = new boolean[lineHashes.length];
+		DictFileParser.EntryHandler handler = new DictFileParser.EntryHandler() {
+
+			@Override
+			public void onEntry(String token, String tokenType, int lineNumber) {
+				int index = Arrays.binarySearch(lineHashes, hash(token, tokenType));
+				if (index >= 0 && !found[index]) {
+					found[index] = true;
+					entries.onEntry(token, tokenType, lineNumber);
+				}
+			}
+		};
+		if (content != null) {
+			DictFileParser.parse(content, 0, content.length, dictType, handler);
+			return;
+		}
+		try (InputStream in = CompressedDictFile.decompress(new ByteArrayInputStream(compressedContent))) {
+			DictFileParser.parse(in, dictType, handler);
+		}
+	}
+
+	/**
+	 * 是否包含单词.
+	 *
+	 * @param hash
+	 *            单词的哈希值,见{@link #hash(String, String)}
+	 * @return true-如果包含
+	 */
+	boolean contains(long hash) {
+		return Arrays.binarySearch(hashes, hash) >= 0;
+	}
+
+	/**
+	 * @return 文件的类型
+	 */
+	DictType getDictType() {
+		return dictType;
+	}
+
+	/**
+	 * @return 文件的原始内容,null-没有保留,只保留了压缩的内容
+	 */
+	byte[] getContent() {
+		return content;
+	}
+
+	/**
+	 * @return 文件内容的SHA-256摘要,用于判断不同目录中的文件内容是否相同
+	 */
+	byte[] getDigest() {
+		byte[] digest = this.digest;
+		if (digest == null) {
+			digest = DirectoryDictionary.newDigest().digest(content);
+			this.digest = digest;
+		}
+		return digest;
+	}
+
+	/**
+	 * @return 行的数量
+	 */
+	int size() {
+		return hashes.length;
+	}
+}
@@ -0,0 +1,326 @@
+package com.wuda.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.wuda.analysis.FileDictionaryHandler.DictType;
+
+/**
+ * 流式解析词典文件.按固定大小的缓冲区解码,直接在字符数组中找到每一行的单词和词性,只创建单词和词性两个字符串,
+ * 不需要把整个文件转换成行的列表,也不需要为每一行创建数组.
+ * <p>
+ * 格式: 每行一个单词,普通词典文件中单词后面可以跟一个水平制表符和词性,再跟一个水平制表符和数量(忽略).
+ * 每一行和每一列都去掉开头和结尾的空白字符,空行跳过.行之间用“\n”,“\r”或者“\r\n”隔开,无法解码的字节替换成“�”.
+ *
+ * @author wuda
+ *
+ */
+final class DictFileParser {
+
+	/**
+	 * 缓冲区的字符数量,遇到更长的行时自动扩大.
+	 */
+	private final static int BUFFER_SIZE = 8192;
+
+	/**
+	 * 禁止实例化.
+	 */
+	private DictFileParser() {
+
+	}
+
+	/**
+	 * 解析文件的一部分内容.
+	 *
+	 * @param content
+	 *            文件的内容,UTF-8编码
+	 * @param start
+	 *            开始位置,必须是行首
+	 * @param end
+	 *            结束位置(不包含)
+	 * @param dictType
+	 *            文件的类型
+	 * @param handler
+	 *            接收每一个单词
+	 * @return 单词的数量(非空行的数量)
+	 */
+	static int parse(byte[] content, int start, int end, DictType dictType, EntryHandler handler) {
+		return parse(ByteBuffer.wrap(content, start, end - start), dictType, handler);
+	}
+
+	/**
+	 * 解析文件的一部分内容,比如内存映射的一块,见{@link #parse(byte[], int, int, DictType, EntryHandler)}.
+	 *
+	 * @param in
+	 *            从当前位置到limit的内容,必须从行首开始
+	 * @param dictType
+	 *            文件的类型
+	 * @param handler
+	 *            接收每一个单词
+	 * @return 单词的数量(非空行的数量)
+	 */
+	static int parse(ByteBuffer in, DictType dictType, EntryHandler handler) {
+		try {
+			return parse(in, null, CodingErrorAction.REPLACE, dictType, handler);
+		} catch (IOException e) {// 没有需要读取的输入
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 边读边解析,比如解压的输入流,不需要先读出全部的内容,见{@link #parse(byte[], int, int, DictType, EntryHandler)}.
+	 *
+	 * @param in
+	 *            UTF-8编码的内容,不会被关闭
+	 * @param dictType
+	 *            文件的类型
+	 * @param handler
+	 *            接收每一个单词
+	 * @return 单词的数量(非空行的数量)
+	 * @throws IOException
+	 *             读取出错
+	 */
+	static int parse(InputStream in, DictType dictType, EntryHandler handler) throws IOException {
+		return parse(in, CodingErrorAction.REPLACE, dictType, handler);
+	}
+
+	/**
+	 * 边读边解析,遇到无法解码的字节时抛出异常,不替换成“�”,用于检查文件的编码,见{@link DictionaryCompiler}.
+	 * 异常之前的单词已经交给了handler.
+	 *
+	 * @param in
+	 *            UTF-8编码的内容,不会被关闭
+	 * @param dictType
+	 *            文件的类型
+	 * @param handler
+	 *            接收每一个单词
+	 * @return 单词的数量(非空行的数量)
+	 * @throws CharacterCodingException
+	 *             不是UTF-8编码
+	 * @throws IOException
+	 *             读取出错
+	 */
+	static int parseStrict(InputStream in, DictType dictType, EntryHandler handler) throws IOException {
+		return parse(in, CodingErrorAction.REPORT, dictType, handler);
+	}
+
+	private static int parse(InputStream in, CodingErrorAction action, DictType dictType, EntryHandler handler)
+			throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE * 4);
+		bytes.flip();
+		return parse(bytes, Channels.newChannel(in), action, dictType, handler);
+	}
+
+	/**
+	 * 解析已经读取的内容,读完之后继续从输入中读取.
+	 *
+	 * @param in
+	 *            已经读取的内容
+	 * @param source
+	 *            剩下的内容,null-没有
+	 * @param action
+	 *            无法解码时的处理方式,{@link CodingErrorAction#REPORT}-抛出异常
+	 * @param dictType
+	 *            文件的类型
+	 * @param handler
+	 *            接收每一个单词
+	 * @return 单词的数量(非空行的数量)
+	 * @throws IOException
+	 *             读取出错,或者action是{@link CodingErrorAction#REPORT}并且无法解码
+	 */
+	private static int parse(ByteBuffer in, ReadableByteChannel source, CodingErrorAction action, DictType dictType,
+			EntryHandler handler) throws IOException {
+		CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(action)
+				.onUnmappableCharacter(action);
+		CharBuffer buffer = CharBuffer.allocate(BUFFER_SIZE);
+		int lineNumber = 1;
+		int count = 0;
+		boolean decoded = false;
+		boolean flushed = false;
+		boolean afterCR = false;
+		boolean endOfInput = source == null;
+		while (true) {
+			CoderResult result = decoded ? null : decoder.decode(in, buffer, endOfInput);
+			if (result != null && result.isError()) {
+				result.throwException();
+			}
+			if (result != null && result.isUnderflow()) {
+				if (endOfInput) {
+					decoded = true;
+				} else {// 读取更多的内容,不完整的字符留在开头
+					in.compact();
+					endOfInput = source.read(in) < 0;
+					in.flip();
+				}
+			}
+			if (decoded) {
+				flushed = decoder.flush(buffer).isUnderflow();
+			}
+			char[] chars = buffer.array();
+			int limit = buffer.position();
+			int lineStart = 0;
+			for (int i = 0; i < limit; i++) {
+				char c = chars[i];
+				if (c == '\n' || c == '\r') {
+					if (!(c == '\n' && afterCR && i == lineStart)) {// “\r\n”只算一次换行
+						if (parseLine(chars, lineStart, i, dictType, lineNumber, handler)) {
+							count++;
+						}
+						lineNumber++;
+					}
+					afterCR = c == '\r';
+					lineStart = i + 1;
+				} else {
+					afterCR = false;
+				}
+			}
+			if (flushed) {
+				if (parseLine(chars, lineStart, limit, dictType, lineNumber, handler)) {
+					count++;
+				}
+				return count;
+			}
+			if (lineStart == 0 && limit >= chars.length - 1) {// 一行超过了缓冲区,至少要能放下一个增补字符
+				buffer = CharBuffer.allocate(chars.length * 2);
+				buffer.put(chars, 0, limit);
+			} else {// 未完成的行移到开头
+				System.arraycopy(chars, lineStart, chars, 0, limit - lineStart);
+				buffer.position(limit - lineStart);
+			}
+		}
+	}
+
+	/**
+	 * 解析一行.
+	 *
+	 * @param chars
+	 *            字符
+	 * @param from
+	 *            行的开始位置
+	 * @param to
+	 *            行的结束位置(不包含)
+	 * @param dictType
+	 *            文件的类型
+	 * @param lineNumber
+	 *            行号,从1开始
+	 * @param handler
+	 *            接收单词
+	 * @return true-如果不是空行
+	 */
+	private static boolean parseLine(char[] chars, int from, int to, DictType dictType, int lineNumber,
+			EntryHandler handler) {
+		while (from < to && chars[from] <= ' ') {
+			from++;
+		}
+		while (to > from && chars[to - 1] <= ' ') {
+			to--;
+		}
+		if (from == to) {
+			return false;
+		}
+		int tab = dictType == DictType.normal ? indexOfTab(chars, from, to) : -1;
+		if (tab < 0) {
+			handler.onEntry(new String(chars, from, to - from), null, lineNumber);
+			return true;
+		}
+		int typeEnd = indexOfTab(chars, tab + 1, to);// 词性和数量用水平制表符隔开
+		handler.onEntry(trimmed(chars, from, tab), trimmed(chars, tab + 1, typeEnd < 0 ? to : typeEnd), lineNumber);
+		return true;
+	}
+
+	private static int indexOfTab(char[] chars, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (chars[i] == '\t') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String trimmed(char[] chars, int from, int to) {
+		while (from < to && chars[from] <= ' ') {
+			from++;
+		}
+		while (to > from && chars[to - 1] <= ' ') {
+			to--;
+		}
+		return new String(chars, from, to - from);
+	}
+
+	/**
+	 * 一次解析的所有单词,用于只解析少量行的情况,比如文件变化的部分.
+	 */
+	static final class Entries implements EntryHandler {
+
+		private String[] tokens = new String[16];
+		private String[] tokenTypes = new String[16];
+		private long[] hashes = new long[16];
+		private int size = 0;
+
+		@Override
+		public void onEntry(String token, String tokenType, int lineNumber) {
+			if (size == tokens.length) {
+				tokens = Arrays.copyOf(tokens, size * 2);
+				tokenTypes = Arrays.copyOf(tokenTypes, size * 2);
+				hashes = Arrays.copyOf(hashes, size * 2);
+			}
+			tokens[size] = token;
+			tokenTypes[size] = tokenType;
+			hashes[size++] = DictFileEntries.hash(token, tokenType);
+		}
+
+		String getToken(int index) {
+			return tokens[index];
+		}
+
+		String getTokenType(int index) {
+			return tokenTypes[index];
+		}
+
+		long getHash(int index) {
+			return hashes[index];
+		}
+
+		/**
+		 * @return 每个单词的哈希值,见{@link DictFileEntries#hash(String, String)},数组的长度可能大于{@link #size()}
+		 */
+		long[] getHashes() {
+			return hashes;
+		}
+
+		int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * 接收{@link DictFileParser#parse(byte[], int, int, DictType, EntryHandler)}解析出的单词.
+	 *
+	 * @author wuda
+	 *
+	 */
+	interface EntryHandler {
+
+		/**
+		 * 解析出一个单词.
+		 *
+		 * @param token
+		 *            单词,已经去掉开头和结尾的空白字符,不是空字符串
+		 * @param tokenType
+		 *            词性,null-如果没有
+		 * @param lineNumber
+		 *            所在的行号,从1开始
+		 */
+		void onEntry(String token, String tokenType, int lineNumber);
+	}
+}
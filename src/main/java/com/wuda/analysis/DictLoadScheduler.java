@@ -0,0 +1,205 @@
+package com.wuda.analysis;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.wuda.Constant;
+
+/**
+ * 安排词典文件的加载.
+ * <ul>
+ * <li>加载的线程数量有上限,线程是低优先级的守护线程</li>
+ * <li>配置了优先级的文件按配置的顺序最先加载,其他文件按大小从小到大加载,小文件先加载完成就可以先使用</li>
+ * <li>可以限制每个加载线程使用的CPU比例,比如0.5表示加载线程每工作一段时间就休息相同的时间,
+ * 滚动重启集群时不会和搜索线程抢CPU</li>
+ * </ul>
+ *
+ * @author wuda
+ *
+ */
+public class DictLoadScheduler {
+
+	/**
+	 * 默认的线程数量,CPU核数的一半.
+	 */
+	public final static int DEFAULT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+	private final int threads;
+	private final List<String> priorityFileNames;
+	private final double cpuRatio;
+	/**
+	 * 并行添加单词和分块解析大文件的线程池,第一次使用时创建.
+	 */
+	private volatile ForkJoinPool parallelPool = null;
+
+	/**
+	 * 默认的安排:{@link #DEFAULT_THREADS}个线程,没有优先级,不限制CPU.
+	 */
+	public DictLoadScheduler() {
+		this(DEFAULT_THREADS, Collections.<String> emptyList(), 1.0);
+	}
+
+	/**
+	 * @param threads
+	 *            加载的线程数量,至少是1
+	 * @param priorityFileNames
+	 *            最先加载的文件名称,按顺序加载
+	 * @param cpuRatio
+	 *            每个加载线程最多使用的CPU比例,(0,1],1表示不限制
+	 */
+	public DictLoadScheduler(int threads, List<String> priorityFileNames, double cpuRatio) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads 至少是1: " + threads);
+		}
+		if (!(cpuRatio > 0 && cpuRatio <= 1)) {
+			throw new IllegalArgumentException("cpuRatio 必须在(0,1]之间: " + cpuRatio);
+		}
+		this.threads = threads;
+		this.priorityFileNames = Collections.unmodifiableList(new ArrayList<>(priorityFileNames));
+		this.cpuRatio = cpuRatio;
+	}
+
+	/**
+	 * 按加载的顺序排列文件.
+	 *
+	 * @param files
+	 *            词典文件
+	 * @return 排序后的文件,新的数组
+	 */
+	public File[] order(File[] files) {
+		File[] ordered = Arrays.copyOf(files, files.length);
+		Arrays.sort(ordered, new Comparator<File>() {
+
+			@Override
+			public int compare(File f1, File f2) {
+				int p1 = priority(f1);
+				int p2 = priority(f2);
+				if (p1 != p2) {
+					return p1 < p2 ? -1 : 1;
+				}
+				int c = Long.compare(f1.length(), f2.length());
+				return c != 0 ? c : f1.getName().compareTo(f2.getName());
+			}
+		});
+		return ordered;
+	}
+
+	/**
+	 * 文件的优先级,越小越先加载.
+	 *
+	 * @param file
+	 *            文件
+	 * @return 在配置中的位置,没有配置的文件是{@link Integer#MAX_VALUE}
+	 */
+	private int priority(File file) {
+		int index = priorityFileNames.indexOf(file.getName());
+		return index < 0 ? Integer.MAX_VALUE : index;
+	}
+
+	/**
+	 * 创建加载文件的线程池.任务按提交的顺序执行,因此按{@link #order(File[])}的顺序提交即可.
+	 *
+	 * @param maxThreads
+	 *            最多的线程数量,比如文件的数量,不会超过{@link #getThreads()}
+	 * @return 线程池,空闲的线程会自动结束
+	 */
+	public ExecutorService newExecutor(int maxThreads) {
+		int poolSize = Math.max(1, Math.min(threads, maxThreads));
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger(0);
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, Constant.ANALYSIS_NAME + "-dict-load-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * 获取并行添加单词和分块解析大文件的线程池,见{@link PartitionedTrie#addAll(String[], String[], int, ForkJoinPool)}.
+	 * 线程数量是{@link #getThreads()},和加载文件的线程一样是低优先级的守护线程,不管同时加载多少个目录和文件.
+	 * 第一次调用时创建,空闲的线程会自动结束.
+	 *
+	 * @return 线程池
+	 */
+	public ForkJoinPool getParallelPool() {
+		ForkJoinPool current = parallelPool;
+		if (current == null) {
+			synchronized (this) {
+				current = parallelPool;
+				if (current == null) {
+					current = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+						@Override
+						public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+							ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+							thread.setName(Constant.ANALYSIS_NAME + "-dict-parallel-" + thread.getPoolIndex());
+							thread.setDaemon(true);
+							thread.setPriority(Thread.MIN_PRIORITY);
+							return thread;
+						}
+					}, null, false);
+					parallelPool = current;
+				}
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * 限制CPU.加载线程工作了一段时间后调用,按{@link #getCpuRatio()}休息相应的时间.
+	 *
+	 * @param busyNanos
+	 *            刚刚工作的时间,纳秒
+	 */
+	public void pause(long busyNanos) {
+		if (cpuRatio >= 1 || busyNanos <= 0) {
+			return;
+		}
+		long sleepNanos = (long) (busyNanos * (1 - cpuRatio) / cpuRatio);
+		try {
+			TimeUnit.NANOSECONDS.sleep(sleepNanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return 加载的线程数量
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return 最先加载的文件名称
+	 */
+	public List<String> getPriorityFileNames() {
+		return priorityFileNames;
+	}
+
+	/**
+	 * @return 每个加载线程最多使用的CPU比例
+	 */
+	public double getCpuRatio() {
+		return cpuRatio;
+	}
+}
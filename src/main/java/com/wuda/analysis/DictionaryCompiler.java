@@ -0,0 +1,288 @@
+package com.wuda.analysis;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.wuda.Constant;
+import com.wuda.analysis.FileDictionaryHandler.DictType;
+
+/**
+ * 离线编译词典.读取词典目录中的所有词典源文件(包括{@link Constant}中的停止词,数词和量词文件),检查格式,合并重复的单词和词性,
+ * 然后写入一个带校验和的编译后的词典文件.把这个文件命名为{@link Constant#compiled_dict_file_name}放到elasticsearch节点的词典目录中,
+ * 插件启动时不管使用哪种词典引擎都直接通过内存映射打开,不需要在节点上解析文本和构建前缀树;运行期间替换这个文件时会自动重新打开.
+ *
+ * <pre>
+ * java -cp "plugins/analysis-yg/*" com.wuda.analysis.DictionaryCompiler 词典目录 [输出文件]
+ * </pre>
+ *
+ * 输出文件默认是词典目录中的{@link Constant#compiled_dict_file_name}.发现格式错误时打印所有的错误,不写入文件,退出码是1.
+ *
+ * @author wuda
+ *
+ */
+public class DictionaryCompiler {
+
+	/**
+	 * UTF-8的BOM.
+	 */
+	private final static byte[] UTF8_BOM = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+
+	private final PrintStream out;
+	private final PrintStream err;
+
+	/**
+	 * 格式错误的数量.
+	 */
+	private int errorCount = 0;
+	/**
+	 * 非空行的数量.
+	 */
+	private int lineCount = 0;
+	/**
+	 * 重复的行(添加之后词典,停止词,数词和量词都没有变化)的数量.
+	 */
+	private int duplicateCount = 0;
+	/**
+	 * 在其他行的基础上合并了新的词性的数量.
+	 */
+	private int mergedCount = 0;
+
+	/**
+	 * @param out
+	 *            输出编译的进度和结果
+	 * @param err
+	 *            输出格式错误
+	 */
+	public DictionaryCompiler(PrintStream out, PrintStream err) {
+		this.out = out;
+		this.err = err;
+	}
+
+	/**
+	 * @param args
+	 *            词典目录 [输出文件]
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("用法: java " + DictionaryCompiler.class.getName() + " 词典目录 [输出文件]");
+			System.exit(2);
+		}
+		File dictDir = new File(args[0]);
+		File output = args.length > 1 ? new File(args[1]) : new File(dictDir, Constant.compiled_dict_file_name);
+		DictionaryCompiler compiler = new DictionaryCompiler(System.out, System.err);
+		try {
+			if (!compiler.compile(dictDir, output)) {
+				System.exit(1);
+			}
+		} catch (IOException e) {
+			System.err.println("编译失败: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 编译词典目录中的所有词典源文件.
+	 *
+	 * @param dictDir
+	 *            词典目录
+	 * @param output
+	 *            编译后的词典文件
+	 * @return true-如果写入了文件,false-如果有格式错误
+	 * @throws IOException
+	 *             读写文件出错
+	 */
+	public boolean compile(File dictDir, File output) throws IOException {
+		if (!dictDir.isDirectory()) {
+			throw new IOException(dictDir + " 不是目录");
+		}
+		long startTime = System.currentTimeMillis();
+		File[] files = listSourceFiles(dictDir, output);
+		final HashTrie builder = new HashTrie();
+		final Set<String> stopwords = new LinkedHashSet<>();
+		final Set<String> numerals = new LinkedHashSet<>();
+		final Set<String> quantifiers = new LinkedHashSet<>();
+		for (final File file : files) {
+			final DictType dictType = FileDictionaryHandler.getDictType(file.getName());
+			int count = parse(file, dictType, new DictFileParser.EntryHandler() {
+
+				@Override
+				public void onEntry(String token, String tokenType, int lineNumber) {
+					lineCount++;
+					if (!validate(file, lineNumber, token, tokenType)) {
+						return;
+					}
+					boolean added;
+					if (dictType == DictType.numeral_file) {
+						added = numerals.add(token);
+					} else if (dictType == DictType.quantifier_file) {
+						added = quantifiers.add(token);
+					} else {
+						added = add(builder, token, tokenType);
+						if (dictType == DictType.stopword_file) {
+							added = stopwords.add(token) || added;
+						}
+					}
+					if (!added) {
+						duplicateCount++;
+					}
+				}
+			});
+			if (count >= 0) {
+				out.println("读取 " + file.getName() + ", " + count + " 个单词");
+			}
+		}
+		if (errorCount > 0) {
+			err.println("发现 " + errorCount + " 个格式错误,没有写入 " + output);
+			return false;
+		}
+		DoubleArrayTrie trie = DoubleArrayTrie.build(builder);
+		CompiledDictionary.write(output, trie, stopwords, numerals, new ArrayList<>(quantifiers),
+				CompiledDictionary.fingerprint(files, 0), CompiledDictionary.FLAG_OFFLINE);
+		CompiledDictionary compiled = CompiledDictionary.open(output);// 检查写入的文件
+		if (compiled.getTrie().size() != trie.size()) {
+			throw new IOException(output + " 中的单词数量" + compiled.getTrie().size() + "和编译的单词数量" + trie.size()
+					+ "不一致");
+		}
+		out.println("写入 " + output + ", " + output.length() + " 字节, " + (System.currentTimeMillis() - startTime)
+				+ "ms");
+		out.println("文件 " + files.length + ", 行 " + lineCount + ", 重复的行 " + duplicateCount + ", 合并词性 "
+				+ mergedCount + ", 单词 " + trie.size() + ", 停止词 " + stopwords.size() + ", 数词 " + numerals.size()
+				+ ", 量词 " + quantifiers.size());
+		return true;
+	}
+
+	/**
+	 * 添加单词,统计合并的词性.根据前缀树本身的状态判断是否重复,不需要另外保存每一行的哈希值.
+	 *
+	 * @param builder
+	 *            前缀树
+	 * @param token
+	 *            单词
+	 * @param tokenType
+	 *            词性,可以是null
+	 * @return true-如果添加了新的单词或者词性,false-如果单词和词性都已经存在
+	 */
+	private boolean add(HashTrie builder, String token, String tokenType) {
+		int size = builder.size();
+		int state = builder.getState(token);
+		String before = state == Trie.NO_STATE ? null : builder.getTypes(state);
+		builder.add(token, tokenType);
+		if (builder.size() != size) {
+			return true;
+		}
+		if (Objects.equals(before, builder.getTypes(builder.getState(token)))) {
+			return false;
+		}
+		if (before != null) {
+			mergedCount++;
+		}
+		return true;
+	}
+
+	/**
+	 * 检查一行的格式,错误输出到{@link #err}.
+	 *
+	 * @param file
+	 *            文件
+	 * @param lineNumber
+	 *            行号,从1开始
+	 * @param token
+	 *            单词
+	 * @param tokenType
+	 *            词性,可以是null
+	 * @return true-如果格式正确
+	 */
+	private boolean validate(File file, int lineNumber, String token, String tokenType) {
+		String message = null;
+		if (token.isEmpty()) {
+			message = "单词不能为空";
+		} else if (tokenType != null && tokenType.indexOf(',') >= 0) {
+			message = "词性不能包含“,”: " + tokenType;
+		}
+		if (message == null) {
+			return true;
+		}
+		error(file.getName() + ":" + lineNumber + ": " + message);
+		return false;
+	}
+
+	private void error(String message) {
+		errorCount++;
+		err.println(message);
+	}
+
+	/**
+	 * 边读边解析文件,检查是不是UTF-8(无BOM)编码,编码错误时记录一个格式错误.压缩的文件边解压边解析,
+	 * 不需要把整个文件读到内存中,文件的大小没有限制.
+	 *
+	 * @param file
+	 *            文件
+	 * @param dictType
+	 *            文件的类型
+	 * @param handler
+	 *            接收每一个单词,编码错误时之前的单词已经交给了handler
+	 * @return 单词的数量,-1-如果编码错误
+	 * @throws IOException
+	 *             读文件出错,或者压缩的文件不是gzip格式
+	 */
+	private int parse(File file, DictType dictType, DictFileParser.EntryHandler handler) throws IOException {
+		try (InputStream raw = new FileInputStream(file);
+				PushbackInputStream in = new PushbackInputStream(
+						CompressedDictFile.isCompressed(file.getName()) ? CompressedDictFile.decompress(raw) : raw,
+						UTF8_BOM.length)) {
+			byte[] head = new byte[UTF8_BOM.length];
+			int length = 0;
+			int read;
+			while (length < head.length && (read = in.read(head, length, head.length - length)) > 0) {
+				length += read;
+			}
+			if (Arrays.equals(head, UTF8_BOM)) {
+				error(file.getName() + ": 词典文件必须是UTF-8无BOM格式编码");
+				return -1;
+			}
+			in.unread(head, 0, length);
+			try {
+				return DictFileParser.parseStrict(in, dictType, handler);
+			} catch (CharacterCodingException e) {
+				error(file.getName() + ": 不是UTF-8编码");
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * 列出词典目录中的词典源文件,按名称排序.和{@link FileDictionaryHandler}一样,编译后的词典文件不包括在内.
+	 *
+	 * @param dictDir
+	 *            词典目录
+	 * @param output
+	 *            输出文件
+	 * @return 词典源文件
+	 */
+	private File[] listSourceFiles(File dictDir, File output) {
+		File[] files = dictDir.listFiles();
+		List<File> sourceFiles = new ArrayList<>();
+		if (files != null) {
+			for (File file : files) {
+				if (file.isFile() && !file.getName().startsWith(Constant.compiled_dict_file_name)
+						&& !file.getAbsoluteFile().equals(output.getAbsoluteFile())) {
+					sourceFiles.add(file);
+				}
+			}
+		}
+		File[] sorted = sourceFiles.toArray(new File[sourceFiles.size()]);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+}
@@ -2,6 +2,8 @@ package com.wuda.analysis;
 
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 词典处理类.
@@ -38,4 +40,47 @@ public interface DictionaryHandler {
 	 * @return 量词集合
 	 */
 	public List<String> getQuantifiers();
+
+	/**
+	 * 获取词典的快照,包括词典,停止词,数词和量词.
+	 * 
+	 * @return 快照
+	 */
+	public DictionarySnapshot getSnapshot();
+
+	/**
+	 * 获取当前快照的统计信息,包括单词和节点的数量,类型的分布和估算的内存.第一次调用时遍历词典,之后返回同一个结果.
+	 * 
+	 * @return 统计信息
+	 */
+	public DictionaryStats getStats();
+
+	/**
+	 * 获取词典的加载状态.
+	 * 
+	 * @return 加载状态
+	 */
+	public DictionaryState getState();
+
+	/**
+	 * 获取词典加载完成的结果.所有的词典文件都加载完成并发布后(状态变成{@link DictionaryState#READY})完成,结果是当时发布的快照.
+	 * 
+	 * @return 词典加载完成的结果
+	 */
+	public Future<DictionarySnapshot> getReadyFuture();
+
+	/**
+	 * 等待词典达到指定的状态.
+	 * 
+	 * @param state
+	 *            指定的状态
+	 * @param timeout
+	 *            最长的等待时间
+	 * @param unit
+	 *            timeout的单位
+	 * @return true-如果已经达到,false-如果超时
+	 * @throws InterruptedException
+	 *             等待时被中断
+	 */
+	public boolean awaitState(DictionaryState state, long timeout, TimeUnit unit) throws InterruptedException;
 }
@@ -0,0 +1,131 @@
+package com.wuda.analysis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 词典的快照,包括分词时使用的词典,停止词,数词和量词.快照一旦创建就不会再改变,词典重新加载时会创建新的快照并整体替换,
+ * 因此同一个文本只要始终使用同一个快照,分词结果就是一致的.
+ *
+ * @author wuda
+ *
+ */
+public final class DictionarySnapshot {
+
+	private final Trie dictionary;
+	private final Set<String> stopwords;
+	private final Set<String> numerals;
+	private final List<String> quantifiers;
+	private final long skippedTokenCount;
+	/**
+	 * 第一次调用{@link #getStats()}时才统计.
+	 */
+	private volatile DictionaryStats stats = null;
+
+	/**
+	 * 创建快照,集合都会复制一份.
+	 *
+	 * @param dictionary
+	 *            分词时使用的词典
+	 * @param stopwords
+	 *            停止词
+	 * @param numerals
+	 *            数词
+	 * @param quantifiers
+	 *            量词
+	 */
+	public DictionarySnapshot(Trie dictionary, Collection<String> stopwords, Collection<String> numerals,
+			Collection<String> quantifiers) {
+		this(dictionary, stopwords, numerals, quantifiers, 0);
+	}
+
+	/**
+	 * 创建快照,集合都会复制一份.
+	 *
+	 * @param dictionary
+	 *            分词时使用的词典
+	 * @param stopwords
+	 *            停止词
+	 * @param numerals
+	 *            数词
+	 * @param quantifiers
+	 *            量词
+	 * @param skippedTokenCount
+	 *            因为超过内存预算而没有加载的token数量
+	 */
+	public DictionarySnapshot(Trie dictionary, Collection<String> stopwords, Collection<String> numerals,
+			Collection<String> quantifiers, long skippedTokenCount) {
+		if (dictionary == null) {
+			throw new NullPointerException("dictionary 不能为空");
+		}
+		this.dictionary = dictionary;
+		this.stopwords = Collections.unmodifiableSet(new HashSet<>(stopwords));
+		this.numerals = Collections.unmodifiableSet(new HashSet<>(numerals));
+		this.quantifiers = Collections.unmodifiableList(new ArrayList<>(quantifiers));
+		this.skippedTokenCount = skippedTokenCount;
+	}
+
+	/**
+	 * 使用相同的停止词,数词和量词,只替换词典.
+	 *
+	 * @param dictionary
+	 *            新的词典
+	 * @return 新的快照
+	 */
+	public DictionarySnapshot withDictionary(Trie dictionary) {
+		return new DictionarySnapshot(dictionary, stopwords, numerals, quantifiers, skippedTokenCount);
+	}
+
+	/**
+	 * @return 分词时使用的词典
+	 */
+	public Trie getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * @return 停止词,不可修改
+	 */
+	public Set<String> getStopwords() {
+		return stopwords;
+	}
+
+	/**
+	 * @return 数词,不可修改
+	 */
+	public Set<String> getNumerals() {
+		return numerals;
+	}
+
+	/**
+	 * @return 量词,不可修改
+	 */
+	public List<String> getQuantifiers() {
+		return quantifiers;
+	}
+
+	/**
+	 * @return 因为超过内存预算而没有加载的token数量
+	 */
+	public long getSkippedTokenCount() {
+		return skippedTokenCount;
+	}
+
+	/**
+	 * 词典的统计信息加上停止词,数词,量词和没有加载的token的数量.快照不会改变,因此只统计一次.
+	 *
+	 * @return 统计信息
+	 */
+	public DictionaryStats getStats() {
+		DictionaryStats current = stats;
+		if (current == null) {
+			current = dictionary.getStats().withSnapshot(this);
+			stats = current;
+		}
+		return current;
+	}
+}
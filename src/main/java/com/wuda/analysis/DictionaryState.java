@@ -0,0 +1,70 @@
+package com.wuda.analysis;
+
+/**
+ * 词典的加载状态.状态只会向后变化,后面的状态包含前面的状态,比如{@link #READY}也满足{@link #PARTIAL}.
+ *
+ * @author wuda
+ *
+ */
+public enum DictionaryState {
+
+	/**
+	 * 还没有开始加载,词典是空的.
+	 */
+	NOT_STARTED("not_started"),
+	/**
+	 * 正在加载,还没有发布过包含单词的词典.
+	 */
+	LOADING("loading"),
+	/**
+	 * 正在加载,已经发布了部分词典文件的单词.
+	 */
+	PARTIAL("partial"),
+	/**
+	 * 所有的词典文件都已经加载完成并发布.之后词典文件变化时在后台更新,完成前继续使用完整的旧词典,状态不会再改变.
+	 */
+	READY("ready");
+
+	private String stateKey;
+
+	private DictionaryState(String stateKey) {
+		this.stateKey = stateKey;
+	}
+
+	/**
+	 * 根据配置中的名称获取状态.
+	 *
+	 * @param stateKey
+	 *            名称,比如【ready】
+	 * @return 状态,null-如果不存在
+	 */
+	public static DictionaryState getByStateKey(String stateKey) {
+		if (stateKey == null) {
+			return null;
+		}
+		for (DictionaryState state : values()) {
+			if (state.stateKey.equalsIgnoreCase(stateKey.trim())) {
+				return state;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 是否已经达到了指定的状态.
+	 *
+	 * @param state
+	 *            指定的状态
+	 * @return true-如果当前状态等于或者在指定的状态之后
+	 */
+	public boolean reached(DictionaryState state) {
+		return compareTo(state) >= 0;
+	}
+
+	/**
+	 * @return 配置中的名称
+	 */
+	public String getStateKey() {
+		return stateKey;
+	}
+}
@@ -0,0 +1,408 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 词典的统计信息,用于估算需要的内存和选择词典引擎.通过{@link Trie#getStats()}或者{@link DictionaryHandler#getStats()}获取.
+ * <ul>
+ * <li>节点和边按实际保存的结构统计,包括根节点和已经删除的单词留下的节点(墓碑).{@link FstTrie}共享单词的后缀,
+ * 按逻辑上的前缀树统计;{@link OverlayTrie}按合并后的前缀树统计,覆盖层中和基础词典重复的节点只算一次,
+ * 只通向被删除的单词的节点不计算</li>
+ * <li>深度的直方图:下标是深度(根节点是0),值是这个深度的节点数量</li>
+ * <li>扇出的直方图:下标是子节点的数量,值是有这么多子节点的节点数量</li>
+ * <li>内存是估算的,只包括数组和哈希表,不包括token类型的字符串.内存映射的词典不占用jvm堆内存,单独统计</li>
+ * </ul>
+ * 统计需要遍历整个词典,和词典的大小成正比,不要在分词的时候调用.
+ *
+ * @author wuda
+ *
+ */
+public final class DictionaryStats {
+
+	private final int tokenCount;
+	private final long nodeCount;
+	private final long edgeCount;
+	private final long[] depthHistogram;
+	private final long[] fanoutHistogram;
+	private final Map<String, Integer> typeCounts;
+	private final int untypedTokenCount;
+	private final long heapBytes;
+	private final long offHeapBytes;
+	private final int stopwordCount;
+	private final int numeralCount;
+	private final int quantifierCount;
+	private final long skippedTokenCount;
+
+	private DictionaryStats(Builder builder, long heapBytes, long offHeapBytes, DictionarySnapshot snapshot) {
+		this.tokenCount = builder.tokenCount;
+		this.nodeCount = builder.nodeCount;
+		this.edgeCount = builder.edgeCount;
+		this.depthHistogram = Arrays.copyOf(builder.depthHistogram, builder.maxDepth + 1);
+		this.fanoutHistogram = Arrays.copyOf(builder.fanoutHistogram, builder.maxFanout + 1);
+		Map<String, Integer> typeCounts = new TreeMap<>();
+		int untypedTokenCount = 0;
+		for (Map.Entry<String, int[]> entry : builder.typeSetCounts.entrySet()) {
+			int count = entry.getValue()[0];
+			if (entry.getKey() == null) {
+				untypedTokenCount += count;
+				continue;
+			}
+			for (String type : entry.getKey().split(",")) {
+				Integer total = typeCounts.get(type);
+				typeCounts.put(type, total == null ? count : total + count);
+			}
+		}
+		Iterator<Integer> counts = typeCounts.values().iterator();
+		while (counts.hasNext()) {
+			if (counts.next() == 0) {// 覆盖层删除了这个类型的所有单词
+				counts.remove();
+			}
+		}
+		this.typeCounts = Collections.unmodifiableMap(typeCounts);
+		this.untypedTokenCount = untypedTokenCount;
+		this.heapBytes = heapBytes;
+		this.offHeapBytes = offHeapBytes;
+		this.stopwordCount = snapshot == null ? 0 : snapshot.getStopwords().size();
+		this.numeralCount = snapshot == null ? 0 : snapshot.getNumerals().size();
+		this.quantifierCount = snapshot == null ? 0 : snapshot.getQuantifiers().size();
+		this.skippedTokenCount = snapshot == null ? 0 : snapshot.getSkippedTokenCount();
+	}
+
+	/**
+	 * 加上快照中的停止词,数词,量词和没有加载的单词的数量.
+	 *
+	 * @param snapshot
+	 *            快照,词典的统计信息就是这个对象
+	 * @return 新的统计信息
+	 */
+	DictionaryStats withSnapshot(DictionarySnapshot snapshot) {
+		Builder builder = new Builder();
+		builder.add(this);
+		return new DictionaryStats(builder, heapBytes, offHeapBytes, snapshot);
+	}
+
+	/**
+	 * @return token(单词)的数量
+	 */
+	public int getTokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * @return 节点的数量,包括根节点
+	 */
+	public long getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * @return 边的数量
+	 */
+	public long getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * @return 最大的深度,也就是最长的单词的长度
+	 */
+	public int getMaxDepth() {
+		return depthHistogram.length - 1;
+	}
+
+	/**
+	 * @return 深度的直方图,下标是深度,值是节点数量
+	 */
+	public long[] getDepthHistogram() {
+		return depthHistogram.clone();
+	}
+
+	/**
+	 * @return 最大的扇出,也就是子节点最多的节点的子节点数量
+	 */
+	public int getMaxFanout() {
+		return fanoutHistogram.length - 1;
+	}
+
+	/**
+	 * @return 扇出的直方图,下标是子节点的数量,值是节点数量
+	 */
+	public long[] getFanoutHistogram() {
+		return fanoutHistogram.clone();
+	}
+
+	/**
+	 * 每个token类型的单词数量.一个单词有多个类型时每个类型都算一次.
+	 *
+	 * @return key是token类型,按名称排序
+	 */
+	public Map<String, Integer> getTypeCounts() {
+		return typeCounts;
+	}
+
+	/**
+	 * @return 没有类型的单词数量
+	 */
+	public int getUntypedTokenCount() {
+		return untypedTokenCount;
+	}
+
+	/**
+	 * @return 估算的占用的jvm堆内存,字节数
+	 */
+	public long getHeapBytes() {
+		return heapBytes;
+	}
+
+	/**
+	 * @return 内存映射的字节数,不占用jvm堆内存
+	 */
+	public long getOffHeapBytes() {
+		return offHeapBytes;
+	}
+
+	/**
+	 * @return 停止词的数量,只有从快照获取时才有
+	 */
+	public int getStopwordCount() {
+		return stopwordCount;
+	}
+
+	/**
+	 * @return 数词的数量,只有从快照获取时才有
+	 */
+	public int getNumeralCount() {
+		return numeralCount;
+	}
+
+	/**
+	 * @return 量词的数量,只有从快照获取时才有
+	 */
+	public int getQuantifierCount() {
+		return quantifierCount;
+	}
+
+	/**
+	 * @return 因为超过内存预算而没有加载的token数量,只有从快照获取时才有
+	 */
+	public long getSkippedTokenCount() {
+		return skippedTokenCount;
+	}
+
+	@Override
+	public String toString() {
+		return "tokens " + tokenCount + ", nodes " + nodeCount + ", edges " + edgeCount + ", max depth "
+				+ getMaxDepth() + ", max fanout " + getMaxFanout() + ", types " + typeCounts.size() + ", untyped "
+				+ untypedTokenCount + ", heap bytes " + heapBytes + ", off-heap bytes " + offHeapBytes
+				+ ", stopwords " + stopwordCount + ", numerals " + numeralCount + ", quantifiers " + quantifierCount
+				+ ", skipped " + skippedTokenCount;
+	}
+
+	/**
+	 * 逐个节点和单词收集统计信息.
+	 *
+	 * @author wuda
+	 *
+	 */
+	static final class Builder {
+
+		private int tokenCount = 0;
+		private long nodeCount = 0;
+		private long edgeCount = 0;
+		private int maxDepth = 0;
+		private int maxFanout = 0;
+		private long[] depthHistogram = new long[16];
+		private long[] fanoutHistogram = new long[16];
+		/**
+		 * key是{@link Trie#getTypes(int)}返回的多个类型,null表示没有类型,value是单词数量.相同的类型组合只拆分一次.
+		 */
+		private final Map<String, int[]> typeSetCounts = new HashMap<>();
+		/**
+		 * 按顺序添加单词时,上一个单词的字符,见{@link #addSortedToken(int[], int, int, String)}.
+		 */
+		private int[] path = new int[16];
+		private int pathLength = 0;
+		/**
+		 * 按顺序添加单词时,路径上每个节点已经有的子节点数量,下标是深度.
+		 */
+		private int[] childCounts = new int[17];
+
+		/**
+		 * 添加一个节点.
+		 *
+		 * @param depth
+		 *            深度,根节点是0
+		 * @param fanout
+		 *            子节点的数量
+		 */
+		void addNode(int depth, int fanout) {
+			nodeCount++;
+			edgeCount += fanout;
+			if (depth >= depthHistogram.length) {
+				depthHistogram = Arrays.copyOf(depthHistogram, Math.max(depth + 1, depthHistogram.length * 2));
+			}
+			if (fanout >= fanoutHistogram.length) {
+				fanoutHistogram = Arrays.copyOf(fanoutHistogram, Math.max(fanout + 1, fanoutHistogram.length * 2));
+			}
+			depthHistogram[depth]++;
+			fanoutHistogram[fanout]++;
+			maxDepth = Math.max(maxDepth, depth);
+			maxFanout = Math.max(maxFanout, fanout);
+		}
+
+		/**
+		 * 删除一个已经添加的节点,用于覆盖层替换基础词典中的节点.
+		 *
+		 * @param depth
+		 *            添加时的深度
+		 * @param fanout
+		 *            添加时子节点的数量
+		 */
+		void removeNode(int depth, int fanout) {
+			nodeCount--;
+			edgeCount -= fanout;
+			depthHistogram[depth]--;
+			fanoutHistogram[fanout]--;
+			while (maxDepth > 0 && depthHistogram[maxDepth] == 0) {
+				maxDepth--;
+			}
+			while (maxFanout > 0 && fanoutHistogram[maxFanout] == 0) {
+				maxFanout--;
+			}
+		}
+
+		/**
+		 * 添加一个单词.
+		 *
+		 * @param types
+		 *            单词的类型,多个类型用“,”隔开,null-没有类型
+		 */
+		void addToken(String types) {
+			count(types, 1);
+			tokenCount++;
+		}
+
+		/**
+		 * 删除一个已经添加的单词,用于覆盖层修改或者删除了基础词典中的单词.
+		 *
+		 * @param types
+		 *            添加时的类型
+		 */
+		void removeToken(String types) {
+			count(types, -1);
+			tokenCount--;
+		}
+
+		private void count(String types, int delta) {
+			int[] count = typeSetCounts.get(types);
+			if (count == null) {
+				count = new int[1];
+				typeSetCounts.put(types, count);
+			}
+			count[0] += delta;
+		}
+
+		/**
+		 * 按字符从小到大的顺序添加单词,根据相邻单词的公共前缀得到前缀树的节点,用于不能按节点遍历的词典,比如{@link FstTrie}.
+		 * 添加完所有的单词后需要调用{@link #finishSortedTokens()}.
+		 *
+		 * @param chars
+		 *            单词的字符
+		 * @param offset
+		 *            开始位置
+		 * @param length
+		 *            单词的长度
+		 * @param types
+		 *            单词的类型
+		 */
+		void addSortedToken(int[] chars, int offset, int length, String types) {
+			int common = 0;
+			while (common < pathLength && common < length && path[common] == chars[offset + common]) {
+				common++;
+			}
+			for (int depth = pathLength; depth > common; depth--) {// 之后的单词不会再经过这些节点
+				addNode(depth, childCounts[depth]);
+			}
+			if (length >= path.length) {
+				path = Arrays.copyOf(path, length * 2);
+				childCounts = Arrays.copyOf(childCounts, length * 2 + 1);
+			}
+			if (length > common) {
+				childCounts[common]++;
+			}
+			for (int depth = common + 1; depth <= length; depth++) {
+				path[depth - 1] = chars[offset + depth - 1];
+				childCounts[depth] = depth < length ? 1 : 0;
+			}
+			pathLength = length;
+			addToken(types);
+		}
+
+		/**
+		 * 按顺序添加完所有的单词,添加最后一个单词路径上的节点和根节点.
+		 */
+		void finishSortedTokens() {
+			for (int depth = pathLength; depth >= 0; depth--) {
+				addNode(depth, childCounts[depth]);
+			}
+			pathLength = 0;
+			childCounts[0] = 0;
+		}
+
+		/**
+		 * 加上其他统计信息的节点和单词,比如覆盖层的基础词典.
+		 *
+		 * @param stats
+		 *            统计信息
+		 */
+		void add(DictionaryStats stats) {
+			for (int depth = 0; depth < stats.depthHistogram.length; depth++) {
+				addNodes(depth, -1, stats.depthHistogram[depth]);
+			}
+			for (int fanout = 0; fanout < stats.fanoutHistogram.length; fanout++) {
+				addNodes(-1, fanout, stats.fanoutHistogram[fanout]);
+			}
+			nodeCount += stats.nodeCount;
+			edgeCount += stats.edgeCount;
+			for (Map.Entry<String, Integer> entry : stats.typeCounts.entrySet()) {// 拆分后按单个类型计数
+				count(entry.getKey(), entry.getValue());
+			}
+			count(null, stats.untypedTokenCount);
+			tokenCount += stats.tokenCount;
+		}
+
+		private void addNodes(int depth, int fanout, long count) {
+			if (count == 0) {
+				return;
+			}
+			if (depth >= 0) {
+				if (depth >= depthHistogram.length) {
+					depthHistogram = Arrays.copyOf(depthHistogram, depth + 1);
+				}
+				depthHistogram[depth] += count;
+				maxDepth = Math.max(maxDepth, depth);
+			} else {
+				if (fanout >= fanoutHistogram.length) {
+					fanoutHistogram = Arrays.copyOf(fanoutHistogram, fanout + 1);
+				}
+				fanoutHistogram[fanout] += count;
+				maxFanout = Math.max(maxFanout, fanout);
+			}
+		}
+
+		/**
+		 * @param heapBytes
+		 *            估算的jvm堆内存
+		 * @param offHeapBytes
+		 *            内存映射的字节数
+		 * @return 统计信息
+		 */
+		DictionaryStats build(long heapBytes, long offHeapBytes) {
+			return new DictionaryStats(this, heapBytes, offHeapBytes, null);
+		}
+	}
+}
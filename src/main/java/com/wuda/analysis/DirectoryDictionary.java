@@ -0,0 +1,2012 @@
+package com.wuda.analysis;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.wuda.Constant;
+import com.wuda.analysis.FileDictionaryHandler.DictType;
+
+/**
+ * 一个词典目录的词典.保存这个目录的快照,负责加载,监控目录和增量更新,见{@link FileDictionaryHandler}.
+ * <ul>
+ * <li>词典是延迟加载的,在加载完成之前返回的词典可能是空的,或者只包含部分单词;不管调用多少次{@link #loadAll(boolean)},
+ * 真正去词典文件中加载词典只会是一次</li>
+ * <li>词典文件发生变化时,在后台和上一次加载的内容比较,只添加新增的单词,删除被删除的单词,然后构建新的{@link DictionarySnapshot}
+ * 并整体替换.不能增量更新时(比如还没有完成第一次加载)重新加载所有的词典文件.已经获取的词典不会被修改,
+ * 第一次加载期间发布的部分词典也是单独的一份,之后添加的单词不会出现在其中,因此每处理一个新的文本时应该重新获取词典</li>
+ * <li>不同目录中的词典文件完全相同(名称和内容,并且引擎和内存预算也相同)时,加载完成后共享同一个不可修改的快照,
+ * 内存只和不同的词典的数量有关,和使用词典的索引数量无关</li>
+ * </ul>
+ * 
+ * @author wuda
+ *
+ */
+final class DirectoryDictionary {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/**
+	 * 词典目录,规范化的路径.
+	 */
+	private final String directory;
+	/**
+	 * 词典引擎.
+	 */
+	private volatile DictEngine engine;
+	/**
+	 * 加载单词时使用的内存预算,字节数,小于等于0表示不限制.
+	 */
+	private volatile long memoryBudget;
+	/**
+	 * 加载词典文件的安排.
+	 */
+	private volatile DictLoadScheduler loadScheduler;
+	/**
+	 * 加载单词时使用的锁.
+	 */
+	private final Object dictLock = new Object();
+	/**
+	 * 加载文件时每一批添加的单词数量.
+	 */
+	private static final int LOAD_BATCH_SIZE = 65536;
+	/**
+	 * 超过这个大小的文件通过内存映射分块解析,见{@link #loadChunks(FileChannel, long[], boolean, FileLoader)}.
+	 */
+	private static final long CHUNKED_FILE_SIZE = 64L << 20;
+	/**
+	 * 分块解析时每一块的字节数,实际的块按行对齐.
+	 */
+	private static final int CHUNK_SIZE = 16 << 20;
+	/**
+	 * 增量更新时覆盖层最多的单词数量,超过时重新加载所有的词典文件,构建新的基础词典,见{@link OverlayTrie}.
+	 */
+	private static final int MAX_OVERLAY_SIZE = 1 << 16;
+	/**
+	 * 覆盖层超过这个数量的单词时,增量更新之后立即合并到新的双数组中,见{@link #compact(DictionarySnapshot)}.
+	 */
+	private static final int COMPACT_OVERLAY_SIZE = 1 << 12;
+	/**
+	 * 词典目录这么长时间没有变化时,合并较小的覆盖层,毫秒.
+	 */
+	private static final long COMPACT_QUIET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	/**
+	 * 所有目录加载完成的快照,key见{@link #contentKey(Map)}.内容完全相同的目录共享同一个快照,
+	 * 没有目录使用的快照可以被回收.
+	 */
+	private static final Map<String, WeakReference<DictionarySnapshot>> sharedSnapshots = new HashMap<>();
+	/**
+	 * 当前的词典快照.每次加载都会构建新的快照,然后整体替换,已经发布的快照不会再改变,分词时不需要加锁.
+	 */
+	private final AtomicReference<DictionarySnapshot> snapshot = new AtomicReference<>(
+			new DictionarySnapshot(DoubleArrayTrie.build(new HashTrie()), Collections.<String> emptySet(),
+					Collections.<String> emptySet(), Collections.<String> emptyList()));
+	/**
+	 * 正在进行的加载,null-没有.开始新的加载时,还没有完成的加载会被放弃.需要持有{@link #dictLock}.
+	 */
+	private Loading loading = null;
+	/**
+	 * 最近一次完成的加载,词典文件变化时在它的基础上增量更新,null-还没有完成过加载,或者是从编译后的词典文件打开的.
+	 * 需要持有{@link #dictLock}.
+	 */
+	private Loading loaded = null;
+	/**
+	 * 词典的加载状态,修改时需要持有{@link #stateLock}.
+	 */
+	private volatile DictionaryState state = DictionaryState.NOT_STARTED;
+	/**
+	 * 等待加载状态变化时使用的锁.
+	 */
+	private final Object stateLock = new Object();
+	/**
+	 * 词典加载完成的结果.
+	 */
+	private final CompletableFuture<DictionarySnapshot> readyFuture = new CompletableFuture<>();
+	/**
+	 * 当前的快照是否来自离线编译的词典文件,见{@link DictionaryCompiler}.这时只使用编译后的词典文件,忽略词典源文件的变化.
+	 */
+	private volatile boolean offlineLoaded = false;
+	/**
+	 * 停止词是否已经加载完成.
+	 */
+	private final AtomicBoolean stopwordLoadComplete = new AtomicBoolean(false);
+	/**
+	 * 数词是否已经加载完成.
+	 */
+	private final AtomicBoolean numeralLoadComplete = new AtomicBoolean(false);
+	/**
+	 * 量词是否已经加载完成.
+	 */
+	private final AtomicBoolean quantifierLoadComplete = new AtomicBoolean(false);
+
+	/**
+	 * 实际上真正去文件中加载词典的次数,即使{@link #loadAll(boolean)}方法被调用多次,也不一定真正去文件中加载单词.
+	 */
+	private final AtomicInteger actualLoadDictCount = new AtomicInteger(0);
+
+	/**
+	 * 实际上真正去文件中加载词典的次数.
+	 */
+	private final AtomicInteger actualLoadDictCountForLog = new AtomicInteger(0);
+	/**
+	 * 监控词典目录的服务,null-还没有开始监控.
+	 */
+	private volatile WatchService watcher = null;
+	/**
+	 * 是否已经关闭,关闭后停止监控词典目录,正在进行的加载被放弃.
+	 */
+	private volatile boolean closed = false;
+	/**
+	 * 使用这个词典的{@link FileDictionaryHandler}的数量,见{@link FileDictionaryHandler#close()}.
+	 */
+	int references = 0;
+
+	/**
+	 * @param directory
+	 *            词典目录,规范化的路径
+	 * @param engine
+	 *            词典引擎
+	 * @param memoryBudget
+	 *            内存预算,小于等于0表示不限制
+	 * @param loadScheduler
+	 *            加载词典文件的安排
+	 */
+	DirectoryDictionary(String directory, DictEngine engine, long memoryBudget, DictLoadScheduler loadScheduler) {
+		this.directory = directory;
+		this.engine = engine;
+		this.memoryBudget = memoryBudget;
+		this.loadScheduler = loadScheduler;
+	}
+
+	/**
+	 * @return 词典引擎
+	 */
+	DictEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * @return 内存预算
+	 */
+	long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * @return 加载词典文件的安排
+	 */
+	DictLoadScheduler getLoadScheduler() {
+		return loadScheduler;
+	}
+
+	/**
+	 * 设置词典引擎,只在开始加载之前有效.
+	 *
+	 * @param engine
+	 *            词典引擎
+	 */
+	void setEngine(DictEngine engine) {
+		if (state == DictionaryState.NOT_STARTED) {
+			this.engine = engine;
+		}
+	}
+
+	/**
+	 * 设置内存预算,只在开始加载之前有效.
+	 *
+	 * @param memoryBudget
+	 *            字节数,小于等于0表示不限制
+	 */
+	void setMemoryBudget(long memoryBudget) {
+		if (state == DictionaryState.NOT_STARTED) {
+			this.memoryBudget = memoryBudget;
+		}
+	}
+
+	/**
+	 * 设置加载词典文件的安排,只在开始加载之前有效.
+	 *
+	 * @param loadScheduler
+	 *            安排
+	 */
+	void setLoadScheduler(DictLoadScheduler loadScheduler) {
+		if (state == DictionaryState.NOT_STARTED) {
+			this.loadScheduler = loadScheduler;
+		}
+	}
+
+	/**
+	 * 加载所有的单词.多线程延迟加载,即当{@link #getSnapshot()}
+	 * 返回词典对象后,可能也只包含部分单词,因为还在加载中.并且很重要的一点是,词典只会加载一次,即使多次调用此方法,或者多线程调用此方法,
+	 * 都只会真正意义上的去加载词典文件一次.
+	 * 
+	 * @param async
+	 *            是否异步加载
+	 */
+	void loadAll(boolean async) {
+		File dictDir = new File(directory);
+		if (dictDir.isDirectory() == false) {
+			throw new DictionaryHandleException("不是目录?或者此目录不存在?");
+		}
+		if (tryGetLoadAllDictChance() == false) {// 没有获得机会(其他线程已经加载了词典,不需要重复加载词典)
+			return;
+		}
+		advanceState(DictionaryState.LOADING, null);
+		/**
+		 * 监控词典目录.这里只会执行一次.
+		 */
+		startLoadChangedThread();
+		
+		File[] files = listSourceFiles(dictDir);
+		File compiledFile = new File(dictDir, Constant.compiled_dict_file_name);
+		if (CompiledDictionary.isOffline(compiledFile) && loadCompiled(dictDir, files)) {// 不管使用哪种引擎
+			if (files.length > 0) {
+				logger.info("使用离线编译的词典文件" + compiledFile.getName() + ",忽略" + files.length + "个词典源文件");
+			}
+			return;
+		}
+		if (files.length < 1) {
+			advanceState(DictionaryState.READY, snapshot.get());// 没有需要加载的文件
+			return;
+		}
+		if (engine == DictEngine.MAPPED && loadCompiled(dictDir, files)) {
+			return;
+		}
+		if (adoptShared(files)) {
+			return;
+		}
+		/**
+		 * 多线程加载单词,按{@link DictLoadScheduler#order(File[])}的顺序.设置了内存预算时按名称顺序逐个加载,
+		 * 保证超过预算时跳过的总是相同的单词.
+		 */
+		DictLoadScheduler scheduler = loadScheduler;
+		ExecutorService executors = null;
+		if (memoryBudget <= 0) {
+			files = scheduler.order(files);
+		}
+		if (async) {
+			executors = scheduler.newExecutor(memoryBudget > 0 ? 1 : files.length);
+		}
+		logger.info("load dict " + directory + " " + actualLoadDictCountForLog.incrementAndGet() + ", files " + files.length
+				+ ", threads " + (memoryBudget > 0 ? 1 : scheduler.getThreads()) + ", cpu ratio "
+				+ scheduler.getCpuRatio());
+		Loading current = startLoading(files.length);
+		for (File file : files) {
+			Worker worker = new Worker();
+			worker.setFile(file);
+			worker.setLoading(current);
+			if (async && executors != null) {
+				executors.execute(worker);
+			} else {
+				worker.run();
+			}
+
+		}
+		if (async && executors != null) {
+			executors.shutdown();
+		}
+	}
+
+	/**
+	 * 开始一次新的加载,还没有完成的加载会被放弃.没有设置内存预算时使用{@link PartitionedTrie},每个文件的单词按第一个字符分区后并行添加;
+	 * 设置了内存预算时逐个添加,保证超过预算时跳过的总是相同的单词.
+	 *
+	 * @param fileCount
+	 *            需要加载的文件数量
+	 * @return 新的加载
+	 */
+	private Loading startLoading(int fileCount) {
+		synchronized (dictLock) {
+			loading = new Loading(memoryBudget > 0 ? engine.newBuilder() : new PartitionedTrie(engine), fileCount);
+			return loading;
+		}
+	}
+
+	/**
+	 * 从文件中加载词典.
+	 * 
+	 * @param file
+	 *            文件
+	 * @param current
+	 *            单词加载到这里
+	 * @param publish
+	 *            加载完成后是否发布包含部分单词的快照,这样可以一边加载一边使用,见{@link #publishPartial(Loading, DictionarySnapshot)}
+	 */
+	private void loadFromFile(File file, Loading current, boolean publish) {
+		if (file == null || file.isDirectory()) {
+			return;
+		}
+		String fileName = file.getName();
+		DictType dictType = FileDictionaryHandler.getDictType(fileName);
+		byte[] content = null;
+		byte[] digest = null;
+		byte[] compressedContent = null;
+		FileLoader loader = null;
+		try {
+			if (CompressedDictFile.isCompressed(fileName)) {// 不保留原始内容,只保留每一行的哈希值
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					loader = new FileLoader(current, fileName, dictType, -1);
+					long[] bounds = CompressedDictFile.blockGroups(channel, CHUNK_SIZE / 4);
+					if (bounds != null) {// 分块压缩,多个块同时解压
+						loadChunks(channel, bounds, true, loader);
+					} else {
+						try (InputStream in = CompressedDictFile.decompress(Channels.newInputStream(channel))) {
+							DictFileParser.parse(in, dictType, loader);
+						}
+					}
+				}
+			} else if (file.length() > CHUNKED_FILE_SIZE) {
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					loader = new FileLoader(current, fileName, dictType, -1);
+					loadChunks(channel, chunkBounds(channel), false, loader);
+				}
+			} else {
+				content = FileUtils.readFileToByteArray(file);// 保留原始内容,用于之后增量更新
+				loader = new FileLoader(current, fileName, dictType, countLines(content));
+				DictFileParser.parse(content, 0, content.length, dictType, loader);
+			}
+			if (content == null) {// 用于增量更新,以及比较目录的内容,见share(Loading, DictionarySnapshot)
+				MessageDigest md = newDigest();
+				compressedContent = compressedContent(file, md);
+				digest = md.digest();
+			}
+		} catch (IOException e) {
+			logger.warn(e.getMessage() + "\t解析词典文件错误", e);
+			return;
+		}
+		DictionarySnapshot partial = null;
+		synchronized (dictLock) {
+			if (!loader.flush()) {// 已经开始了新的加载
+				return;
+			}
+			current.files.put(fileName,
+					content != null ? new DictFileEntries(dictType, content, loader.hashes, loader.count)
+							: DictFileEntries.unretained(dictType, digest, compressedContent, loader.hashes,
+									loader.count));
+			logger.info("load dict " + fileName + " completed, tokens " + (current.addedTokens - loader.addedTokens)
+					+ ", skipped " + (current.skippedTokens - loader.skippedTokens) + ", estimated bytes "
+					+ current.dict.estimateBytes());
+			if (publish && isPartialDue(current)) {
+				current.publishing = true;
+				current.publishedTokens = current.addedTokens;
+				partial = new DictionarySnapshot(current.dict.copy(), current.stopwords, current.numerals,
+						current.quantifiers, current.skippedTokens);
+			}
+		}
+		if (partial != null) {// 不持有dictLock,其他文件可以继续添加单词
+			publishPartial(current, partial);
+		}
+		if (dictType == DictType.stopword_file) {
+			stopwordLoadComplete.compareAndSet(false, true);
+		} else if (dictType == DictType.numeral_file) {
+			numeralLoadComplete.compareAndSet(false, true);
+		} else if (dictType == DictType.quantifier_file) {
+			quantifierLoadComplete.compareAndSet(false, true);
+		}
+	}
+
+	/**
+	 * 分块解析大文件.每一块单独映射到内存,多个块在{@link DictLoadScheduler#getParallelPool()}中同时解压,解码和解析,
+	 * 然后按在文件中的顺序添加,因此结果和逐行解析整个文件完全相同.同时解析的块不超过线程数量,只需要保存这些块的单词.
+	 * 限制CPU时在当前线程中逐块解析.
+	 * <p>
+	 * 未压缩的块按行对齐.压缩的块解压后不一定按行对齐,每一块只解析完整的行,跨越两块的行在这里拼接后解析.
+	 *
+	 * @param channel
+	 *            文件
+	 * @param bounds
+	 *            每一块的开始位置,最后一个元素是文件的大小,见{@link #chunkBounds(FileChannel)}和
+	 *            {@link CompressedDictFile#blockGroups(FileChannel, long)}
+	 * @param compressed
+	 *            每一块是否是压缩的BGZF块
+	 * @param loader
+	 *            接收单词
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	private void loadChunks(FileChannel channel, long[] bounds, boolean compressed, FileLoader loader)
+			throws IOException {
+		int chunks = bounds.length - 1;
+		ForkJoinPool pool = loader.scheduler.getParallelPool();
+		int window = loader.scheduler.getCpuRatio() >= 1 ? pool.getParallelism() : 0;
+		Deque<Future<ParsedChunk>> pending = new ArrayDeque<>();
+		ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+		int submitted = 0;
+		try {
+			for (int i = 0; i < chunks; i++) {
+				while (submitted < chunks && submitted < i + window) {
+					pending.add(pool.submit(new ChunkParser(channel, bounds[submitted], bounds[submitted + 1],
+							compressed, loader.dictType)));
+					submitted++;
+				}
+				ParsedChunk chunk = window > 0 ? awaitChunk(pending.poll())
+						: new ChunkParser(channel, bounds[i], bounds[i + 1], compressed, loader.dictType).call();
+				partialLine.write(chunk.head, 0, chunk.head.length);
+				if (!chunk.lineEnd) {// 整块都在一行中
+					continue;
+				}
+				DictFileParser.parse(partialLine.toByteArray(), 0, partialLine.size(), loader.dictType, loader);
+				partialLine.reset();
+				for (int j = 0; j < chunk.entries.size() && !loader.abandoned; j++) {
+					loader.onEntry(chunk.entries.getToken(j), chunk.entries.getTokenType(j), 0);
+				}
+				if (loader.abandoned) {
+					return;
+				}
+				partialLine.write(chunk.tail, 0, chunk.tail.length);
+				loader.reportProgress(bounds[i + 1], bounds[chunks], "bytes");
+			}
+			DictFileParser.parse(partialLine.toByteArray(), 0, partialLine.size(), loader.dictType, loader);
+		} finally {
+			for (Future<ParsedChunk> future : pending) {
+				future.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * 等待一块解析完成.
+	 *
+	 * @param future
+	 *            解析的结果
+	 * @return 这一块的单词
+	 * @throws IOException
+	 *             读文件出错,或者等待时被中断
+	 */
+	private static ParsedChunk awaitChunk(Future<ParsedChunk> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("等待解析词典文件时被中断", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new DictionaryHandleException("解析词典文件错误:" + e.getCause());
+		}
+	}
+
+	/**
+	 * 把文件分成按行对齐的块.除了最后一块,每一块在{@link #CHUNK_SIZE}之后的第一个换行符处结束,
+	 * UTF-8编码中换行符不会出现在多字节字符的中间,因此每一块都可以单独解码.
+	 *
+	 * @param channel
+	 *            文件
+	 * @return 每一块的开始位置,最后一个元素是文件的大小
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	private static long[] chunkBounds(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[(int) (size / CHUNK_SIZE) + 2];
+		int count = 0;
+		bounds[count++] = 0;
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = CHUNK_SIZE;
+		while (position < size) {
+			long lineEnd = size;
+			buffer.clear();
+			int read;
+			search: while ((read = channel.read(buffer, position)) > 0) {
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') {
+						lineEnd = position + i + 1;
+						break search;
+					}
+				}
+				position += read;
+				buffer.clear();
+			}
+			if (lineEnd >= size) {
+				break;
+			}
+			bounds[count++] = lineEnd;
+			position = lineEnd + CHUNK_SIZE;
+		}
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * 解析文件中的一块,压缩的块先解压.
+	 */
+	private static final class ChunkParser implements Callable<ParsedChunk> {
+		private final FileChannel channel;
+		private final long start;
+		private final long end;
+		private final boolean compressed;
+		private final DictType dictType;
+
+		ChunkParser(FileChannel channel, long start, long end, boolean compressed, DictType dictType) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.compressed = compressed;
+			this.dictType = dictType;
+		}
+
+		@Override
+		public ParsedChunk call() throws IOException {
+			ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			if (compressed) {
+				content = ByteBuffer.wrap(CompressedDictFile.decompressBlocks(content));
+			}
+			ParsedChunk chunk = new ParsedChunk();
+			int limit = content.limit();
+			int firstLineEnd = 0;
+			while (firstLineEnd < limit && content.get(firstLineEnd) != '\n') {
+				firstLineEnd++;
+			}
+			chunk.lineEnd = firstLineEnd < limit;
+			if (!chunk.lineEnd) {
+				chunk.head = bytes(content, 0, limit);
+				return chunk;
+			}
+			int lastLineEnd = limit - 1;
+			while (content.get(lastLineEnd) != '\n') {
+				lastLineEnd--;
+			}
+			chunk.head = bytes(content, 0, firstLineEnd + 1);
+			chunk.tail = bytes(content, lastLineEnd + 1, limit);
+			content.limit(lastLineEnd + 1).position(firstLineEnd + 1);
+			DictFileParser.parse(content, dictType, chunk.entries);
+			return chunk;
+		}
+
+		private static byte[] bytes(ByteBuffer content, int from, int to) {
+			byte[] bytes = new byte[to - from];
+			for (int i = from; i < to; i++) {
+				bytes[i - from] = content.get(i);
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * 一块中解析出的单词.第一个换行符之前和最后一个换行符之后的内容可能属于跨越两块的行,由调用者拼接后解析.
+	 */
+	private static final class ParsedChunk {
+		/**
+		 * 开头到第一个换行符(包含)的内容,没有换行符时是整块的内容.
+		 */
+		private byte[] head;
+		/**
+		 * 是否有换行符.
+		 */
+		private boolean lineEnd;
+		/**
+		 * 中间的完整的行的单词.
+		 */
+		private final DictFileParser.Entries entries = new DictFileParser.Entries();
+		/**
+		 * 最后一个换行符之后的内容.
+		 */
+		private byte[] tail;
+	}
+
+	/**
+	 * 加载后是否保留文件的内容,用于增量更新和比较目录的内容.大文件和压缩的文件不保留,只保留每一行的哈希值和压缩的内容,
+	 * 见{@link #diffUnretained(File, DictType, DictFileEntries)}.
+	 *
+	 * @param file
+	 *            词典源文件
+	 * @return true-如果保留
+	 */
+	private static boolean isRetained(File file) {
+		return !CompressedDictFile.isCompressed(file.getName()) && file.length() <= CHUNKED_FILE_SIZE;
+	}
+
+	/**
+	 * 文件的行数,最后一行没有换行符时也算一行.
+	 *
+	 * @param content
+	 *            文件的内容
+	 * @return 行数,“\r\n”算两行,因此可能偏大
+	 */
+	private static int countLines(byte[] content) {
+		int lines = 1;
+		for (byte b : content) {
+			if (b == '\n' || b == '\r') {
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * 添加文件中的一个单词.
+	 *
+	 * @param current
+	 *            加载
+	 * @param dictType
+	 *            文件的类型
+	 * @param token
+	 *            单词
+	 * @param tokenType
+	 *            词性,可以是null
+	 */
+	private void addEntry(Loading current, DictType dictType, String token, String tokenType) {
+		if (dictType == DictType.normal) {
+			addToken(current, token, tokenType);
+		} else if (dictType == DictType.stopword_file) {
+			current.stopwords.add(token);
+			addToken(current, token, null);
+		} else if (dictType == DictType.numeral_file) {
+			current.numerals.add(token);
+		} else if (dictType == DictType.quantifier_file) {
+			current.quantifiers.add(token);
+		}
+	}
+
+	/**
+	 * 删除文件中的一个单词.其他文件中还有相同的单词(和词性)时不会删除.
+	 *
+	 * @param current
+	 *            加载,文件的新内容已经保存在{@link Loading#files}中
+	 * @param dictType
+	 *            文件的类型
+	 * @param token
+	 *            单词
+	 * @param tokenType
+	 *            词性,可以是null
+	 */
+	private void removeEntry(Loading current, DictType dictType, String token, String tokenType) {
+		long hash = DictFileEntries.hash(token, tokenType);
+		if (dictType == DictType.numeral_file) {
+			if (!containsEntry(current, dictType, hash)) {
+				current.numerals.remove(token);
+			}
+			return;
+		} else if (dictType == DictType.quantifier_file) {
+			if (!containsEntry(current, dictType, hash)) {
+				current.quantifiers.removeAll(Collections.singleton(token));
+			}
+			return;
+		} else if (dictType == DictType.stopword_file && !containsEntry(current, dictType, hash)) {
+			current.stopwords.remove(token);
+		}
+		MutableTrie dict = current.dict;
+		if (tokenType != null && !containsEntry(current, null, hash)) {
+			dict.remove(token, tokenType);
+		}
+		Trie.Cursor cursor = dict.newCursor();// 覆盖层只能通过游标查找
+		boolean found = true;
+		for (int i = 0; i < token.length() && found; i++) {
+			found = cursor.next(Character.toLowerCase(token.charAt(i)));
+		}
+		if (found && cursor.isTokenEnd() && cursor.getTypes() == null
+				&& !containsEntry(current, null, DictFileEntries.hash(token, null))) {
+			dict.remove(token, null);// 所有的词性都已经删除,并且没有不带词性的单词
+		}
+	}
+
+	/**
+	 * 已经加载的文件中是否包含单词.
+	 *
+	 * @param current
+	 *            加载
+	 * @param dictType
+	 *            只在这种类型的文件中查找,null-在所有添加到词典中的文件(常规词典和停止词)中查找
+	 * @param hash
+	 *            单词的哈希值
+	 * @return true-如果包含
+	 */
+	private boolean containsEntry(Loading current, DictType dictType, long hash) {
+		for (DictFileEntries entries : current.files.values()) {
+			DictType type = entries.getDictType();
+			boolean matched = dictType != null ? type == dictType
+					: type == DictType.normal || type == DictType.stopword_file;
+			if (matched && entries.contains(hash)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 是否需要发布包含部分单词的快照.最后一个文件在加载完成时发布;已经添加的单词比上一次发布时多一倍以上才发布,
+	 * 因此构建部分词典的总时间不超过构建完整词典的时间.设置了内存预算时不发布,复制的前缀树会超过预算.
+	 * 调用者需要持有{@link #dictLock}.
+	 *
+	 * @param current
+	 *            正在进行的加载
+	 * @return true-如果需要
+	 */
+	private boolean isPartialDue(Loading current) {
+		return current.pendingFiles.get() > 1 && !current.publishing && memoryBudget <= 0
+				&& current.addedTokens > current.publishedTokens * 2;
+	}
+
+	/**
+	 * 发布包含部分单词的快照.在复制的前缀树上构建,不持有{@link #dictLock},其他文件可以同时添加单词;tree和hash引擎直接发布
+	 * 这个复制,之后添加的单词不会修改已经发布的词典.构建完成时加载已经完成或者被放弃的话不再发布,不会覆盖完整的快照.
+	 *
+	 * @param current
+	 *            正在进行的加载
+	 * @param copied
+	 *            持有{@link #dictLock}时复制的前缀树和集合
+	 */
+	private void publishPartial(Loading current, DictionarySnapshot copied) {
+		long startTime = System.currentTimeMillis();
+		DictionarySnapshot published = copied.withDictionary(scheduled(engine.compile((MutableTrie) copied.getDictionary())));
+		synchronized (dictLock) {
+			current.publishing = false;
+			if (current != loading) {
+				return;
+			}
+			snapshot.set(published);
+		}
+		advanceState(DictionaryState.PARTIAL, published);
+		logger.info("build " + engine.getEngineKey() + " partial dict completed, words "
+				+ published.getDictionary().size() + ", " + (System.currentTimeMillis() - startTime) + "ms");
+	}
+
+	/**
+	 * 双数组结构的前缀树在这个目录的{@link DictLoadScheduler#getParallelPool()}中编译自动机,不为每个前缀树创建线程.
+	 *
+	 * @param trie
+	 *            将要发布的前缀树
+	 * @return trie
+	 */
+	private Trie scheduled(Trie trie) {
+		if (trie instanceof AbstractDoubleArrayTrie) {
+			((AbstractDoubleArrayTrie) trie).setLoadScheduler(loadScheduler);
+		}
+		return trie;
+	}
+
+	/**
+	 * 由加载的所有单词构建新的快照并发布,调用者需要持有{@link #dictLock}.只在加载完成或者增量更新时调用,
+	 * 之后不再修改加载时的前缀树.
+	 *
+	 * @param current
+	 *            完成的加载
+	 * @return 新的快照
+	 */
+	private DictionarySnapshot publish(Loading current) {
+		long startTime = System.currentTimeMillis();
+		Trie compiled = scheduled(engine.compile(current.dict));
+		DictionarySnapshot published = new DictionarySnapshot(compiled, current.stopwords, current.numerals,
+				current.quantifiers, current.skippedTokens);
+		snapshot.set(published);
+		advanceState(DictionaryState.PARTIAL, published);
+		logger.info("build " + engine.getEngineKey() + " dict completed, words " + compiled.size() + ", "
+				+ (System.currentTimeMillis() - startTime) + "ms");
+		return published;
+	}
+
+	/**
+	 * 加载完成,发布最终的快照.
+	 *
+	 * @param current
+	 *            加载
+	 */
+	private void finishLoading(Loading current) {
+		DictionarySnapshot published = null;
+		synchronized (dictLock) {
+			if (current != loading) {// 已经开始了新的加载
+				return;
+			}
+			published = share(current, publish(current));
+			loading = null;
+			logger.info("load all dict completed, tokens " + current.addedTokens + ", skipped " + current.skippedTokens
+					+ ", estimated bytes " + current.dict.estimateBytes() + ", memory budget " + memoryBudget);
+			keepForUpdate(current);
+		}
+		advanceState(DictionaryState.READY, published);// 不持有dictLock,等待的线程可以立即使用词典
+		saveCompiled(published);
+	}
+
+	/**
+	 * 保留已经完成的加载,用于之后增量更新.增量更新时从发布的词典复制出{@link MutableTrie},不再保留加载时的前缀树,节省内存.
+	 *
+	 * @param current
+	 *            已经完成并且发布的加载
+	 */
+	private void keepForUpdate(Loading current) {
+		current.dict = null;
+		loaded = current;
+	}
+
+	/**
+	 * 获取可以修改的前缀树.已经发布的词典不能修改,在它上面创建{@link OverlayTrie},只复制覆盖层,不复制发布的词典.
+	 * {@link DictEngine#MAPPED}需要把更新后的词典写入{@link CompiledDictionary},仍然复制整个词典然后重新构建.
+	 *
+	 * @param current
+	 *            已经完成的加载
+	 * @return 前缀树
+	 */
+	private MutableTrie getMutableDict(Loading current) {
+		Trie published = snapshot.get().getDictionary();
+		if (current.dict != null && current.dict != published) {
+			return current.dict;
+		}
+		if (published instanceof OverlayTrie) {
+			return ((OverlayTrie) published).copy();
+		} else if (engine != DictEngine.MAPPED) {
+			return new OverlayTrie(published);
+		} else if (published instanceof MutableTrie) {
+			return ((MutableTrie) published).copy();
+		}
+		return HashTrie.copyOf(published);
+	}
+
+	/**
+	 * 增量更新变化的词典文件.在{@link #dictLock}之外读取变化的文件并和上一次加载的内容比较,只在修改前缀树和发布时持有锁,
+	 * 比较期间其他线程可以获取快照和统计信息.
+	 *
+	 * @param files
+	 *            变化(包括新增和删除)的词典源文件
+	 * @return true-如果更新了,false-如果不能增量更新,需要重新加载所有的词典文件
+	 */
+	private boolean update(Set<File> files) {
+		Loading current;
+		Map<String, DictFileEntries> previous = new HashMap<>();
+		synchronized (dictLock) {
+			current = loaded;
+			if (current == null || loading != null || current.budgetExceeded) {
+				return false;
+			}
+			Trie dict = snapshot.get().getDictionary();
+			if (dict instanceof OverlayTrie && ((OverlayTrie) dict).getOverlaySize() > MAX_OVERLAY_SIZE) {
+				return false;// 重新加载,把覆盖层合并到基础词典中
+			}
+			for (File file : files) {
+				previous.put(file.getName(), current.files.get(file.getName()));
+			}
+		}
+		long startTime = System.currentTimeMillis();
+		List<FileUpdate> updates = new ArrayList<>();
+		for (File file : files) {
+			try {
+				FileUpdate update = diffFile(file, previous.get(file.getName()));
+				if (update != null) {
+					updates.add(update);
+				}
+			} catch (IOException e) {
+				logger.warn(e.getMessage() + "\t解析词典文件错误", e);
+			}
+		}
+		if (updates.isEmpty()) {// 只是修改时间变化了
+			return true;
+		}
+		DictionarySnapshot published = null;
+		synchronized (dictLock) {
+			if (loaded != current || loading != null) {// 比较期间开始了重新加载,或者使用了编译后的词典
+				return false;
+			}
+			current.dict = getMutableDict(current);
+			for (FileUpdate update : updates) {
+				applyUpdate(current, update);
+			}
+			published = share(current, publish(current));
+			keepForUpdate(current);
+		}
+		logger.info("update dict completed, " + files.size() + " files, " + (System.currentTimeMillis() - startTime)
+				+ "ms");
+		saveCompiled(published);
+		if (isCompactable(published)
+				&& ((OverlayTrie) published.getDictionary()).getOverlaySize() > COMPACT_OVERLAY_SIZE) {
+			compact(published);
+		}
+		return true;
+	}
+
+	/**
+	 * @param published
+	 *            发布的快照
+	 * @return true-如果可以合并覆盖层,见{@link #compact(DictionarySnapshot)}
+	 */
+	private boolean isCompactable(DictionarySnapshot published) {
+		return engine == DictEngine.DOUBLE_ARRAY && published.getDictionary() instanceof OverlayTrie;
+	}
+
+	/**
+	 * 增量更新发布了{@link OverlayTrie}之后,把覆盖层合并到新构建的{@link DoubleArrayTrie}中并替换快照,这样分词时又可以使用
+	 * {@link AhoCorasick}自动机.合并需要复制整个词典,因此只在覆盖层超过{@link #COMPACT_OVERLAY_SIZE}个单词,
+	 * 或者目录{@link #COMPACT_QUIET_MILLIS}没有变化时合并,复制需要的内存超过预算时不合并.
+	 * 在监控目录的线程中构建,不持有{@link #dictLock},构建期间继续使用覆盖层;快照已经被替换时放弃.
+	 * 合并后的快照替换共享的快照,内容相同的其他目录合并时直接使用它.其他引擎没有自动机,继续使用覆盖层,见{@link #MAX_OVERLAY_SIZE}.
+	 *
+	 * @param published
+	 *            发布的快照
+	 */
+	private void compact(DictionarySnapshot published) {
+		if (!isCompactable(published)) {
+			return;
+		}
+		String key;
+		synchronized (dictLock) {
+			if (snapshot.get() != published || loaded == null) {
+				return;
+			}
+			key = contentKey(loaded);
+		}
+		DictionarySnapshot shared = getShared(key);
+		if (shared != null && shared != published && !(shared.getDictionary() instanceof OverlayTrie)) {
+			synchronized (dictLock) {// 内容相同的其他目录已经合并了
+				snapshot.compareAndSet(published, shared);
+			}
+			return;
+		}
+		if (memoryBudget > 0) {
+			long estimated = HashTrie.estimateBytes(published.getStats().getEdgeCount());
+			if (estimated > memoryBudget) {
+				logger.warn("合并覆盖层预估内存" + estimated + "字节,超过了预算" + memoryBudget + "字节,继续使用覆盖层");
+				return;
+			}
+		}
+		long startTime = System.currentTimeMillis();
+		Trie compacted = scheduled(engine.compile(HashTrie.copyOf(published.getDictionary())));
+		DictionarySnapshot replaced = published.withDictionary(compacted);
+		synchronized (dictLock) {
+			if (!snapshot.compareAndSet(published, replaced)) {
+				return;
+			}
+			synchronized (sharedSnapshots) {
+				if (getShared(key) == published) {
+					sharedSnapshots.put(key, new WeakReference<>(replaced));
+				}
+			}
+		}
+		logger.info("compact " + engine.getEngineKey() + " dict completed, words " + compacted.size() + ", "
+				+ (System.currentTimeMillis() - startTime) + "ms");
+	}
+
+	/**
+	 * 比较文件上一次加载的内容和现在的内容,得到新增的单词和被删除的单词.不修改前缀树,不需要持有{@link #dictLock}.
+	 *
+	 * @param file
+	 *            变化的文件,可能已经被删除
+	 * @param old
+	 *            文件上一次加载的内容,null-新增的文件
+	 * @return 比较的结果,null-如果内容没有变化
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	private static FileUpdate diffFile(File file, DictFileEntries old) throws IOException {
+		String fileName = file.getName();
+		DictType dictType = FileDictionaryHandler.getDictType(fileName);
+		if (old != null && old.getContent() == null || file.isFile() && !isRetained(file)) {
+			return diffUnretained(file, dictType, old);
+		}
+		byte[] content = file.isFile() ? FileUtils.readFileToByteArray(file) : null;
+		if (old == null && content == null) {
+			return null;
+		} else if (old != null && content != null && Arrays.equals(old.getContent(), content)) {
+			return null;// 只是修改时间变化了
+		}
+		FileUpdate update = new FileUpdate(fileName, dictType, old);
+		if (old == null) {
+			DictFileParser.parse(content, 0, content.length, dictType, update.added);
+		} else if (content == null) {
+			DictFileParser.parse(old.getContent(), 0, old.getContent().length, dictType, update.removed);
+		} else {// 只解析变化的行
+			int[] region = old.changedRegion(content);
+			DictFileParser.parse(old.getContent(), region[0], region[1], dictType, update.removed);
+			DictFileParser.parse(content, region[0], region[2], dictType, update.added);
+		}
+		if (content != null) {
+			update.updated = old == null
+					? new DictFileEntries(dictType, content, update.added.getHashes(), update.added.size())
+					: old.update(content, update.removed.getHashes(), update.removed.size(),
+							update.added.getHashes(), update.added.size());
+		}
+		return update;
+	}
+
+	/**
+	 * 比较没有保留原始内容的文件,比较的一方是大文件或者压缩的文件.重新解析整个文件,记录上一次没有的单词;和保存的哈希值比较
+	 * 得到删除的行,被删除的单词从这个文件上一次的内容中找到,见{@link DictFileEntries#findEntries(long[], DictFileParser.Entries)}.
+	 * 只读取和解析这一个文件,不遍历词典.
+	 *
+	 * @param file
+	 *            变化的文件,可能已经被删除
+	 * @param dictType
+	 *            文件的类型
+	 * @param old
+	 *            文件上一次加载的内容,null-新增的文件
+	 * @return 比较的结果,null-如果内容没有变化
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	private static FileUpdate diffUnretained(File file, DictType dictType, DictFileEntries old) throws IOException {
+		if (!file.isFile() && old == null) {
+			return null;
+		}
+		FileUpdate update = new FileUpdate(file.getName(), dictType, old);
+		if (file.isFile()) {
+			UpdatedEntries entries = new UpdatedEntries(old, update.added);
+			if (isRetained(file)) {
+				byte[] content = FileUtils.readFileToByteArray(file);
+				if (old != null && Arrays.equals(old.getDigest(), newDigest().digest(content))) {
+					return null;// 只是修改时间变化了
+				}
+				DictFileParser.parse(content, 0, content.length, dictType, entries);
+				update.updated = new DictFileEntries(dictType, content, entries.hashes, entries.count);
+			} else {
+				MessageDigest md = newDigest();
+				byte[] compressedContent = compressedContent(file, md);
+				byte[] digest = md.digest();
+				if (old != null && Arrays.equals(old.getDigest(), digest)) {
+					return null;
+				}
+				try (InputStream in = CompressedDictFile.decompress(new ByteArrayInputStream(compressedContent))) {
+					DictFileParser.parse(in, dictType, entries);
+				}
+				update.updated = DictFileEntries.unretained(dictType, digest, compressedContent, entries.hashes,
+						entries.count);
+			}
+		}
+		if (old != null) {
+			old.findEntries(old.removedHashes(update.updated), update.removed);
+		}
+		return update;
+	}
+
+	/**
+	 * 把比较的结果应用到前缀树和集合中,调用者需要持有{@link #dictLock}.其他行中还有的单词不删除,上一次已经有的单词不添加.
+	 *
+	 * @param current
+	 *            已经完成的加载
+	 * @param update
+	 *            {@link #diffFile(File, DictFileEntries)}的结果
+	 */
+	private void applyUpdate(Loading current, FileUpdate update) {
+		if (update.updated == null) {
+			current.files.remove(update.fileName);
+		} else {
+			current.files.put(update.fileName, update.updated);
+		}
+		DictFileParser.Entries removedEntries = update.removed;
+		int removed = 0;
+		for (int i = 0; i < removedEntries.size(); i++) {
+			if (update.updated == null || !update.updated.contains(removedEntries.getHash(i))) {
+				removeEntry(current, update.dictType, removedEntries.getToken(i), removedEntries.getTokenType(i));
+				removed++;
+			}
+		}
+		DictFileParser.Entries addedEntries = update.added;
+		int added = 0;
+		for (int i = 0; i < addedEntries.size(); i++) {
+			if (update.old == null || !update.old.contains(addedEntries.getHash(i))) {
+				addEntry(current, update.dictType, addedEntries.getToken(i), addedEntries.getTokenType(i));
+				added++;
+			}
+		}
+		logger.info("update dict " + update.fileName + " completed, added " + added + ", removed " + removed);
+	}
+
+	/**
+	 * 重新加载所有的词典源文件.在后台构建新的快照,完成之前继续使用当前的快照.
+	 */
+	private void reload() {
+		File[] files = listSourceFiles(new File(directory));
+		Loading current = startLoading(files.length);
+		for (File file : files) {
+			loadFromFile(file, current, false);
+		}
+		finishLoading(current);
+	}
+
+	/**
+	 * 打开编译后的词典文件.只有文件存在,并且是离线编译的,或者词典源文件在写入之后没有变化时才会使用.
+	 *
+	 * @param dictDir
+	 *            词典目录
+	 * @param files
+	 *            词典源文件
+	 * @return true-如果成功打开
+	 */
+	private boolean loadCompiled(File dictDir, File[] files) {
+		File file = new File(dictDir, Constant.compiled_dict_file_name);
+		if (!file.isFile()) {
+			return false;
+		}
+		long startTime = System.currentTimeMillis();
+		CompiledDictionary compiled = null;
+		try {
+			compiled = CompiledDictionary.open(file);
+		} catch (IOException e) {
+			logger.warn(e.getMessage() + "\t打开编译后的词典文件错误,重新加载词典源文件", e);
+			return false;
+		}
+		if (!compiled.isOffline() && compiled.getFingerprint() != CompiledDictionary.fingerprint(files, memoryBudget)) {
+			logger.info("词典源文件在" + file.getName() + "写入之后发生了变化,重新加载词典源文件");
+			return false;
+		}
+		synchronized (dictLock) {
+			loaded = null;// 不能在编译后的词典上增量更新
+			offlineLoaded = compiled.isOffline();
+			snapshot.set(new DictionarySnapshot(scheduled(compiled.getTrie()), compiled.getStopwords(),
+					compiled.getNumerals(), compiled.getQuantifiers()));
+		}
+		advanceState(DictionaryState.READY, snapshot.get());
+		if (!compiled.getStopwords().isEmpty()) {
+			stopwordLoadComplete.compareAndSet(false, true);
+		}
+		if (!compiled.getNumerals().isEmpty()) {
+			numeralLoadComplete.compareAndSet(false, true);
+		}
+		if (!compiled.getQuantifiers().isEmpty()) {
+			quantifierLoadComplete.compareAndSet(false, true);
+		}
+		logger.info("map dict " + file.getName() + " completed, words " + compiled.getTrie().size() + ", "
+				+ (System.currentTimeMillis() - startTime) + "ms");
+		return true;
+	}
+
+	/**
+	 * 使用{@link DictEngine#MAPPED}时,把快照中的词典写入编译后的词典文件,然后用映射的词典替换快照.写入失败,
+	 * 或者快照已经被替换时继续使用原来的快照.
+	 *
+	 * @param published
+	 *            刚刚发布的快照
+	 */
+	private void saveCompiled(DictionarySnapshot published) {
+		if (engine != DictEngine.MAPPED || !(published.getDictionary() instanceof DoubleArrayTrie)) {
+			return;
+		}
+		synchronized (dictLock) {
+			if (snapshot.get() != published) {
+				return;
+			}
+			File dictDir = new File(directory);
+			File file = new File(dictDir, Constant.compiled_dict_file_name);
+			if (CompiledDictionary.isOffline(file)) {// 不覆盖离线编译的词典文件
+				return;
+			}
+			long startTime = System.currentTimeMillis();
+			try {
+				CompiledDictionary.write(file, (DoubleArrayTrie) published.getDictionary(), published.getStopwords(),
+						published.getNumerals(), published.getQuantifiers(),
+						CompiledDictionary.fingerprint(listSourceFiles(dictDir), memoryBudget));
+				Trie mapped = scheduled(CompiledDictionary.open(file).getTrie());
+				snapshot.compareAndSet(published, published.withDictionary(mapped));
+			} catch (IOException e) {
+				logger.warn(e.getMessage() + "\t写入编译后的词典文件错误", e);
+				return;
+			}
+			logger.info("write dict " + file.getName() + " completed, " + file.length() + " bytes, "
+					+ (System.currentTimeMillis() - startTime) + "ms");
+		}
+	}
+
+	/**
+	 * 列出词典目录中的词典源文件,编译后的词典文件不包括在内.
+	 *
+	 * @param dictDir
+	 *            词典目录
+	 * @return 词典源文件
+	 */
+	private File[] listSourceFiles(File dictDir) {
+		File[] files = dictDir.listFiles();
+		if (files == null) {
+			return new File[0];
+		}
+		List<File> sourceFiles = new ArrayList<>(files.length);
+		for (File file : files) {
+			if (isSourceFile(file)) {
+				sourceFiles.add(file);
+			}
+		}
+		Collections.sort(sourceFiles);// 按名称排序,每次都以相同的顺序加载
+		return sourceFiles.toArray(new File[sourceFiles.size()]);
+	}
+
+	/**
+	 * 是否是词典源文件.
+	 *
+	 * @param file
+	 *            文件
+	 * @return true-如果是
+	 */
+	private boolean isSourceFile(File file) {
+		return file.isFile() && isSourceFileName(file.getName());
+	}
+
+	/**
+	 * 是否是词典源文件的名称,用于已经被删除的文件.
+	 *
+	 * @param fileName
+	 *            文件名称
+	 * @return true-如果是
+	 */
+	private boolean isSourceFileName(String fileName) {
+		return !fileName.startsWith(Constant.compiled_dict_file_name);
+	}
+
+	/**
+	 * 添加一个token,超过内存预算后不再添加.
+	 *
+	 * @param current
+	 *            正在进行的加载
+	 * @param token
+	 *            token
+	 * @param tokenType
+	 *            token类型
+	 * @return true-如果添加了,false-因为超过内存预算而跳过
+	 */
+	private boolean addToken(Loading current, String token, String tokenType) {
+		if (current.budgetExceeded) {
+			current.skippedTokens++;
+			return false;
+		}
+		current.dict.add(token, tokenType);
+		current.addedTokens++;
+		if (memoryBudget > 0 && current.dict.estimateBytes() > memoryBudget) {
+			onBudgetExceeded(current);
+		}
+		return true;
+	}
+
+	/**
+	 * 超过了内存预算.如果正在使用{@link TreeTrie},先转换成占用内存更少的{@link HashTrie},仍然超过时之后的单词都不再添加.
+	 *
+	 * @param current
+	 *            正在进行的加载
+	 */
+	private void onBudgetExceeded(Loading current) {
+		long estimated = current.dict.estimateBytes();
+		if (current.dict instanceof TreeTrie) {
+			current.dict = HashTrie.copyOf(current.dict);
+			logger.warn("词典预估内存" + estimated + "字节,超过了预算" + memoryBudget + "字节,改为使用"
+					+ DictEngine.HASH.getEngineKey() + "加载,预估内存" + current.dict.estimateBytes() + "字节");
+			estimated = current.dict.estimateBytes();
+			if (estimated <= memoryBudget) {
+				return;
+			}
+		}
+		current.budgetExceeded = true;
+		logger.warn("词典预估内存" + estimated + "字节,超过了预算" + memoryBudget + "字节,已经加载" + current.addedTokens
+				+ "个单词,之后的单词都不再加载");
+	}
+
+	/**
+	 * 加载改变的单词.
+	 * 
+	 */
+	private void loadChanged() {
+		Path dir = Paths.get(directory);
+		WatchService watcher = null;
+		try {
+			watcher = FileSystems.getDefault().newWatchService();
+			dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+		} catch (IOException e) {
+			logger.warn(e.getMessage(), e);
+			return;
+		}
+		this.watcher = watcher;
+		if (closed) {// 开始监控之前已经关闭
+			closeWatcher();
+			return;
+		}
+		boolean compactPending = false;// 发布了较小的覆盖层,目录一段时间没有变化时合并
+		while (!closed) {
+			WatchKey watchKey = null;
+			try {
+				if (compactPending) {
+					watchKey = watcher.poll(COMPACT_QUIET_MILLIS, TimeUnit.MILLISECONDS);
+					if (watchKey == null) {
+						compactPending = false;
+						compact(snapshot.get());
+						continue;
+					}
+				} else {
+					watchKey = watcher.take();
+				}
+			} catch (InterruptedException e) {
+				logger.warn(e.getMessage(), e);
+				return;
+			} catch (ClosedWatchServiceException e) {// 已经关闭
+				return;
+			}
+			if (watchKey != null) {
+				Set<File> changed = new LinkedHashSet<>();
+				boolean compiledChanged = false;
+				for (WatchEvent<?> event : watchKey.pollEvents()) {
+					WatchEvent.Kind<?> kind = event.kind();
+					if (kind == StandardWatchEventKinds.ENTRY_CREATE || kind == StandardWatchEventKinds.ENTRY_MODIFY
+							|| kind == StandardWatchEventKinds.ENTRY_DELETE) {
+						// The filename is the
+						// context of the event.
+						@SuppressWarnings("unchecked")
+						WatchEvent<Path> ev = (WatchEvent<Path>) event;
+						Path filename = ev.context();
+						File file = new File(directory, filename.toString());
+						if (file.getName().equals(Constant.compiled_dict_file_name)
+								&& kind != StandardWatchEventKinds.ENTRY_DELETE && CompiledDictionary.isOffline(file)) {
+							compiledChanged = true;// 发布了新的离线编译的词典文件
+						}
+						if (kind == StandardWatchEventKinds.ENTRY_DELETE ? !isSourceFileName(file.getName())
+								: !isSourceFile(file)) {
+							continue;
+						}
+						changed.add(file);
+
+						/**
+						 * log
+						 */
+						StringBuilder builder = new StringBuilder("词典目录发生变化,kind=");
+						builder.append(kind.name());
+						builder.append(",变化的是：");
+						builder.append(filename.toString());
+						logger.info(builder.toString());
+					}
+				}
+				if (compiledChanged) {
+					loadCompiled(new File(directory), new File[0]);
+				} else if (!changed.isEmpty() && offlineLoaded) {
+					logger.info("使用离线编译的词典文件,忽略词典源文件的变化");
+				} else if (!changed.isEmpty() && !update(changed)) {// 一批变化只更新一次
+					reload();
+				}
+				compactPending = isCompactable(snapshot.get());
+				watchKey.reset();// 重新监听
+			}
+		}
+	}
+
+	/**
+	 * 关闭词典.停止监控词典目录,放弃正在进行的加载,已经获取的快照仍然可以使用.
+	 */
+	void close() {
+		closed = true;
+		synchronized (dictLock) {
+			loading = null;
+		}
+		closeWatcher();
+	}
+
+	private void closeWatcher() {
+		WatchService watcher = this.watcher;
+		if (watcher != null) {
+			try {
+				watcher.close();
+			} catch (IOException e) {
+				logger.warn(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * 如果其他目录已经加载了内容完全相同的词典,直接使用它的快照,不需要再加载.之后词典文件变化时重新加载所有的词典文件.
+	 *
+	 * @param files
+	 *            词典源文件
+	 * @return true-如果使用了其他目录的快照
+	 */
+	private boolean adoptShared(File[] files) {
+		if (engine == DictEngine.MAPPED) {// 操作系统已经共享了编译后的词典文件
+			return false;
+		}
+		synchronized (sharedSnapshots) {
+			if (sharedSnapshots.isEmpty()) {// 不需要计算文件的摘要
+				return false;
+			}
+		}
+		Map<String, byte[]> digests = new HashMap<>();
+		try {
+			for (File file : files) {
+				digests.put(file.getName(), digest(file));
+			}
+		} catch (IOException e) {
+			logger.warn(e.getMessage() + "\t读取词典文件错误", e);
+			return false;
+		}
+		DictionarySnapshot shared = getShared(contentKey(digests));
+		if (shared == null) {
+			return false;
+		}
+		synchronized (dictLock) {
+			snapshot.set(shared);
+		}
+		stopwordLoadComplete.set(true);
+		numeralLoadComplete.set(true);
+		quantifierLoadComplete.set(true);
+		logger.info("load dict " + directory + ", files " + files.length
+				+ ", same as a loaded directory, sharing its dict, words " + shared.getDictionary().size());
+		advanceState(DictionaryState.READY, shared);
+		return true;
+	}
+
+	/**
+	 * 共享加载完成的快照.如果其他目录已经加载了内容完全相同的词典,改为使用它的快照,否则登记这个快照.调用者需要持有{@link #dictLock}.
+	 *
+	 * @param current
+	 *            完成的加载
+	 * @param published
+	 *            刚刚发布的快照
+	 * @return 使用的快照
+	 */
+	private DictionarySnapshot share(Loading current, DictionarySnapshot published) {
+		if (engine == DictEngine.MAPPED) {
+			return published;
+		}
+		String key = contentKey(current);
+		synchronized (sharedSnapshots) {
+			DictionarySnapshot shared = getShared(key);
+			if (shared != null) {
+				snapshot.set(shared);
+				return shared;
+			}
+			sharedSnapshots.put(key, new WeakReference<>(published));
+			return published;
+		}
+	}
+
+	/**
+	 * 计算加载的内容的key,调用者需要持有{@link #dictLock}.
+	 *
+	 * @param current
+	 *            完成的加载
+	 * @return 见{@link #contentKey(Map)}
+	 */
+	private String contentKey(Loading current) {
+		Map<String, byte[]> digests = new HashMap<>();
+		for (Map.Entry<String, DictFileEntries> entry : current.files.entrySet()) {
+			digests.put(entry.getKey(), entry.getValue().getDigest());
+		}
+		return contentKey(digests);
+	}
+
+	/**
+	 * 获取共享的快照,同时清除已经被回收的快照.
+	 *
+	 * @param key
+	 *            见{@link #contentKey(Map)}
+	 * @return 快照,null-如果没有
+	 */
+	private static DictionarySnapshot getShared(String key) {
+		synchronized (sharedSnapshots) {
+			Iterator<WeakReference<DictionarySnapshot>> iterator = sharedSnapshots.values().iterator();
+			while (iterator.hasNext()) {
+				if (iterator.next().get() == null) {
+					iterator.remove();
+				}
+			}
+			WeakReference<DictionarySnapshot> reference = sharedSnapshots.get(key);
+			return reference == null ? null : reference.get();
+		}
+	}
+
+	/**
+	 * 计算词典内容的key.词典引擎,内存预算,所有词典文件的名称和内容都相同时key相同,和目录无关.
+	 *
+	 * @param digests
+	 *            每个词典文件内容的摘要,key是文件名称
+	 * @return key
+	 */
+	private String contentKey(Map<String, byte[]> digests) {
+		MessageDigest md = newDigest();
+		md.update((engine.getEngineKey() + "\t" + memoryBudget).getBytes(StandardCharsets.UTF_8));
+		List<String> names = new ArrayList<>(digests.keySet());
+		Collections.sort(names);
+		for (String name : names) {
+			md.update((byte) '\n');
+			md.update(name.getBytes(StandardCharsets.UTF_8));
+			md.update((byte) '\t');
+			md.update(digests.get(name));
+		}
+		StringBuilder key = new StringBuilder();
+		for (byte b : md.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * 计算文件内容的摘要,和{@link DictFileEntries#getDigest()}相同.
+	 *
+	 * @param file
+	 *            文件
+	 * @return 摘要
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	private static byte[] digest(File file) throws IOException {
+		MessageDigest md = newDigest();
+		byte[] buffer = new byte[8192];
+		try (InputStream in = Files.newInputStream(file.toPath())) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				md.update(buffer, 0, read);
+			}
+		}
+		return md.digest();
+	}
+
+	/**
+	 * 读取不保留原始内容的文件,同时计算文件内容的摘要.压缩的文件直接返回文件的内容,其他文件用gzip压缩,
+	 * 见{@link CompressedDictFile#compress(java.io.OutputStream)}.
+	 *
+	 * @param file
+	 *            大文件或者压缩的文件
+	 * @param md
+	 *            计算摘要,和{@link #digest(File)}相同
+	 * @return gzip压缩的内容
+	 * @throws IOException
+	 *             读文件出错
+	 */
+	private static byte[] compressedContent(File file, MessageDigest md) throws IOException {
+		boolean compressed = CompressedDictFile.isCompressed(file.getName());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				(int) Math.min(compressed ? file.length() : file.length() / 4, Integer.MAX_VALUE - 8));
+		byte[] buffer = new byte[65536];
+		try (InputStream in = Files.newInputStream(file.toPath());
+				OutputStream out = compressed ? bytes : CompressedDictFile.compress(bytes)) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				md.update(buffer, 0, read);
+				out.write(buffer, 0, read);
+			}
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @return SHA-256
+	 */
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new DictionaryHandleException(e.getMessage());
+		}
+	}
+
+	/**
+	 * @return true-如果已经开始加载
+	 */
+	boolean isLoadStarted() {
+		return actualLoadDictCount.get() != 0;
+	}
+
+	/**
+	 * 获取词典的快照,不会开始加载词典.快照不会改变,需要最新的词典时应该重新调用此方法.
+	 *
+	 * @return 当前的快照
+	 */
+	DictionarySnapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	DictionaryState getState() {
+		return state;
+	}
+
+	Future<DictionarySnapshot> getReadyFuture() {
+		return readyFuture;
+	}
+
+	/**
+	 * 等待词典达到指定的状态.
+	 *
+	 * @param state
+	 *            状态
+	 * @param timeout
+	 *            最长的等待时间
+	 * @param unit
+	 *            时间单位
+	 * @return true-如果达到了这个状态,false-如果超时
+	 * @throws InterruptedException
+	 *             等待时被中断
+	 */
+	boolean awaitState(DictionaryState state, long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (stateLock) {
+			while (!this.state.reached(state)) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(stateLock, remaining);
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * 推进加载状态,状态只会向后变化.
+	 *
+	 * @param newState
+	 *            新的状态
+	 * @param published
+	 *            当前的快照,新的状态是{@link DictionaryState#READY}时作为加载完成的结果
+	 */
+	private void advanceState(DictionaryState newState, DictionarySnapshot published) {
+		synchronized (stateLock) {
+			if (state.reached(newState)) {
+				return;
+			}
+			state = newState;
+			stateLock.notifyAll();
+		}
+		if (newState == DictionaryState.READY) {
+			readyFuture.complete(published);
+		}
+	}
+
+	/**
+	 * 把一个文件解析出的单词分批添加到正在进行的加载中.只需要保存一批单词,每一批添加时持有{@link #dictLock}.
+	 * 每一批之后按{@link DictLoadScheduler}限制CPU,并且每完成10%打印一次进度.
+	 */
+	private class FileLoader implements DictFileParser.EntryHandler {
+		private final Loading current;
+		private final String fileName;
+		private final DictType dictType;
+		private final DictLoadScheduler scheduler = loadScheduler;
+		private final String[] tokens = new String[LOAD_BATCH_SIZE];
+		private final String[] tokenTypes = new String[LOAD_BATCH_SIZE];
+		/**
+		 * 这一批单词的数量.
+		 */
+		private int size = 0;
+		/**
+		 * 每一行单词的哈希值,见{@link DictFileEntries}.不知道行数时按需扩容.
+		 */
+		private long[] hashes;
+		/**
+		 * 文件的行数,-1表示不知道.
+		 */
+		private final int lines;
+		/**
+		 * 解析出的单词的数量.
+		 */
+		private int count = 0;
+		/**
+		 * 开始加载这个文件时{@link Loading#addedTokens}的值.
+		 */
+		private final long addedTokens;
+		/**
+		 * 开始加载这个文件时{@link Loading#skippedTokens}的值.
+		 */
+		private final long skippedTokens;
+		/**
+		 * 是否已经开始了新的加载,这时不再添加.
+		 */
+		private boolean abandoned = false;
+		/**
+		 * 上一次休息之后开始工作的时间.
+		 */
+		private long busyStart = System.nanoTime();
+		/**
+		 * 上一次打印的进度,10%的倍数.
+		 */
+		private int reportedProgress = 0;
+
+		/**
+		 * @param current
+		 *            正在进行的加载
+		 * @param fileName
+		 *            文件名称
+		 * @param dictType
+		 *            文件的类型
+		 * @param lines
+		 *            文件的行数,用于保存每一行单词的哈希值和打印进度,-1表示不知道,由调用者打印进度
+		 */
+		FileLoader(Loading current, String fileName, DictType dictType, int lines) {
+			this.current = current;
+			this.fileName = fileName;
+			this.dictType = dictType;
+			this.lines = lines;
+			this.hashes = new long[lines < 0 ? LOAD_BATCH_SIZE : lines];
+			synchronized (dictLock) {
+				this.addedTokens = current.addedTokens;
+				this.skippedTokens = current.skippedTokens;
+			}
+		}
+
+		@Override
+		public void onEntry(String token, String tokenType, int lineNumber) {
+			if (abandoned) {
+				return;
+			}
+			if (count == hashes.length) {
+				hashes = Arrays.copyOf(hashes, count * 2);
+			}
+			hashes[count++] = DictFileEntries.hash(token, tokenType);
+			tokens[size] = token;
+			tokenTypes[size++] = tokenType;
+			if (size == LOAD_BATCH_SIZE) {
+				synchronized (dictLock) {
+					flush();
+				}
+				if (lines >= 0) {
+					reportProgress(lineNumber, lines, "lines");
+				}
+				scheduler.pause(System.nanoTime() - busyStart);// 不能持有锁
+				busyStart = System.nanoTime();
+			}
+		}
+
+		/**
+		 * 每完成10%打印一次进度.
+		 *
+		 * @param done
+		 *            已经完成的数量
+		 * @param total
+		 *            总的数量
+		 * @param unit
+		 *            单位,比如行
+		 */
+		void reportProgress(long done, long total, String unit) {
+			int progress = (int) (100 * done / total) / 10 * 10;
+			if (progress > reportedProgress && !abandoned) {
+				reportedProgress = progress;
+				logger.info("load dict " + fileName + " " + progress + "%, " + unit + " " + done + "/" + total);
+			}
+		}
+
+		/**
+		 * 添加这一批单词,调用者需要持有{@link #dictLock}.
+		 *
+		 * @return false-如果已经开始了新的加载
+		 */
+		boolean flush() {
+			if (abandoned || current != loading) {
+				abandoned = true;
+				return false;
+			}
+			if (current.dict instanceof PartitionedTrie && scheduler.getCpuRatio() >= 1
+					&& (dictType == DictType.normal || dictType == DictType.stopword_file)) {// 限制CPU时不使用多个核
+				for (int i = 0; dictType == DictType.stopword_file && i < size; i++) {
+					current.stopwords.add(tokens[i]);
+				}
+				((PartitionedTrie) current.dict).addAll(tokens, tokenTypes, size, scheduler.getParallelPool());
+				current.addedTokens += size;
+			} else {
+				for (int i = 0; i < size; i++) {
+					addEntry(current, dictType, tokens[i], tokenTypes[i]);
+				}
+			}
+			Arrays.fill(tokens, 0, size, null);
+			Arrays.fill(tokenTypes, 0, size, null);
+			size = 0;
+			return true;
+		}
+	}
+
+	/**
+	 * 更新文件时重新解析的单词.保存每一行的哈希值,记录上一次加载时没有的单词,不修改词典.
+	 */
+	private static final class UpdatedEntries implements DictFileParser.EntryHandler {
+		/**
+		 * 文件上一次加载的内容,null-新增的文件.
+		 */
+		private final DictFileEntries old;
+		/**
+		 * 接收上一次没有的单词.
+		 */
+		private final DictFileParser.Entries added;
+		private long[] hashes = new long[LOAD_BATCH_SIZE];
+		private int count = 0;
+
+		UpdatedEntries(DictFileEntries old, DictFileParser.Entries added) {
+			this.old = old;
+			this.added = added;
+		}
+
+		@Override
+		public void onEntry(String token, String tokenType, int lineNumber) {
+			long hash = DictFileEntries.hash(token, tokenType);
+			if (count == hashes.length) {
+				hashes = Arrays.copyOf(hashes, count * 2);
+			}
+			hashes[count++] = hash;
+			if (old == null || !old.contains(hash)) {
+				added.onEntry(token, tokenType, lineNumber);
+			}
+		}
+	}
+
+	/**
+	 * 一个变化的文件和上一次加载的内容比较的结果,见{@link DirectoryDictionary#diffFile(File, DictFileEntries)}.
+	 */
+	private static final class FileUpdate {
+		private final String fileName;
+		private final DictType dictType;
+		/**
+		 * 文件上一次加载的内容,null-新增的文件.
+		 */
+		private final DictFileEntries old;
+		/**
+		 * 文件现在的内容,null-文件被删除.
+		 */
+		private DictFileEntries updated = null;
+		/**
+		 * 上一次的内容中被删除或者变化的行.
+		 */
+		private final DictFileParser.Entries removed = new DictFileParser.Entries();
+		/**
+		 * 现在的内容中新增或者变化的行.
+		 */
+		private final DictFileParser.Entries added = new DictFileParser.Entries();
+
+		FileUpdate(String fileName, DictType dictType, DictFileEntries old) {
+			this.fileName = fileName;
+			this.dictType = dictType;
+			this.old = old;
+		}
+	}
+
+	/**
+	 * 尝试获取加载所有词典的机会.
+	 * 
+	 * @return true-获得了机会,false-没有机会
+	 */
+	private final boolean tryGetLoadAllDictChance() {
+		int count;
+		while ((count = actualLoadDictCount.get()) == 0) {
+			if (actualLoadDictCount.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private class Worker implements Runnable {
+		private File file = null;
+		private Loading loading = null;
+
+		/**
+		 * @param file
+		 *            the file to set
+		 */
+		public void setFile(File file) {
+			this.file = file;
+		}
+
+		/**
+		 * @param loading
+		 *            the loading to set
+		 */
+		public void setLoading(Loading loading) {
+			this.loading = loading;
+		}
+
+		@Override
+		public void run() {
+			try {
+				loadFromFile(file, loading, true);
+			} finally {
+				if (loading.pendingFiles.decrementAndGet() == 0) {
+					finishLoading(loading);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return 词典目录,规范化的路径
+	 */
+	String getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return true-如果量词已经加载完成
+	 */
+	boolean isQuantifierLoadComplete() {
+		return quantifierLoadComplete.get();
+	}
+
+	/**
+	 * 启动线程,监控词典目录.
+	 */
+	private void startLoadChangedThread() {
+		Thread thread = new WatchDirThread();
+		thread.setName(Constant.ANALYSIS_NAME + "-watch-dict-dir-" + new File(directory).getName());
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * 监听词典目录.
+	 * 
+	 * @author wuda
+	 *
+	 */
+	class WatchDirThread extends Thread {
+
+		@Override
+		public void run() {
+			loadChanged();
+		}
+	}
+
+	/**
+	 * 一次完整的加载.所有的单词都加载到新的{@link MutableTrie}中,完成后保留每个文件的内容,用于之后增量更新.
+	 */
+	private static final class Loading {
+		/**
+		 * 加载时使用的前缀树,完成后可能是null,见{@link DirectoryDictionary#keepForUpdate(Loading)}.
+		 */
+		private MutableTrie dict;
+		/**
+		 * 每个文件上一次加载的内容,key是文件名称.
+		 */
+		private final Map<String, DictFileEntries> files = new HashMap<>();
+		private final Set<String> stopwords = new HashSet<>();
+		private final Set<String> numerals = new HashSet<>();
+		private final List<String> quantifiers = new ArrayList<>();
+		/**
+		 * 还没有加载完成的文件数量.
+		 */
+		private final AtomicInteger pendingFiles;
+		/**
+		 * 已经添加的token数量.
+		 */
+		private long addedTokens = 0;
+		/**
+		 * 因为超过内存预算而跳过的token数量.
+		 */
+		private long skippedTokens = 0;
+		/**
+		 * 是否已经超过内存预算.
+		 */
+		private boolean budgetExceeded = false;
+		/**
+		 * 上一次发布部分词典时已经添加的token数量.
+		 */
+		private long publishedTokens = 0;
+		/**
+		 * 是否正在构建部分词典,同时只构建一个.
+		 */
+		private boolean publishing = false;
+
+		Loading(MutableTrie dict, int fileCount) {
+			this.dict = dict;
+			this.pendingFiles = new AtomicInteger(fileCount);
+		}
+	}
+}
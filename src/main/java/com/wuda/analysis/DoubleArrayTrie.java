@@ -0,0 +1,321 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 双数组前缀树(double-array trie).只能从其他{@link Trie}一次性构建,构建完成后不能再修改.
+ * <p>
+ * 每个节点的状态就是数组的下标,对于状态s和字符c,子节点的状态t=base[s]+c,当且仅当check[t]==s时,
+ * 子节点存在.因此查找一个字符只需要读取两次int数组,不需要创建任何对象.
+ *
+ * @author wuda
+ *
+ */
+public class DoubleArrayTrie extends AbstractDoubleArrayTrie {
+
+	/**
+	 * 空闲的位置,check数组中等于这个值的位置还没有被使用.
+	 */
+	private final static int FREE = -1;
+
+	/**
+	 * 根节点的状态.
+	 */
+	private final static int ROOT = 0;
+
+	private int[] base;
+	private int[] check;
+	/**
+	 * 如果是token(单词)的结尾,保存token类型在{@link #typeTable}中的下标;否则是-1.
+	 */
+	private int[] value;
+	/**
+	 * 所有不同的token类型,下标0表示没有类型.
+	 */
+	private String[] typeTable;
+
+	/**
+	 * token(单词)的数量.
+	 */
+	private int size = 0;
+
+	/**
+	 * 构建时使用,从这个位置开始寻找空闲的位置.按第一个子节点的字符分成256段,单个子节点和多个子节点分开记录,
+	 * 因为它们能够使用的空闲位置差别很大.
+	 */
+	private int[][] nextCheckPos = new int[2][256];
+
+	/**
+	 * 构建时使用,已经使用的最大下标.
+	 */
+	private int maxUsed = 0;
+
+	/**
+	 * 构建时使用,记录已经被使用的位置,寻找空闲位置时可以一次跳过64个位置.
+	 */
+	private BitSet used;
+
+	private DoubleArrayTrie() {
+	}
+
+	/**
+	 * 从其他前缀树构建.构建期间source不能被修改.
+	 *
+	 * @param source
+	 *            前缀树
+	 * @return 双数组前缀树
+	 */
+	public static DoubleArrayTrie build(Trie source) {
+		DoubleArrayTrie trie = new DoubleArrayTrie();
+		trie.doBuild(source);
+		return trie;
+	}
+
+	private void doBuild(Trie source) {
+		resize(65536 * 2);// 根节点的check保持FREE,任何查找都不会返回根节点
+		used = new BitSet();
+		used.set(ROOT);
+		Map<String, Integer> typeIndexes = new HashMap<>();
+		typeIndexes.put(null, 0);
+
+		/**
+		 * 广度优先,队列中依次存放source中的状态和对应的本树中的状态.
+		 */
+		int[] queue = new int[1024];
+		int head = 0, tail = 0;
+		queue[tail++] = source.getRootState();
+		queue[tail++] = ROOT;
+		while (head < tail) {
+			int sourceState = queue[head++];
+			int state = queue[head++];
+			char[] chars = source.getChildChars(sourceState);
+			if (chars.length == 0) {
+				continue;
+			}
+			int begin = findBegin(chars);
+			base[state] = begin;
+			for (char c : chars) {
+				check[begin + c] = state;
+				used.set(begin + c);
+			}
+			maxUsed = Math.max(maxUsed, begin + chars[chars.length - 1]);
+			for (char c : chars) {
+				int sourceChild = source.find(sourceState, c);
+				int child = begin + c;
+				if (source.isTokenEnd(sourceChild)) {
+					value[child] = typeIndex(typeIndexes, source.getTypes(sourceChild));
+					size++;
+				}
+				if (tail + 2 > queue.length) {
+					if (head > 0) {// 压缩已经处理过的部分
+						System.arraycopy(queue, head, queue, 0, tail - head);
+						tail -= head;
+						head = 0;
+					}
+					if (tail + 2 > queue.length) {
+						queue = Arrays.copyOf(queue, queue.length * 2);
+					}
+				}
+				queue[tail++] = sourceChild;
+				queue[tail++] = child;
+			}
+		}
+		typeTable = new String[typeIndexes.size()];
+		for (Map.Entry<String, Integer> entry : typeIndexes.entrySet()) {
+			typeTable[entry.getValue()] = entry.getKey();
+		}
+		used = null;
+		int length = maxUsed + 1;
+		base = Arrays.copyOf(base, length);
+		check = Arrays.copyOf(check, length);
+		value = Arrays.copyOf(value, length);
+	}
+
+	/**
+	 * 获取token类型的下标,相同的类型只保存一份.
+	 *
+	 * @param typeIndexes
+	 *            已经存在的类型
+	 * @param types
+	 *            token类型
+	 * @return 下标
+	 */
+	private int typeIndex(Map<String, Integer> typeIndexes, String types) {
+		Integer index = typeIndexes.get(types);
+		if (index == null) {
+			index = typeIndexes.size();
+			typeIndexes.put(types, index);
+		}
+		return index;
+	}
+
+	/**
+	 * 为一组子节点寻找base,使得所有子节点的位置都是空闲的.
+	 *
+	 * @param chars
+	 *            子节点的字符,从小到大排序
+	 * @return base
+	 */
+	private int findBegin(char[] chars) {
+		int first = chars[0];
+		int last = chars[chars.length - 1];
+		int[] hints = nextCheckPos[chars.length == 1 ? 0 : 1];
+		int hint = first >>> 8;
+		int start = Math.max(first + 1, hints[hint]);
+		int pos = used.nextClearBit(start);
+		hints[hint] = pos;// 同一段中的字符相差不超过256,最多浪费256个位置
+		int tried = 0;
+		int begin;
+		outer: for (;; pos = used.nextClearBit(pos + 1)) {
+			tried++;
+			begin = pos - first;
+			if (begin + last >= check.length) {
+				resize(Math.max(begin + last + 1, check.length + (check.length >> 1)));
+			}
+			for (int i = 1; i < chars.length; i++) {
+				if (used.get(begin + chars[i])) {
+					continue outer;
+				}
+			}
+			break;
+		}
+		/**
+		 * 尝试了很多次才找到,说明前面的空闲位置已经很难再使用了,下次就从当前位置开始找,避免重复扫描.
+		 */
+		if (tried > 64) {
+			hints[hint] = pos;
+		}
+		return begin;
+	}
+
+	/**
+	 * 扩容.
+	 *
+	 * @param length
+	 *            新的长度
+	 */
+	private void resize(int length) {
+		int oldLength = base == null ? 0 : base.length;
+		base = base == null ? new int[length] : Arrays.copyOf(base, length);
+		check = check == null ? new int[length] : Arrays.copyOf(check, length);
+		value = value == null ? new int[length] : Arrays.copyOf(value, length);
+		Arrays.fill(check, oldLength, length, FREE);
+		Arrays.fill(value, oldLength, length, -1);
+	}
+
+	@Override
+	public int getRootState() {
+		return ROOT;
+	}
+
+	@Override
+	public int find(int state, char c) {
+		int t = base[state] + c;
+		if (t < check.length && check[t] == state) {
+			return t;
+		}
+		return NO_STATE;
+	}
+
+	@Override
+	public boolean isTokenEnd(int state) {
+		return value[state] >= 0;
+	}
+
+	@Override
+	public String getTypes(int state) {
+		int index = value[state];
+		return index < 0 ? null : typeTable[index];
+	}
+
+	/**
+	 * 双数组中没有保存子节点的列表,需要检查所有可能的位置,因此只适合偶尔调用.
+	 */
+	@Override
+	public char[] getChildChars(int state) {
+		int begin = base[state];
+		if (begin <= 0) {
+			return new char[0];
+		}
+		int end = Math.min(check.length, begin + Character.MAX_VALUE + 1);
+		char[] chars = new char[16];
+		int count = 0;
+		for (int t = begin; t < end; t++) {
+			if (check[t] == state) {
+				if (count == chars.length) {
+					chars = Arrays.copyOf(chars, count * 2);
+				}
+				chars[count++] = (char) (t - begin);
+			}
+		}
+		return Arrays.copyOf(chars, count);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * base,check和value三个int数组,加上已经编译的自动机和过滤器.
+	 */
+	@Override
+	public long estimateBytes() {
+		return 12L * check.length + getCacheBytes();
+	}
+
+	@Override
+	public int getStateLimit() {
+		return check.length;
+	}
+
+	@Override
+	public int getParentState(int state) {
+		return check[state];// 根节点和空闲位置都是FREE,即NO_STATE
+	}
+
+	@Override
+	public char getStateChar(int state) {
+		return (char) (state - base[check[state]]);
+	}
+
+	/**
+	 * 数组的长度,也就是状态的数量上限.
+	 *
+	 * @return 数组的长度
+	 */
+	int getArrayLength() {
+		return check.length;
+	}
+
+	/**
+	 * @return the base
+	 */
+	int[] getBase() {
+		return base;
+	}
+
+	/**
+	 * @return the check
+	 */
+	int[] getCheck() {
+		return check;
+	}
+
+	/**
+	 * @return the value
+	 */
+	int[] getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the typeTable
+	 */
+	String[] getTypeTable() {
+		return typeTable;
+	}
+}
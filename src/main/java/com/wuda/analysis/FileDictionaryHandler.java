@@ -1,99 +1,90 @@
 package com.wuda.analysis;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileSystems;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
-
-import org.apache.commons.io.FileUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.wuda.Constant;
 
 /**
- * 从文本中获取词典.有几个重要的内容需要了解
+ * 从文本中获取词典.
  * <ol>
  * <li>词典是延迟加载的,即调用{@link #getDictionary()}
  * 方法返回的词典,在返回的瞬间可能是一个空词典,也可能只包含部分单词,但是在此后的时候会继续加载</li>
- * <li>推荐在全局只使用此类的一个实例,但是如果是多个实例,然后调用{@link #getDictionary()}方法获取词典,返回的词典在全局也是
- * <Strong>同一个对象</Strong>,因为保存单词的对象是一个静态成员变量</li>
+ * <li>每个词典目录有自己的词典,用{@link #FileDictionaryHandler(String)}或者{@link #setDirectory(String)}指定目录,
+ * 不同的索引可以使用不同的目录.同一个目录(规范化的路径相同)的多个实例使用<Strong>同一个词典</Strong>,
+ * 按第一次加载时的设置加载;没有指定目录的实例使用最近一次{@link #setDirectory(String)}指定的目录</li>
  * <li>即使在多个实例,多线程环境中多次调用{@link #getDictionary()}方法,
- * <Strong>真正去词典文件中加载词典也只会是一次</Strong></li>
+ * <Strong>每个目录真正去词典文件中加载词典也只会是一次</Strong></li>
+ * <li>不同目录中的词典文件完全相同时,加载完成后共享同一个不可修改的快照,内存只和不同的词典的数量有关</li>
+ * <li>词典文件发生变化时,在后台和上一次加载的内容比较,只添加新增的单词,删除被删除的单词,然后构建新的{@link DictionarySnapshot}
+ * 并整体替换.不能增量更新时(比如还没有完成第一次加载)重新加载所有的词典文件.已经获取的词典不会被修改
+ * (tree和hash引擎在第一次加载期间一边加载一边使用,是例外),因此每处理一个新的文本时应该重新获取词典</li>
+ * <li>不再使用时调用{@link #close()},一个目录的所有实例都关闭后停止监控这个目录,词典可以被回收.
+ * 没有指定目录的实例使用的目录除外,它一直可以使用,直到{@link #setDirectory(String)}指定了另一个目录</li>
  * </ol>
- * 
+ *
  * @author wuda
  *
  */
-public class FileDictionaryHandler implements DictionaryHandler {
-
-	private Logger logger = LoggerFactory.getLogger(getClass());
+public class FileDictionaryHandler implements DictionaryHandler, Closeable {
 
 	/**
-	 * 词典,使用静态final修饰,目的是保证词典全量的只被加载一次(当然不是static final就有这样的效果,靠代码保证),增量的才会实时加载.
-	 */
-	private static final Trie dict = new Trie();
-	/**
-	 * 停止词 .
-	 */
-	private static final Set<String> stopwords = new HashSet<>();
-	/**
-	 * 停止词是否已经加载完成.
+	 * 默认的词典引擎.
 	 */
-	private static final AtomicBoolean stopwordLoadComplete = new AtomicBoolean(false);
+	private static volatile DictEngine defaultEngine = DictEngine.DOUBLE_ARRAY;
 	/**
-	 * 数词 .
+	 * 默认的内存预算,字节数,小于等于0表示不限制.
 	 */
-	private static final Set<String> numerals = new HashSet<>();
+	private static volatile long defaultMemoryBudget = 0;
 	/**
-	 * 数词是否已经加载完成.
+	 * 默认的加载词典文件的安排.
 	 */
-	private static final AtomicBoolean numeralLoadComplete = new AtomicBoolean(false);
+	private static volatile DictLoadScheduler defaultLoadScheduler = new DictLoadScheduler();
 	/**
-	 * 量词 .
+	 * 所有正在使用的词典,key是规范化的词典目录.
 	 */
-	private static final List<String> quantifiers = new LinkedList<>();
+	private static final Map<String, DirectoryDictionary> dictionaries = new HashMap<>();
 	/**
-	 * 量词是否已经加载完成.
+	 * 没有指定目录的实例使用的词典,最近一次{@link #setDirectory(String)}指定的目录.它自己持有一个引用,
+	 * 指定了这个目录的实例都关闭之后仍然可以使用,被替换时才释放.
 	 */
-	public static final AtomicBoolean quantifierLoadComplete = new AtomicBoolean(false);
+	private static volatile DirectoryDictionary defaultDictionary = null;
 
 	/**
-	 * 实际上真正去文件中加载词典的次数,即使{@link #loadAll()}方法被调用多次,也不一定真正去文件中加载单词.
+	 * 这个实例使用的词典,null-没有指定目录,使用{@link #defaultDictionary}.
 	 */
-	private static AtomicInteger actualLoadDictCount = new AtomicInteger(0);
+	private volatile DirectoryDictionary dictionary = null;
 
 	/**
-	 * 实际上真正去文件中加载词典的次数.
+	 * 是否异步加载词典.
 	 */
-	private static AtomicInteger actualLoadDictCountForLog = new AtomicInteger(0);
+	private boolean isAsynLoadDict = true;
 
 	/**
-	 * 保存词典的目录.只能是目录.
+	 * 没有指定词典目录,使用最近一次{@link #setDirectory(String)}指定的目录.
 	 */
-	public static String directory;
+	public FileDictionaryHandler() {
+
+	}
 
 	/**
-	 * 是否异步加载词典.
+	 * @param directory
+	 *            词典所在的目录,不需要时调用{@link #close()}
 	 */
-	private boolean isAsynLoadDict = true;
+	public FileDictionaryHandler(String directory) {
+		dictionary = acquire(directory);
+	}
 
 	/**
 	 * 是否异步加载词典.
-	 * 
+	 *
 	 * @return true-如果是
 	 */
 	public boolean isAsynLoadDict() {
@@ -102,7 +93,7 @@ public class FileDictionaryHandler implements DictionaryHandler {
 
 	/**
 	 * 决定是否异步加载词典.只有在{@link #getDictionary()}方法调用之前设置才有效.
-	 * 
+	 *
 	 * @return true-如果是
 	 */
 	public void setIsAsynLoadDict(boolean isAsynLoadDict) {
@@ -110,346 +101,314 @@ public class FileDictionaryHandler implements DictionaryHandler {
 	}
 
 	/**
-	 * 加载所有的单词.多线程延迟加载,即当{@link #getDictionary()}
-	 * 返回词典对象后,可能也只包含部分单词,因为还在加载中.并且很重要的一点是,词典只会加载一次,即使多次调用此方法,或者多线程调用此方法,
-	 * 都只会真正意义上的去加载词典文件一次.
-	 * 
+	 * 词典引擎.
+	 *
+	 * @return 词典引擎
 	 */
-	public void loadAll() {
-		if (directory == null || directory.isEmpty()) {
-			throw new DictionaryHandleException("请先指定词典所在的目录");
-		}
-		File dictDir = new File(directory);
-		if (dictDir.isDirectory() == false) {
-			throw new DictionaryHandleException("不是目录?或者此目录不存在?");
-		}
-		if (tryGetLoadAllDictChance() == false) {// 没有获得机会(其他线程已经加载了词典,不需要重复加载词典)
-			return;
-		}
-		/**
-		 * 监控词典目录.这里只会执行一次.
-		 */
-		startLoadChangedThread();
-		
-		File[] files = dictDir.listFiles();
-		if (files == null || files.length < 1) {
-			return;
-		}
-		/**
-		 * 多线程加载单词.
-		 */
-		ExecutorService executors = null;
-		if (isAsynLoadDict) {
-			executors = Executors.newCachedThreadPool();
-		}
-		logger.info("load dict " + actualLoadDictCountForLog.incrementAndGet());
-		for (File file : files) {
-			Worker worker = new Worker();
-			worker.setFile(file);
-			if (isAsynLoadDict && executors != null) {
-				executors.execute(worker);
-			} else {
-				worker.run();
-			}
-
-		}
-		if (isAsynLoadDict && executors != null) {
-			executors.shutdown();
-		}
+	public DictEngine getEngine() {
+		DirectoryDictionary dictionary = this.dictionary;
+		return dictionary != null ? dictionary.getEngine() : defaultEngine;
 	}
 
 	/**
-	 * 从文件中加载词典.
-	 * 
-	 * @param file
-	 *            文件
+	 * 设置词典引擎.只有在词典开始加载之前设置才有效.指定了词典目录时只对这个目录的词典有效,否则设置之后新指定的目录的默认值.
+	 *
+	 * @param engine
+	 *            词典引擎
 	 */
-	private void loadFromFile(File file) {
-		if (file == null || file.isDirectory()) {
-			return;
-		}
-		String fileName = file.getName();
-		long length = file.length();
-		if (isAsynLoadDict && length > 52428800) { // 50*1024*1024
-			try {
-				logger.info("dict file " + fileName + " length " + length + " sleep 10s");
-				Thread.sleep(10000);// 让小文件先加载
-			} catch (InterruptedException e) {
-				logger.warn(e.getMessage(), e);
-			}
-		}
-
-		DictType dictType = getDictType(fileName);
-		List<String> lines = null;
-		try {
-			lines = FileUtils.readLines(file, Constant.CHARSET_UTF8);
-		} catch (IOException e) {
-			logger.warn(e.getMessage() + "\t解析词典文件错误", e);
-			return;
-		}
-		if (lines == null || lines.isEmpty()) {
-			return;
+	public void setEngine(DictEngine engine) {
+		if (engine == null) {
+			throw new NullPointerException("engine 不能为空");
 		}
-		synchronized (this) {
-			String line = null;
-			int size = getActualSize(lines.size());
-			for (int i = 0; i < size; i++) {
-				line = lines.get(i);
-				if (line != null && !line.isEmpty()) {
-					line = line.trim();
-					if (dictType == DictType.normal) {
-						String[] elements = parse(line);
-						dict.add(elements[0], elements[1]);
-						elements = null;
-					} else if (dictType == DictType.stopword_file) {
-						stopwords.add(line);
-						dict.add(line, null);
-					} else if (dictType == DictType.numeral_file) {
-						numerals.add(line);
-					} else if (dictType == DictType.quantifier_file) {
-						quantifiers.add(line);
-					}
-				}
-				line = null;
-				lines.set(i, null);// 释放内存,类似于list.clear()
-			}
-		}
-		if (dictType == DictType.stopword_file) {
-			stopwordLoadComplete.compareAndSet(false, true);
-		} else if (dictType == DictType.numeral_file) {
-			numeralLoadComplete.compareAndSet(false, true);
-		} else if (dictType == DictType.quantifier_file) {
-			quantifierLoadComplete.compareAndSet(false, true);
+		DirectoryDictionary dictionary = this.dictionary;
+		if (dictionary != null) {
+			dictionary.setEngine(engine);
+		} else {
+			defaultEngine = engine;
 		}
-		lines = null;// 释放内存
-		System.gc();
-		logger.info("load dict " + fileName + " completed ! free jvm memory "+AnalysisUtil.getFreeMemoryM());
 	}
 
 	/**
-	 * 实际使用的size,由于内存的限制,可能不能全部加载单词.
-	 * 
-	 * @param lines
-	 *            总的单词数量
-	 * @return 实际应该加载的数量
-	 */
-	private int getActualSize(int lines) {
-		long freeMemory = AnalysisUtil.getFreeMemoryM();
-		int count = Integer.MAX_VALUE;
-		if (freeMemory <= 512) {
-			count = 500000;
-		} else if (freeMemory > 512 && freeMemory <= 1024) {
-			count = 1500000;
-		} else if (freeMemory > 1024 && freeMemory <= 1536) {
-			count = 2000000;
-		} else if (freeMemory > 1536 && freeMemory <= 2048) {
-			count = 2700000;
-		} else if (freeMemory > 2048 && freeMemory <= 3072) {
-			count = 3500000;
-		}
-		int min = Math.min(count, lines);
-		logger.info("当前可用jvm内存是：" + freeMemory + "M,应加载单词数：" + lines + ",实际加载单词数：" + min);
-		return min;
+	 * 加载单词时使用的内存预算.
+	 *
+	 * @return 字节数,小于等于0表示不限制
+	 */
+	public long getMemoryBudget() {
+		DirectoryDictionary dictionary = this.dictionary;
+		return dictionary != null ? dictionary.getMemoryBudget() : defaultMemoryBudget;
 	}
 
 	/**
-	 * 根据文件名称判断单词类型.
-	 * 
-	 * @param fileName
-	 *            文件名称
-	 * @return DictType
+	 * 设置加载单词时使用的内存预算,只有在词典开始加载之前设置才有效.内存是根据节点数量和数组容量估算的,
+	 * 不包括构建双数组等时临时使用的内存.设置了预算时,词典文件按名称顺序逐个加载,超过预算后的单词都不再加载,
+	 * 因此相同的词典文件和相同的预算总是得到相同的词典,和jvm当时的空闲内存无关.和{@link #setEngine(DictEngine)}一样,
+	 * 没有指定词典目录时设置的是默认值.
+	 *
+	 * @param memoryBudget
+	 *            字节数,小于等于0表示不限制
 	 */
-	private DictType getDictType(String fileName) {
-		DictType dictType = null;
-		if (fileName.equals(Constant.stopword_file_name)) {
-			dictType = DictType.stopword_file;
-		} else if (fileName.equals(Constant.numeral_file_name)) {
-			dictType = DictType.numeral_file;
-		} else if (fileName.equals(Constant.quantifier_file_name)) {
-			dictType = DictType.quantifier_file;
+	public void setMemoryBudget(long memoryBudget) {
+		DirectoryDictionary dictionary = this.dictionary;
+		if (dictionary != null) {
+			dictionary.setMemoryBudget(memoryBudget);
 		} else {
-			dictType = DictType.normal;
+			defaultMemoryBudget = memoryBudget;
 		}
-		return dictType;
 	}
 
 	/**
-	 * 只能识别水平制表符,单词与词性之间用水平制表符分割.
-	 * 
-	 * @param line
-	 *            文本的一行
-	 * @return 数组的下标0是单词,下标1是词性
-	 */
-	private String[] parse(String line) {
-		String[] elements = new String[2];
-		int firstHT = line.indexOf(9);// 水平制表符
-		String word = line;
-		String pos = null;
-		if (firstHT != -1) {
-			word = line.substring(0, firstHT);
-			word = word.trim();
-			String pos_count = line.substring(firstHT + 1);
-			int secondHT = pos_count.indexOf(9);// 水平制表符
-			if (secondHT != -1) {// 词性和数量用水平制表符隔开
-				pos = pos_count.substring(0, secondHT);
-			} else {
-				pos = pos_count;
-			}
-			if (pos != null) {
-				pos = pos.trim();
-			}
-		}
-		elements[0] = word;
-		elements[1] = pos;
-		return elements;
+	 * @return 加载词典文件的安排
+	 */
+	public DictLoadScheduler getLoadScheduler() {
+		DirectoryDictionary dictionary = this.dictionary;
+		return dictionary != null ? dictionary.getLoadScheduler() : defaultLoadScheduler;
 	}
 
 	/**
-	 * 加载改变的单词.
-	 * 
+	 * 设置加载词典文件的安排,只有在词典开始加载之前设置才有效.和{@link #setEngine(DictEngine)}一样,没有指定词典目录时设置的是默认值.
+	 *
+	 * @param loadScheduler
+	 *            加载词典文件的安排
 	 */
-	private void loadChanged() {
-		if (directory == null) {
-			return;
-		}
-		Path dir = Paths.get(directory);
-		WatchService watcher = null;
-		try {
-			watcher = FileSystems.getDefault().newWatchService();
-			dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
-		} catch (IOException e) {
-			logger.warn(e.getMessage(), e);
+	public void setLoadScheduler(DictLoadScheduler loadScheduler) {
+		if (loadScheduler == null) {
+			throw new NullPointerException("loadScheduler 不能为空");
 		}
-		for (;;) {
-			WatchKey watchKey = null;
-			try {
-				watchKey = watcher.take();
-			} catch (InterruptedException e) {
-				logger.warn(e.getMessage(), e);
-			}
-			if (watchKey != null) {
-				for (WatchEvent<?> event : watchKey.pollEvents()) {
-					WatchEvent.Kind<?> kind = event.kind();
-					if (kind == StandardWatchEventKinds.ENTRY_CREATE || kind == StandardWatchEventKinds.ENTRY_MODIFY) {
-						// The filename is the
-						// context of the event.
-						@SuppressWarnings("unchecked")
-						WatchEvent<Path> ev = (WatchEvent<Path>) event;
-						Path filename = ev.context();
-						File file = new File(directory, filename.toString());
-						loadFromFile(file);
-
-						/**
-						 * log
-						 */
-						StringBuilder builder = new StringBuilder("词典目录发生变化,kind=");
-						builder.append(kind.name());
-						builder.append(",变化的是：");
-						builder.append(filename.toString());
-						logger.info(builder.toString());
-					}
-				}
-				watchKey.reset();// 重新监听
-			}
+		DirectoryDictionary dictionary = this.dictionary;
+		if (dictionary != null) {
+			dictionary.setLoadScheduler(loadScheduler);
+		} else {
+			defaultLoadScheduler = loadScheduler;
 		}
+	}
 
+	/**
+	 * 加载所有的单词.多线程延迟加载,即当{@link #getDictionary()}
+	 * 返回词典对象后,可能也只包含部分单词,因为还在加载中.并且很重要的一点是,词典只会加载一次,即使多次调用此方法,或者多线程调用此方法,
+	 * 都只会真正意义上的去加载词典文件一次.
+	 *
+	 */
+	public void loadAll() {
+		dictionary().loadAll(isAsynLoadDict);
 	}
 
 	/**
-	 * 获取词典.同一个jvm只会获取到同一个词典对象,词典也只会加载一次(变化的内容会一直加载),并且是异步延迟加载的.
+	 * 获取词典.词典只会加载一次(变化的内容会一直加载),并且是异步延迟加载的.每加载完一个词典文件,都会重新构建一个新的词典对象,
+	 * 因此需要最新的词典时应该重新调用此方法.
 	 */
 	@Override
 	public Trie getDictionary() {
-		if (actualLoadDictCount.get() == 0) {
-			loadAll();
-		}
-		return dict;
+		return getSnapshot().getDictionary();
 	}
 
 	/**
-	 * 尝试获取加载所有词典的机会.
-	 * 
-	 * @return true-获得了机会,false-没有机会
+	 * 获取词典的快照.和{@link #getDictionary()}一样,第一次调用时开始加载词典.快照不会改变,需要最新的词典时应该重新调用此方法.
+	 *
+	 * @return 当前的快照
 	 */
-	private final boolean tryGetLoadAllDictChance() {
-		int count;
-		while ((count = actualLoadDictCount.get()) == 0) {
-			if (actualLoadDictCount.compareAndSet(count, count + 1)) {
-				return true;
-			}
+	@Override
+	public DictionarySnapshot getSnapshot() {
+		DirectoryDictionary dictionary = dictionary();
+		if (!dictionary.isLoadStarted()) {
+			dictionary.loadAll(isAsynLoadDict);
 		}
-		return false;
+		return dictionary.getSnapshot();
+	}
+
+	@Override
+	public DictionaryState getState() {
+		return dictionary().getState();
 	}
 
-	private class Worker implements Runnable {
-		private File file = null;
+	/**
+	 * 获取词典加载完成的结果.和{@link #getDictionary()}不同,不会开始加载词典.
+	 */
+	@Override
+	public Future<DictionarySnapshot> getReadyFuture() {
+		return dictionary().getReadyFuture();
+	}
 
-		/**
-		 * @param file
-		 *            the file to set
-		 */
-		public void setFile(File file) {
-			this.file = file;
-		}
+	/**
+	 * 等待词典达到指定的状态.和{@link #getDictionary()}不同,不会开始加载词典,需要先调用{@link #loadAll()}.
+	 */
+	@Override
+	public boolean awaitState(DictionaryState state, long timeout, TimeUnit unit) throws InterruptedException {
+		return dictionary().awaitState(state, timeout, unit);
+	}
 
-		@Override
-		public void run() {
-			loadFromFile(file);
+	@Override
+	public Set<String> getStopwords() {
+		return dictionary().getSnapshot().getStopwords();
+	}
+
+	@Override
+	public Set<String> getNumerals() {
+		return dictionary().getSnapshot().getNumerals();
+	}
+
+	@Override
+	public List<String> getQuantifiers() {
+		return dictionary().getSnapshot().getQuantifiers();
+	}
+
+	/**
+	 * 获取当前快照的统计信息.和{@link #getStopwords()}一样,不会开始加载词典.
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		return dictionary().getSnapshot().getStats();
+	}
+
+	/**
+	 * @return true-如果量词已经加载完成
+	 */
+	public boolean isQuantifierLoadComplete() {
+		return dictionary().isQuantifierLoadComplete();
+	}
+
+	/**
+	 * 这个实例使用的词典.
+	 *
+	 * @return 指定的目录的词典,没有指定时是最近一次{@link #setDirectory(String)}指定的目录的词典
+	 */
+	private DirectoryDictionary dictionary() {
+		DirectoryDictionary dictionary = this.dictionary;
+		if (dictionary == null) {
+			dictionary = defaultDictionary;
+		}
+		if (dictionary == null) {
+			throw new DictionaryHandleException("请先指定词典所在的目录");
 		}
+		return dictionary;
 	}
 
 	/**
-	 * @return the directory
+	 * @return 词典目录,规范化的路径,null-如果还没有指定
 	 */
 	public String getDirectory() {
-		return directory;
+		DirectoryDictionary dictionary = this.dictionary;
+		if (dictionary == null) {
+			dictionary = defaultDictionary;
+		}
+		return dictionary == null ? null : dictionary.getDirectory();
 	}
 
 	/**
+	 * 指定词典目录,同时作为没有指定目录的实例使用的目录.之前指定的目录被释放,见{@link #close()}.
+	 *
 	 * @param directory
-	 *            the directory to set
+	 *            词典所在的目录,null-只释放之前指定的目录
 	 */
 	public void setDirectory(String directory) {
-		FileDictionaryHandler.directory = directory;
+		DirectoryDictionary acquired = directory == null ? null : acquire(directory);
+		DirectoryDictionary previous = this.dictionary;
+		this.dictionary = acquired;
+		if (acquired != null) {
+			setDefaultDictionary(acquired);
+		}
+		if (previous != null) {
+			release(previous);
+		}
 	}
 
 	/**
-	 * 启动线程,监控词典目录.
+	 * 替换没有指定目录的实例使用的词典,为它增加一个引用,并释放原来的词典的引用.
+	 *
+	 * @param dictionary
+	 *            新的默认词典
 	 */
-	private void startLoadChangedThread() {
-		Thread thread = new WatchDirThread();
-		thread.setName(Constant.ANALYSIS_NAME + "-watch-dict-dir");
-		thread.setDaemon(true);
-		thread.start();
+	private static void setDefaultDictionary(DirectoryDictionary dictionary) {
+		DirectoryDictionary previous;
+		synchronized (dictionaries) {
+			previous = defaultDictionary;
+			if (previous == dictionary) {
+				return;
+			}
+			dictionary.references++;
+			defaultDictionary = dictionary;
+		}
+		if (previous != null) {
+			release(previous);
+		}
 	}
 
 	/**
-	 * 监听词典目录.
-	 * 
-	 * @author wuda
-	 *
+	 * 释放指定的词典目录.一个目录的所有实例都释放后,停止监控这个目录,已经获取的词典仍然可以使用.没有指定目录时什么也不做,
+	 * 没有指定目录的实例使用的词典不会因此被释放.
 	 */
-	class WatchDirThread extends Thread {
-
-		@Override
-		public void run() {
-			loadChanged();
+	@Override
+	public void close() {
+		DirectoryDictionary previous = this.dictionary;
+		this.dictionary = null;
+		if (previous != null) {
+			release(previous);
 		}
 	}
 
-	@Override
-	public Set<String> getStopwords() {
-		return stopwords;
+	/**
+	 * 获取目录的词典,不存在时使用默认的设置创建.
+	 *
+	 * @param directory
+	 *            词典目录
+	 * @return 词典
+	 */
+	private static DirectoryDictionary acquire(String directory) {
+		if (directory == null || directory.isEmpty()) {
+			throw new DictionaryHandleException("请先指定词典所在的目录");
+		}
+		String key;
+		try {
+			key = new File(directory).getCanonicalPath();
+		} catch (IOException e) {
+			key = new File(directory).getAbsolutePath();
+		}
+		synchronized (dictionaries) {
+			DirectoryDictionary dictionary = dictionaries.get(key);
+			if (dictionary == null) {
+				dictionary = new DirectoryDictionary(key, defaultEngine, defaultMemoryBudget, defaultLoadScheduler);
+				dictionaries.put(key, dictionary);
+			}
+			dictionary.references++;
+			return dictionary;
+		}
 	}
 
-	@Override
-	public Set<String> getNumerals() {
-		return numerals;
+	/**
+	 * 释放目录的词典,没有实例使用时关闭.
+	 *
+	 * @param dictionary
+	 *            词典
+	 */
+	private static void release(DirectoryDictionary dictionary) {
+		synchronized (dictionaries) {
+			if (--dictionary.references > 0) {
+				return;
+			}
+			dictionaries.remove(dictionary.getDirectory());
+		}
+		dictionary.close();
 	}
 
-	@Override
-	public List<String> getQuantifiers() {
-		return quantifiers;
+	/**
+	 * 根据文件名称判断单词类型.压缩的文件按去掉后缀后的名称判断,比如“stopwords.dict.gz”.
+	 *
+	 * @param fileName
+	 *            文件名称
+	 * @return DictType
+	 */
+	static DictType getDictType(String fileName) {
+		DictType dictType = null;
+		fileName = CompressedDictFile.uncompressedName(fileName);
+		if (fileName.equals(Constant.stopword_file_name)) {
+			dictType = DictType.stopword_file;
+		} else if (fileName.equals(Constant.numeral_file_name)) {
+			dictType = DictType.numeral_file;
+		} else if (fileName.equals(Constant.quantifier_file_name)) {
+			dictType = DictType.quantifier_file;
+		} else {
+			dictType = DictType.normal;
+		}
+		return dictType;
 	}
 
 	enum DictType {
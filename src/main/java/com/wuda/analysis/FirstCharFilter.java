@@ -0,0 +1,173 @@
+package com.wuda.analysis;
+
+/**
+ * 词典中单词的第一个字符.用一个65536位的位图记录哪些字符可以是单词的开头,同时记录以每个字符开头的最长单词的长度.
+ * 分词时不可能是单词开头的位置只需要测试一位,不需要在前缀树中查找;从一个位置开始查找时,超过最长的长度就可以停止.
+ * <p>
+ * 位图占8K字节,最长的长度只为可以是单词开头的字符保存,按字符在位图中的排名存放.
+ *
+ * @author wuda
+ *
+ */
+public final class FirstCharFilter {
+
+	/**
+	 * 位图,每个字符一位.
+	 */
+	private final long[] bits;
+	/**
+	 * 位图中每个long之前设置了的位的数量,用于计算字符的排名.
+	 */
+	private final int[] ranks;
+	/**
+	 * 以每个字符开头的最长单词的长度,按字符的排名存放.
+	 */
+	private final int[] maxLengths;
+	/**
+	 * 词典中最长的单词的长度.
+	 */
+	private final int maxLength;
+
+	private FirstCharFilter(long[] bits, int[] ranks, int[] maxLengths) {
+		this.bits = bits;
+		this.ranks = ranks;
+		this.maxLengths = maxLengths;
+		int max = 0;
+		for (int length : maxLengths) {
+			max = Math.max(max, length);
+		}
+		this.maxLength = max;
+	}
+
+	/**
+	 * 为双数组前缀树构建.从每个单词的结尾沿着父节点找到第一个字符,时间和所有单词的长度之和成正比.
+	 *
+	 * @param trie
+	 *            前缀树
+	 * @return 第一个字符的过滤器
+	 */
+	static FirstCharFilter build(AbstractDoubleArrayTrie trie) {
+		Builder builder = new Builder();
+		int root = trie.getRootState();
+		int limit = trie.getStateLimit();
+		for (int state = 0; state < limit; state++) {
+			if (state == root || trie.getParentState(state) == Trie.NO_STATE || !trie.isTokenEnd(state)) {
+				continue;
+			}
+			int first = state;
+			int length = 1;
+			int parent;
+			while ((parent = trie.getParentState(first)) != root) {
+				first = parent;
+				length++;
+			}
+			builder.add(trie.getStateChar(first), length);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * 字符是否可以是单词的开头.
+	 *
+	 * @param c
+	 *            字符
+	 * @return true-如果词典中有以这个字符开头的单词
+	 */
+	public boolean canStart(char c) {
+		return (bits[c >>> 6] & (1L << c)) != 0;
+	}
+
+	/**
+	 * 以字符开头的最长单词的长度.
+	 *
+	 * @param c
+	 *            字符
+	 * @return 最长的长度,0-如果没有以这个字符开头的单词
+	 */
+	public int getMaxLength(char c) {
+		long word = bits[c >>> 6];
+		long bit = 1L << c;
+		if ((word & bit) == 0) {
+			return 0;
+		}
+		return maxLengths[ranks[c >>> 6] + Long.bitCount(word & (bit - 1))];
+	}
+
+	/**
+	 * 词典中最长的单词的长度.分词时把很长的文本分成多个窗口,相邻的窗口至少要重叠这个长度减1,才不会漏掉跨越窗口边界的单词.
+	 *
+	 * @return 最长的长度,0-如果词典是空的
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * 估算占用的内存.
+	 *
+	 * @return 字节数
+	 */
+	long estimateBytes() {
+		return 8L * bits.length + 4L * ranks.length + 4L * maxLengths.length;
+	}
+
+	/**
+	 * 可以是单词开头的字符的数量.
+	 *
+	 * @return 字符的数量
+	 */
+	public int size() {
+		return maxLengths.length;
+	}
+
+	/**
+	 * 逐个添加单词的第一个字符和长度,然后构建{@link FirstCharFilter}.
+	 *
+	 * @author wuda
+	 *
+	 */
+	static final class Builder {
+
+		private final int[] lengths = new int[Character.MAX_VALUE + 1];
+
+		/**
+		 * 添加一个单词.
+		 *
+		 * @param first
+		 *            单词的第一个字符
+		 * @param length
+		 *            单词的长度
+		 */
+		void add(char first, int length) {
+			if (length > lengths[first]) {
+				lengths[first] = length;
+			}
+		}
+
+		/**
+		 * @return 过滤器
+		 */
+		FirstCharFilter build() {
+			long[] bits = new long[lengths.length >>> 6];
+			int[] ranks = new int[bits.length];
+			int count = 0;
+			for (int c = 0; c < lengths.length; c++) {
+				if (lengths[c] > 0) {
+					bits[c >>> 6] |= 1L << c;
+					count++;
+				}
+			}
+			int[] maxLengths = new int[count];
+			int rank = 0;
+			for (int i = 0; i < bits.length; i++) {
+				ranks[i] = rank;
+				for (int c = i << 6; c < (i + 1) << 6; c++) {
+					if (lengths[c] > 0) {
+						maxLengths[rank++] = lengths[c];
+					}
+				}
+			}
+			return new FirstCharFilter(bits, ranks, maxLengths);
+		}
+	}
+}
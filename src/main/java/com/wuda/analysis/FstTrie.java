@@ -0,0 +1,323 @@
+package com.wuda.analysis;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.util.IntsRefBuilder;
+import org.apache.lucene.util.fst.Builder;
+import org.apache.lucene.util.fst.FST;
+import org.apache.lucene.util.fst.IntsRefFSTEnum;
+import org.apache.lucene.util.fst.PositiveIntOutputs;
+
+/**
+ * 使用lucene的{@link FST}实现的前缀树.FST同时共享单词的前缀和后缀,因此占用的内存比其他实现少很多,但是查找稍慢.
+ * 每个单词的output是它的token类型在类型表中的下标,0表示没有类型.
+ * <p>
+ * FST中的节点不能用int状态表示,因此只能通过{@link #newCursor()}查找,{@link #getRootState()},{@link #find(int, char)}
+ * 等基于状态的方法都会抛出{@link UnsupportedOperationException}.
+ *
+ * @author wuda
+ *
+ */
+public class FstTrie extends Trie {
+
+	/**
+	 * FST,没有任何单词时是null.
+	 */
+	private FST<Long> fst;
+
+	/**
+	 * 所有不同的token类型,下标0是null.
+	 */
+	private String[] typeTable;
+
+	/**
+	 * token(单词)的数量.
+	 */
+	private int size = 0;
+
+	/**
+	 * 单词的第一个字符,构建时同时得到.
+	 */
+	private FirstCharFilter firstCharFilter;
+
+	private FstTrie() {
+	}
+
+	/**
+	 * 从其他前缀树构建.构建期间source不能被修改.
+	 *
+	 * @param source
+	 *            前缀树,必须支持基于状态的查找
+	 * @return FST前缀树
+	 */
+	public static FstTrie build(Trie source) {
+		FstTrie trie = new FstTrie();
+		Map<String, Integer> typeIndexes = new HashMap<>();
+		typeIndexes.put(null, 0);
+		Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE2, PositiveIntOutputs.getSingleton());
+		FirstCharFilter.Builder firstChars = new FirstCharFilter.Builder();
+		try {
+			trie.addAll(source, source.getRootState(), new IntsRefBuilder(), builder, typeIndexes, firstChars);
+			trie.fst = builder.finish();
+		} catch (IOException e) {
+			throw new DictionaryHandleException("构建FST失败:" + e.getMessage());
+		}
+		trie.firstCharFilter = firstChars.build();
+		trie.typeTable = new String[typeIndexes.size()];
+		for (Map.Entry<String, Integer> entry : typeIndexes.entrySet()) {
+			trie.typeTable[entry.getValue()] = entry.getKey();
+		}
+		return trie;
+	}
+
+	/**
+	 * 深度优先,按字符从小到大的顺序添加state下的所有单词,FST要求单词按顺序添加.
+	 *
+	 * @param source
+	 *            前缀树
+	 * @param state
+	 *            source中的状态
+	 * @param path
+	 *            从根节点到state的字符
+	 * @param builder
+	 *            FST builder
+	 * @param typeIndexes
+	 *            token类型和下标
+	 * @param firstChars
+	 *            记录单词的第一个字符和长度
+	 * @throws IOException
+	 *             构建FST出错
+	 */
+	private void addAll(Trie source, int state, IntsRefBuilder path, Builder<Long> builder,
+			Map<String, Integer> typeIndexes, FirstCharFilter.Builder firstChars) throws IOException {
+		for (char c : source.getChildChars(state)) {
+			int child = source.find(state, c);
+			path.append(c);
+			if (source.isTokenEnd(child)) {
+				builder.add(path.get(), (long) typeIndex(typeIndexes, source.getTypes(child)));
+				firstChars.add((char) path.intAt(0), path.length());
+				size++;
+			}
+			addAll(source, child, path, builder, typeIndexes, firstChars);
+			path.setLength(path.length() - 1);
+		}
+	}
+
+	/**
+	 * 获取token类型的下标,不存在时分配一个新的下标.
+	 *
+	 * @param typeIndexes
+	 *            token类型和下标
+	 * @param types
+	 *            token类型
+	 * @return 下标
+	 */
+	private static int typeIndex(Map<String, Integer> typeIndexes, String types) {
+		Integer index = typeIndexes.get(types);
+		if (index == null) {
+			index = typeIndexes.size();
+			typeIndexes.put(types, index);
+		}
+		return index;
+	}
+
+	@Override
+	public Cursor newCursor() {
+		return new FstCursor();
+	}
+
+	@Override
+	public int getRootState() {
+		throw new UnsupportedOperationException("FstTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public int find(int state, char c) {
+		throw new UnsupportedOperationException("FstTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public boolean isTokenEnd(int state) {
+		throw new UnsupportedOperationException("FstTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public String getTypes(int state) {
+		throw new UnsupportedOperationException("FstTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public char[] getChildChars(int state) {
+		throw new UnsupportedOperationException("FstTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public FirstCharFilter getFirstCharFilter() {
+		return firstCharFilter;
+	}
+
+	@Override
+	public int getMaxTokenLength() {
+		return firstCharFilter.getMaxLength();
+	}
+
+	/**
+	 * FST占用的内存.
+	 *
+	 * @return 字节数
+	 */
+	public long ramBytesUsed() {
+		return fst == null ? 0 : fst.ramBytesUsed();
+	}
+
+	@Override
+	public long estimateBytes() {
+		return ramBytesUsed() + firstCharFilter.estimateBytes();
+	}
+
+	/**
+	 * FST中的节点是共享的,统计的是按顺序枚举所有单词得到的逻辑上的前缀树的结构,和其他实现的结果相同.
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder();
+		if (fst != null) {
+			IntsRefFSTEnum<Long> words = new IntsRefFSTEnum<>(fst);
+			try {
+				IntsRefFSTEnum.InputOutput<Long> word;
+				while ((word = words.next()) != null) {
+					builder.addSortedToken(word.input.ints, word.input.offset, word.input.length,
+							typeTable[word.output.intValue()]);
+				}
+			} catch (IOException e) {
+				throw new DictionaryHandleException("遍历FST失败:" + e.getMessage());
+			}
+		}
+		builder.finishSortedTokens();
+		return builder.build(estimateBytes(), getOffHeapBytes());
+	}
+
+	/**
+	 * 按字符从小到大的顺序枚举FST中的单词.
+	 */
+	@Override
+	public void forEachToken(TokenVisitor visitor) {
+		if (fst == null) {
+			return;
+		}
+		IntsRefFSTEnum<Long> words = new IntsRefFSTEnum<>(fst);
+		StringBuilder token = new StringBuilder();
+		try {
+			IntsRefFSTEnum.InputOutput<Long> word;
+			while ((word = words.next()) != null) {
+				token.setLength(0);
+				for (int i = 0; i < word.input.length; i++) {
+					token.append((char) word.input.ints[word.input.offset + i]);
+				}
+				visitor.visit(token.toString(), typeTable[word.output.intValue()]);
+			}
+		} catch (IOException e) {
+			throw new DictionaryHandleException("遍历FST失败:" + e.getMessage());
+		}
+	}
+
+	/**
+	 * 在FST上查找的游标,一个arc一个arc的往下走,arc对象重复使用.
+	 */
+	private final class FstCursor extends Cursor {
+
+		private final FST.BytesReader reader;
+		/**
+		 * 当前节点的arc,即从父节点指向当前节点的arc.
+		 */
+		private FST.Arc<Long> arc = new FST.Arc<>();
+		/**
+		 * 查找时使用的arc,找到后和{@link #arc}交换.
+		 */
+		private FST.Arc<Long> scratch = new FST.Arc<>();
+		/**
+		 * 从根节点到当前节点所有arc的output之和.
+		 */
+		private long output;
+
+		FstCursor() {
+			reader = fst == null ? null : fst.getBytesReader();
+			reset();
+		}
+
+		@Override
+		public void reset() {
+			if (fst != null) {
+				fst.getFirstArc(arc);
+			}
+			output = 0;
+		}
+
+		@Override
+		public boolean next(char c) {
+			if (fst == null) {
+				return false;
+			}
+			try {
+				if (fst.findTargetArc(c, arc, scratch, reader) == null) {
+					return false;
+				}
+			} catch (IOException e) {
+				throw new DictionaryHandleException("查找FST失败:" + e.getMessage());
+			}
+			FST.Arc<Long> found = scratch;
+			scratch = arc;
+			arc = found;
+			output += arc.output;
+			return true;
+		}
+
+		@Override
+		public boolean isTokenEnd() {
+			return fst != null && arc.isFinal();
+		}
+
+		@Override
+		public String getTypes() {
+			if (!isTokenEnd()) {
+				return null;
+			}
+			return typeTable[(int) (output + arc.nextFinalOutput)];
+		}
+
+		@Override
+		public char[] getChildChars() {
+			if (fst == null || !FST.targetHasArcs(arc)) {
+				return new char[0];
+			}
+			char[] chars = new char[16];
+			int count = 0;
+			try {
+				FST.Arc<Long> child = fst.readFirstTargetArc(arc, new FST.Arc<Long>(), reader);
+				while (true) {
+					if (child.label != FST.END_LABEL) {// 当前节点是单词的结尾
+						if (count == chars.length) {
+							chars = Arrays.copyOf(chars, count * 2);
+						}
+						chars[count++] = (char) child.label;
+					}
+					if (child.isLast()) {
+						break;
+					}
+					fst.readNextArc(child, reader);
+				}
+			} catch (IOException e) {
+				throw new DictionaryHandleException("遍历FST失败:" + e.getMessage());
+			}
+			return Arrays.copyOf(chars, count);
+		}
+	}
+}
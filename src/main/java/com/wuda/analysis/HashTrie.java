@@ -0,0 +1,504 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.wuda.utils.tree.TypeSetRegistry;
+
+/**
+ * 使用基本类型哈希表保存父子关系的前缀树.节点的状态就是从0开始连续分配的id,父子关系(边)的key是
+ * <code>(parentId &lt;&lt; 16) | char</code>,保存在开放地址法的long数组中,value是子节点的id.
+ * 和{@link TreeTrie}相比,每条边不需要String,char[]和map entry对象,并且哈希表的大小是根据实际添加的单词数量增长的.
+ *
+ * @author wuda
+ *
+ */
+public class HashTrie extends MutableTrie {
+
+	/**
+	 * 哈希表中空的位置.所有合法的key都大于等于0.
+	 */
+	private final static long EMPTY = -1L;
+
+	/**
+	 * 哈希表的最大装载因子.
+	 */
+	private final static float LOAD_FACTOR = 0.6f;
+
+	/**
+	 * 哈希表的最大容量.
+	 */
+	private final static int MAX_CAPACITY = 1 << 30;
+
+	/**
+	 * 平均每个单词新增的节点数量,还没有添加任何单词时用于预估容量.
+	 */
+	private final static float DEFAULT_NODES_PER_TOKEN = 2.0f;
+
+	/**
+	 * 哈希表,扩容时整体替换,保证查找的线程总是看到一个完整的表.
+	 */
+	private volatile Table table = new Table(16);
+
+	/**
+	 * 边的数量,也就是除root以外的节点数量.
+	 */
+	private int edgeCount = 0;
+
+	/**
+	 * 节点的数量,包括root.
+	 */
+	private int nodeCount = 1;
+
+	/**
+	 * 节点的第一个子节点,用于遍历子节点.
+	 */
+	private int[] firstChild = new int[16];
+	/**
+	 * 节点的下一个兄弟节点.
+	 */
+	private int[] nextSibling = new int[16];
+	/**
+	 * 节点上的字符.
+	 */
+	private char[] elements = new char[16];
+	/**
+	 * 节点的token类型在{@link TypeSetRegistry}中的id.
+	 */
+	private int[] typeSetIds = new int[16];
+	/**
+	 * 是token(单词)结尾的节点.
+	 */
+	private final BitSet tokenEnds = new BitSet();
+
+	/**
+	 * token(单词)的数量.
+	 */
+	private int size = 0;
+
+	/**
+	 * 添加过的最长的token的长度,删除token时不变.
+	 */
+	private volatile int maxTokenLength = 0;
+
+	public HashTrie() {
+		firstChild[0] = NO_STATE;
+		nextSibling[0] = NO_STATE;
+	}
+
+	/**
+	 * 创建前缀树,并且根据即将添加的token数量提前分配空间.
+	 *
+	 * @param expectedTokenCount
+	 *            预计添加的token数量
+	 */
+	public HashTrie(int expectedTokenCount) {
+		this();
+		ensureCapacity(expectedTokenCount);
+	}
+
+	@Override
+	public void add(String token, String tokenType) {
+		if (token == null) {
+			throw new NullPointerException();
+		} else if (token.trim().isEmpty()) {
+			throw new IllegalArgumentException("token 不能是空字符");
+		}
+		int parent = 0;
+		for (int i = 0; i < token.length(); i++) {
+			char c = Character.toLowerCase(token.charAt(i));
+			int child = find(parent, c);
+			if (child == NO_STATE) {
+				child = createNode(parent, c);
+			}
+			parent = child;
+		}
+		if (!tokenEnds.get(parent)) {
+			tokenEnds.set(parent);
+			size++;
+		}
+		if (token.length() > maxTokenLength) {
+			maxTokenLength = token.length();
+		}
+		if (tokenType != null) {
+			typeSetIds[parent] = TypeSetRegistry.add(typeSetIds[parent], tokenType);
+		}
+	}
+
+	@Override
+	public boolean remove(String token, String tokenType) {
+		int state = getState(token);
+		if (state == NO_STATE || !tokenEnds.get(state)) {
+			return false;
+		}
+		if (tokenType == null) {
+			tokenEnds.clear(state);
+			typeSetIds[state] = TypeSetRegistry.EMPTY;
+			size--;
+			return true;
+		}
+		int typeSetId = TypeSetRegistry.remove(typeSetIds[state], tokenType);
+		if (typeSetId == typeSetIds[state]) {
+			return false;
+		}
+		typeSetIds[state] = typeSetId;
+		return true;
+	}
+
+	/**
+	 * 直接复制所有的数组,不需要重新添加单词.
+	 */
+	@Override
+	public HashTrie copy() {
+		HashTrie trie = new HashTrie();
+		trie.table = new Table(table);
+		trie.edgeCount = edgeCount;
+		trie.nodeCount = nodeCount;
+		trie.firstChild = firstChild.clone();
+		trie.nextSibling = nextSibling.clone();
+		trie.elements = elements.clone();
+		trie.typeSetIds = typeSetIds.clone();
+		trie.tokenEnds.or(tokenEnds);
+		trie.size = size;
+		trie.maxTokenLength = maxTokenLength;
+		return trie;
+	}
+
+	/**
+	 * 创建子节点.
+	 *
+	 * @param parent
+	 *            父节点
+	 * @param c
+	 *            子节点的字符
+	 * @return 子节点
+	 */
+	private int createNode(int parent, char c) {
+		int child = nodeCount;
+		if (child == elements.length) {
+			int length = child + (child >> 1);
+			firstChild = Arrays.copyOf(firstChild, length);
+			nextSibling = Arrays.copyOf(nextSibling, length);
+			elements = Arrays.copyOf(elements, length);
+			typeSetIds = Arrays.copyOf(typeSetIds, length);
+		}
+		elements[child] = c;
+		firstChild[child] = NO_STATE;
+		nextSibling[child] = firstChild[parent];
+		firstChild[parent] = child;
+		nodeCount++;
+		if (edgeCount + 1 > table.threshold) {
+			if (table.keys.length >= MAX_CAPACITY) {
+				throw new DictionaryHandleException("词典太大,节点数量超过了哈希表的最大容量");
+			}
+			rehash(table.keys.length * 2);
+		}
+		table.put(key(parent, c), child);
+		edgeCount++;
+		return child;
+	}
+
+	/**
+	 * 根据即将添加的token数量扩容哈希表.已经添加过单词时,用实际的平均每个单词新增的节点数量来预估.
+	 */
+	@Override
+	public void ensureCapacity(int tokenCount) {
+		if (tokenCount <= 0) {
+			return;
+		}
+		float nodesPerToken = size > 0 ? (float) edgeCount / size : DEFAULT_NODES_PER_TOKEN;
+		long expectedEdges = edgeCount + (long) Math.ceil(nodesPerToken * tokenCount);
+		int capacity = tableSizeFor(expectedEdges);
+		if (capacity > table.keys.length) {
+			rehash(capacity);
+		}
+	}
+
+	/**
+	 * 计算能够容纳指定数量的边的哈希表大小,是2的幂.
+	 *
+	 * @param edges
+	 *            边的数量
+	 * @return 哈希表大小
+	 */
+	private static int tableSizeFor(long edges) {
+		long needed = (long) Math.ceil(edges / (double) LOAD_FACTOR);
+		int capacity = 16;
+		while (capacity < needed && capacity < MAX_CAPACITY) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * 扩容哈希表.
+	 *
+	 * @param capacity
+	 *            新的容量,2的幂
+	 */
+	private void rehash(int capacity) {
+		Table old = table;
+		Table resized = new Table(capacity);
+		for (int i = 0; i < old.keys.length; i++) {
+			if (old.keys[i] != EMPTY) {
+				resized.put(old.keys[i], old.values[i]);
+			}
+		}
+		table = resized;
+	}
+
+	/**
+	 * 边的key.
+	 *
+	 * @param parent
+	 *            父节点
+	 * @param c
+	 *            子节点的字符
+	 * @return key
+	 */
+	private static long key(int parent, char c) {
+		return ((long) parent << 16) | c;
+	}
+
+	@Override
+	public int getRootState() {
+		return 0;
+	}
+
+	@Override
+	public int find(int state, char c) {
+		return table.get(key(state, c));
+	}
+
+	@Override
+	public boolean isTokenEnd(int state) {
+		return tokenEnds.get(state);
+	}
+
+	@Override
+	public String getTypes(int state) {
+		return TypeSetRegistry.getTypes(typeSetIds[state]);
+	}
+
+	@Override
+	public char[] getChildChars(int state) {
+		int count = 0;
+		for (int child = firstChild[state]; child != NO_STATE; child = nextSibling[child]) {
+			count++;
+		}
+		char[] chars = new char[count];
+		int i = 0;
+		for (int child = firstChild[state]; child != NO_STATE; child = nextSibling[child]) {
+			chars[i++] = elements[child];
+		}
+		Arrays.sort(chars);
+		return chars;
+	}
+
+	@Override
+	public int getMaxTokenLength() {
+		return maxTokenLength;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 节点的数量,包括root.
+	 *
+	 * @return 节点的数量
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * 哈希表每个位置一个long和一个int,每个节点三个int数组加一个char数组的元素.
+	 */
+	@Override
+	public long estimateBytes() {
+		return (long) table.keys.length * 12 + (long) elements.length * 14 + tokenEnds.size() / 8;
+	}
+
+	/**
+	 * 预估有这么多条边的前缀树占用的内存,和{@link #estimateBytes()}一样计算,用于在复制之前检查内存预算.
+	 *
+	 * @param edges
+	 *            边的数量,即除root以外的节点数量
+	 * @return 字节数
+	 */
+	public static long estimateBytes(long edges) {
+		return (long) tableSizeFor(edges) * 12 + (edges + 1) * 14 + edges / 8;
+	}
+
+	/**
+	 * 复制其他前缀树,比如把{@link TreeTrie}转换成占用内存更少的HashTrie,或者把{@link OverlayTrie}合并成一个前缀树.
+	 * 复制期间source不能被修改.
+	 *
+	 * @param source
+	 *            前缀树
+	 * @return 新的前缀树
+	 */
+	public static HashTrie copyOf(Trie source) {
+		HashTrie trie = new HashTrie(source.size());
+		if (source instanceof AbstractDoubleArrayTrie) {
+			trie.copyStates((AbstractDoubleArrayTrie) source);
+		} else if (source instanceof OverlayTrie || source instanceof FstTrie) {// 只能通过游标查找
+			trie.addAll(source);
+		} else {
+			trie.copyChildren(source, source.getRootState(), 0);
+		}
+		trie.maxTokenLength = Math.max(trie.maxTokenLength, source.getMaxTokenLength());
+		return trie;
+	}
+
+	/**
+	 * 逐个添加{@link Trie#forEachToken(TokenVisitor)}遍历的单词和类型.
+	 *
+	 * @param source
+	 *            前缀树
+	 */
+	private void addAll(Trie source) {
+		source.forEachToken(new TokenVisitor() {
+
+			@Override
+			public void visit(String token, String types) {
+				add(token, null);
+				if (types != null) {
+					for (String type : types.split(",")) {
+						add(token, type);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * 复制双数组前缀树的所有节点.双数组的{@link Trie#getChildChars(int)}需要检查所有可能的位置,
+	 * 因此按状态顺序复制,通过父节点的链接保证父节点先于子节点创建.
+	 *
+	 * @param source
+	 *            双数组前缀树
+	 */
+	private void copyStates(AbstractDoubleArrayTrie source) {
+		int limit = source.getStateLimit();
+		int[] states = new int[limit];
+		Arrays.fill(states, NO_STATE);
+		states[source.getRootState()] = 0;
+		for (int sourceState = 0; sourceState < limit; sourceState++) {
+			copyState(source, sourceState, states);
+		}
+	}
+
+	/**
+	 * 复制一个节点,父节点还没有复制时先复制父节点.
+	 *
+	 * @param source
+	 *            双数组前缀树
+	 * @param sourceState
+	 *            source中的状态
+	 * @param states
+	 *            source中的状态对应的本树中的状态
+	 * @return 本树中的状态,{@link #NO_STATE}-如果source中这个位置没有被使用
+	 */
+	private int copyState(AbstractDoubleArrayTrie source, int sourceState, int[] states) {
+		if (states[sourceState] != NO_STATE) {
+			return states[sourceState];
+		}
+		int sourceParent = source.getParentState(sourceState);
+		if (sourceParent == NO_STATE) {
+			return NO_STATE;
+		}
+		int child = createNode(copyState(source, sourceParent, states), source.getStateChar(sourceState));
+		if (source.isTokenEnd(sourceState)) {
+			tokenEnds.set(child);
+			typeSetIds[child] = TypeSetRegistry.getId(source.getTypes(sourceState));
+			size++;
+		}
+		states[sourceState] = child;
+		return child;
+	}
+
+	/**
+	 * 深度优先复制source中state的所有子节点.
+	 *
+	 * @param source
+	 *            前缀树
+	 * @param sourceState
+	 *            source中的状态
+	 * @param state
+	 *            本树中对应的状态
+	 */
+	private void copyChildren(Trie source, int sourceState, int state) {
+		for (char c : source.getChildChars(sourceState)) {
+			int sourceChild = source.find(sourceState, c);
+			int child = createNode(state, c);
+			if (source.isTokenEnd(sourceChild)) {
+				tokenEnds.set(child);
+				typeSetIds[child] = TypeSetRegistry.getId(source.getTypes(sourceChild));
+				size++;
+			}
+			copyChildren(source, sourceChild, child);
+		}
+	}
+
+	/**
+	 * 开放地址法(线性探测)的哈希表.
+	 */
+	private static final class Table {
+		private final long[] keys;
+		private final int[] values;
+		private final int mask;
+		private final int threshold;
+
+		Table(int capacity) {
+			keys = new long[capacity];
+			values = new int[capacity];
+			Arrays.fill(keys, EMPTY);
+			mask = capacity - 1;
+			threshold = (int) (capacity * LOAD_FACTOR);
+		}
+
+		Table(Table source) {
+			keys = source.keys.clone();
+			values = source.values.clone();
+			mask = source.mask;
+			threshold = source.threshold;
+		}
+
+		/**
+		 * 哈希表中的位置.
+		 *
+		 * @param key
+		 *            key
+		 * @return 位置
+		 */
+		private int slot(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & mask;
+		}
+
+		int get(long key) {
+			for (int i = slot(key);; i = (i + 1) & mask) {
+				long k = keys[i];
+				if (k == key) {
+					return values[i];
+				} else if (k == EMPTY) {
+					return NO_STATE;
+				}
+			}
+		}
+
+		void put(long key, int value) {
+			for (int i = slot(key);; i = (i + 1) & mask) {
+				if (keys[i] == EMPTY || keys[i] == key) {
+					values[i] = value;// 先写value再写key,查找的线程看到key时value已经存在
+					keys[i] = key;
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package com.wuda.analysis;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * 直接在内存映射文件上查找的双数组前缀树.数组的结构和{@link DoubleArrayTrie}完全一样,只是保存在
+ * {@link CompiledDictionary}文件中,通过<code>FileChannel.map</code>映射到内存,不占用jvm堆内存,
+ * 并且同一台机器上的多个jvm可以共享操作系统的page cache.
+ *
+ * @author wuda
+ *
+ */
+public class MappedTrie extends AbstractDoubleArrayTrie {
+
+	private final IntBuffer base;
+	private final IntBuffer check;
+	private final IntBuffer value;
+	private final int length;
+	private final String[] typeTable;
+	private final int size;
+
+	/**
+	 * 构建实例.
+	 *
+	 * @param base
+	 *            base数组
+	 * @param check
+	 *            check数组
+	 * @param value
+	 *            value数组
+	 * @param typeTable
+	 *            所有不同的token类型
+	 * @param size
+	 *            token(单词)的数量
+	 */
+	MappedTrie(IntBuffer base, IntBuffer check, IntBuffer value, String[] typeTable, int size) {
+		this.base = base;
+		this.check = check;
+		this.value = value;
+		this.length = check.limit();
+		this.typeTable = typeTable;
+		this.size = size;
+	}
+
+	@Override
+	public int getRootState() {
+		return 0;
+	}
+
+	@Override
+	public int find(int state, char c) {
+		int t = base.get(state) + c;
+		if (t < length && check.get(t) == state) {
+			return t;
+		}
+		return NO_STATE;
+	}
+
+	@Override
+	public boolean isTokenEnd(int state) {
+		return value.get(state) >= 0;
+	}
+
+	@Override
+	public String getTypes(int state) {
+		int index = value.get(state);
+		return index < 0 ? null : typeTable[index];
+	}
+
+	/**
+	 * 和{@link DoubleArrayTrie#getChildChars(int)}一样,需要检查所有可能的位置,因此只适合偶尔调用.
+	 */
+	@Override
+	public char[] getChildChars(int state) {
+		int begin = base.get(state);
+		if (begin <= 0) {
+			return new char[0];
+		}
+		int end = Math.min(length, begin + Character.MAX_VALUE + 1);
+		char[] chars = new char[16];
+		int count = 0;
+		for (int t = begin; t < end; t++) {
+			if (check.get(t) == state) {
+				if (count == chars.length) {
+					chars = Arrays.copyOf(chars, count * 2);
+				}
+				chars[count++] = (char) (t - begin);
+			}
+		}
+		return Arrays.copyOf(chars, count);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 双数组在映射的文件中,堆内存只有已经编译的自动机和过滤器.
+	 */
+	@Override
+	public long estimateBytes() {
+		return getCacheBytes();
+	}
+
+	/**
+	 * 映射的base,check和value三个int数组.
+	 */
+	@Override
+	public long getOffHeapBytes() {
+		return 12L * length;
+	}
+
+	@Override
+	public int getStateLimit() {
+		return length;
+	}
+
+	@Override
+	public int getParentState(int state) {
+		return check.get(state);
+	}
+
+	@Override
+	public char getStateChar(int state) {
+		return (char) (state - base.get(check.get(state)));
+	}
+}
@@ -0,0 +1,70 @@
+package com.wuda.analysis;
+
+/**
+ * 可以添加单词的前缀树,加载词典时使用.
+ *
+ * @author wuda
+ *
+ */
+public abstract class MutableTrie extends Trie {
+
+	/**
+	 * 添加一个token.
+	 *
+	 * @param token
+	 *            token,比如单词,短语等
+	 * @param tokenType
+	 *            toke 类型.
+	 */
+	public abstract void add(String token, String tokenType);
+
+	/**
+	 * 删除token的一个类型.节点不会被删除,只是不再是token的结尾(墓碑),因此查找的结果和没有添加过这个token一样.
+	 *
+	 * @param token
+	 *            token,比如单词,短语等
+	 * @param tokenType
+	 *            toke 类型,null-删除token和它的所有类型
+	 * @return true-如果删除了,false-如果token或者这个类型不存在
+	 */
+	public abstract boolean remove(String token, String tokenType);
+
+	/**
+	 * 复制一份,之后修改复制的前缀树不会影响原来的前缀树.复制期间原来的前缀树不能被修改.
+	 *
+	 * @return 新的前缀树
+	 */
+	public abstract MutableTrie copy();
+
+	/**
+	 * 获取token最后一个字符所在节点的状态,和添加时一样忽略大小写.
+	 *
+	 * @param token
+	 *            token
+	 * @return 状态,{@link #NO_STATE}-如果没有找到
+	 */
+	public int getState(String token) {
+		int state = getRootState();
+		for (int i = 0; i < token.length() && state != NO_STATE; i++) {
+			state = find(state, Character.toLowerCase(token.charAt(i)));
+		}
+		return state;
+	}
+
+	/**
+	 * 即将添加一批token,实现类可以根据数量提前扩容,避免添加过程中多次扩容.
+	 *
+	 * @param tokenCount
+	 *            即将添加的token数量
+	 */
+	public void ensureCapacity(int tokenCount) {
+	}
+
+	/**
+	 * 估算占用的内存.根据节点数量和数组,哈希表的容量计算,只和添加过的单词有关,和gc的时机无关,
+	 * 因此相同的单词总是得到相同的结果.
+	 *
+	 * @return 字节数
+	 */
+	public abstract long estimateBytes();
+}
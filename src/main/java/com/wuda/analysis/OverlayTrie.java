@@ -0,0 +1,453 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+
+/**
+ * 基础词典加上可以修改的覆盖层.基础词典是构建完成后不再修改的紧凑的前缀树,比如{@link DoubleArrayTrie}或者{@link FstTrie};
+ * 覆盖层只保存修改过的单词,修改的代价只和修改的单词数量有关,不需要复制或者重新构建基础词典.
+ * <p>
+ * 覆盖层由两个{@link HashTrie}组成:
+ * <ul>
+ * <li>修改过的单词,保存修改后的全部类型,查找时优先于基础词典</li>
+ * <li>从基础词典中删除的单词,查找时当作不存在</li>
+ * </ul>
+ * 分词时{@link #newCursor()}返回的游标同时在基础词典和覆盖层中往下查找,一次遍历就得到合并后的结果.
+ * 和{@link FstTrie}一样只能通过游标查找,基于状态的方法都会抛出{@link UnsupportedOperationException},也没有
+ * {@link AhoCorasick}自动机.{@link DictEngine#DOUBLE_ARRAY}发布覆盖层之后会把它合并到新的基础词典中,见{@link HashTrie#copyOf(Trie)}.
+ *
+ * @author wuda
+ *
+ */
+public class OverlayTrie extends MutableTrie {
+
+	/**
+	 * 基础词典,不会被修改.
+	 */
+	private final Trie base;
+	/**
+	 * 修改过的单词和修改后的全部类型.
+	 */
+	private final HashTrie added;
+	/**
+	 * 从基础词典中删除的单词.
+	 */
+	private final HashTrie removed;
+	/**
+	 * 合并后的单词数量.
+	 */
+	private int size;
+
+	/**
+	 * 第一次使用时才构建,修改后重新构建.
+	 */
+	private volatile FirstCharFilter firstCharFilter = null;
+
+	/**
+	 * 在基础词典上创建空的覆盖层.
+	 *
+	 * @param base
+	 *            基础词典,之后不能再被修改
+	 */
+	public OverlayTrie(Trie base) {
+		this(base, new HashTrie(), new HashTrie(), base.size());
+	}
+
+	private OverlayTrie(Trie base, HashTrie added, HashTrie removed, int size) {
+		this.base = base;
+		this.added = added;
+		this.removed = removed;
+		this.size = size;
+	}
+
+	@Override
+	public void add(String token, String tokenType) {
+		boolean existed = isTokenEnd(token);
+		override(token);
+		added.add(token, tokenType);
+		removed.remove(token, null);
+		if (!existed) {
+			size++;
+		}
+		firstCharFilter = null;
+	}
+
+	@Override
+	public boolean remove(String token, String tokenType) {
+		if (!isTokenEnd(token)) {
+			return false;
+		}
+		override(token);
+		if (!added.remove(token, tokenType)) {
+			return false;
+		}
+		if (tokenType == null) {
+			if (lookup(base, token) != null) {
+				removed.add(token, null);
+			}
+			size--;
+		}
+		return true;
+	}
+
+	/**
+	 * 第一次修改基础词典中的单词时,先把它的全部类型复制到覆盖层,之后只修改覆盖层.
+	 *
+	 * @param token
+	 *            单词
+	 */
+	private void override(String token) {
+		if (lookup(added, token) != null || lookup(removed, token) != null) {// 已经在覆盖层中
+			return;
+		}
+		Trie.Cursor cursor = lookup(base, token);
+		if (cursor == null) {
+			return;
+		}
+		added.add(token, null);
+		String types = cursor.getTypes();
+		if (types != null) {
+			for (String type : types.split(",")) {
+				added.add(token, type);
+			}
+		}
+	}
+
+	/**
+	 * 合并后是否包含单词.
+	 *
+	 * @param token
+	 *            单词
+	 * @return true-如果包含
+	 */
+	private boolean isTokenEnd(String token) {
+		return lookup(this, token) != null;
+	}
+
+	/**
+	 * 查找单词,和添加时一样忽略大小写.
+	 *
+	 * @param trie
+	 *            前缀树
+	 * @param token
+	 *            单词
+	 * @return 位于单词结尾的游标,null-如果不包含这个单词
+	 */
+	private static Trie.Cursor lookup(Trie trie, String token) {
+		Trie.Cursor cursor = walk(trie, token);
+		return cursor != null && cursor.isTokenEnd() ? cursor : null;
+	}
+
+	/**
+	 * 复制覆盖层,和原来的覆盖层共享同一个基础词典.
+	 */
+	@Override
+	public OverlayTrie copy() {
+		return new OverlayTrie(base, added.copy(), removed.copy(), size);
+	}
+
+	/**
+	 * @return 基础词典
+	 */
+	public Trie getBase() {
+		return base;
+	}
+
+	/**
+	 * 覆盖层中的单词数量,包括修改过的单词和删除的单词.覆盖层太大时应该重新构建基础词典.
+	 *
+	 * @return 单词数量
+	 */
+	public int getOverlaySize() {
+		return added.size() + removed.size();
+	}
+
+	@Override
+	public Cursor newCursor() {
+		return new OverlayCursor(base.newCursor(), added.newCursor(), removed.newCursor());
+	}
+
+	/**
+	 * 基础词典的过滤器加上覆盖层中的单词.删除的单词仍然保留在过滤器中,只是多查找一次,结果不受影响.
+	 *
+	 * @return 过滤器,null-如果基础词典不支持
+	 */
+	@Override
+	public FirstCharFilter getFirstCharFilter() {
+		FirstCharFilter current = firstCharFilter;
+		if (current == null) {
+			FirstCharFilter baseFilter = base.getFirstCharFilter();
+			if (baseFilter == null) {
+				return null;
+			}
+			FirstCharFilter.Builder builder = new FirstCharFilter.Builder();
+			for (int c = 0; c <= Character.MAX_VALUE; c++) {
+				builder.add((char) c, baseFilter.getMaxLength((char) c));
+			}
+			int root = added.getRootState();
+			for (char c : added.getChildChars(root)) {
+				addLengths(builder, c, added.find(root, c), 1);
+			}
+			current = builder.build();
+			firstCharFilter = current;
+		}
+		return current;
+	}
+
+	/**
+	 * 把覆盖层中一个节点下的所有单词添加到过滤器.
+	 *
+	 * @param builder
+	 *            过滤器
+	 * @param first
+	 *            单词的第一个字符
+	 * @param state
+	 *            节点
+	 * @param length
+	 *            从根节点到这个节点的长度
+	 */
+	private void addLengths(FirstCharFilter.Builder builder, char first, int state, int length) {
+		if (added.isTokenEnd(state)) {
+			builder.add(first, length);
+		}
+		for (char c : added.getChildChars(state)) {
+			addLengths(builder, first, added.find(state, c), length + 1);
+		}
+	}
+
+	/**
+	 * 先遍历基础词典中没有被修改或者删除的单词,再遍历覆盖层中修改过的单词.
+	 */
+	@Override
+	public void forEachToken(final TokenVisitor visitor) {
+		base.forEachToken(new TokenVisitor() {
+
+			@Override
+			public void visit(String token, String types) {
+				if (lookup(added, token) == null && lookup(removed, token) == null) {
+					visitor.visit(token, types);
+				}
+			}
+		});
+		added.forEachToken(visitor);
+	}
+
+	/**
+	 * 基础词典和覆盖层中较长的一个,删除的单词仍然计算在内.
+	 */
+	@Override
+	public int getMaxTokenLength() {
+		return Math.max(base.getMaxTokenLength(), added.getMaxTokenLength());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long estimateBytes() {
+		FirstCharFilter currentFilter = firstCharFilter;
+		return base.estimateBytes() + added.estimateBytes() + removed.estimateBytes()
+				+ (currentFilter == null ? 0 : currentFilter.estimateBytes());
+	}
+
+	@Override
+	public long getOffHeapBytes() {
+		return base.getOffHeapBytes();
+	}
+
+	/**
+	 * 按合并后的前缀树统计:基础词典的统计信息中,覆盖层经过的节点换成合并后的节点,其他节点不变.覆盖层中和基础词典重复的节点
+	 * 只算一次,只通向被删除的单词的节点不再计数;修改过的单词按修改后的类型计数.
+	 */
+	@Override
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder();
+		builder.add(base.getStats());
+		addStats(builder, added.getRootState(), removed.getRootState(), new StringBuilder());
+		return builder.build(estimateBytes(), getOffHeapBytes());
+	}
+
+	/**
+	 * 统计覆盖层中的一个节点和它下面的所有节点,替换基础词典中相同位置的节点.
+	 *
+	 * @param builder
+	 *            统计信息,已经加上了基础词典的统计信息
+	 * @param addedState
+	 *            节点在{@link #added}中的状态,{@link #NO_STATE}-如果没有
+	 * @param removedState
+	 *            节点在{@link #removed}中的状态,{@link #NO_STATE}-如果没有
+	 * @param path
+	 *            从根节点到这个节点的字符
+	 * @return true-如果合并后仍然有这个节点,即这个节点或者它下面还有单词
+	 */
+	private boolean addStats(DictionaryStats.Builder builder, int addedState, int removedState, StringBuilder path) {
+		Trie.Cursor baseCursor = walk(base, path);
+		char[] baseChars = baseCursor == null ? new char[0] : baseCursor.getChildChars();
+		char[] layerChars = union(addedState == NO_STATE ? new char[0] : added.getChildChars(addedState),
+				removedState == NO_STATE ? new char[0] : removed.getChildChars(removedState));
+		int fanout = 0;
+		for (char c : layerChars) {
+			path.append(c);
+			if (addStats(builder, child(added, addedState, c), child(removed, removedState, c), path)) {
+				fanout++;
+			}
+			path.setLength(path.length() - 1);
+		}
+		for (char c : baseChars) {
+			if (Arrays.binarySearch(layerChars, c) < 0) {// 覆盖层没有经过的子节点不变
+				fanout++;
+			}
+		}
+		int depth = path.length();
+		boolean addedEnd = addedState != NO_STATE && added.isTokenEnd(addedState);
+		boolean removedEnd = removedState != NO_STATE && removed.isTokenEnd(removedState);
+		boolean baseEnd = depth > 0 && baseCursor != null && baseCursor.isTokenEnd();
+		boolean tokenEnd = depth > 0 && (addedEnd || !removedEnd && baseEnd);
+		if (baseCursor != null) {
+			builder.removeNode(depth, baseChars.length);
+			if (baseEnd) {
+				builder.removeToken(baseCursor.getTypes());
+			}
+		}
+		if (depth > 0 && !tokenEnd && fanout == 0) {// 只通向被删除的单词
+			return false;
+		}
+		builder.addNode(depth, fanout);
+		if (tokenEnd) {
+			builder.addToken(addedEnd ? added.getTypes(addedState) : baseCursor.getTypes());
+		}
+		return true;
+	}
+
+	/**
+	 * 从根节点往下查找,和添加时一样忽略大小写.
+	 *
+	 * @param trie
+	 *            前缀树
+	 * @param path
+	 *            字符
+	 * @return 位于最后一个字符的游标,null-如果没有这个节点
+	 */
+	private static Trie.Cursor walk(Trie trie, CharSequence path) {
+		Trie.Cursor cursor = trie.newCursor();
+		for (int i = 0; i < path.length(); i++) {
+			if (!cursor.next(Character.toLowerCase(path.charAt(i)))) {
+				return null;
+			}
+		}
+		return cursor;
+	}
+
+	private static int child(HashTrie layer, int state, char c) {
+		return state == NO_STATE ? NO_STATE : layer.find(state, c);
+	}
+
+	/**
+	 * @return 两个排好序的数组中所有不同的字符,从小到大排序
+	 */
+	private static char[] union(char[] a, char[] b) {
+		char[] chars = new char[a.length + b.length];
+		int count = 0, i = 0, j = 0;
+		while (i < a.length || j < b.length) {
+			char c = j == b.length || i < a.length && a[i] <= b[j] ? a[i] : b[j];
+			if (i < a.length && a[i] == c) {
+				i++;
+			}
+			if (j < b.length && b[j] == c) {
+				j++;
+			}
+			chars[count++] = c;
+		}
+		return Arrays.copyOf(chars, count);
+	}
+
+	@Override
+	public int getState(String token) {
+		throw new UnsupportedOperationException("OverlayTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public int getRootState() {
+		throw new UnsupportedOperationException("OverlayTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public int find(int state, char c) {
+		throw new UnsupportedOperationException("OverlayTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public boolean isTokenEnd(int state) {
+		throw new UnsupportedOperationException("OverlayTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public String getTypes(int state) {
+		throw new UnsupportedOperationException("OverlayTrie只能通过newCursor()查找");
+	}
+
+	@Override
+	public char[] getChildChars(int state) {
+		throw new UnsupportedOperationException("OverlayTrie只能通过newCursor()查找");
+	}
+
+	/**
+	 * 同时在基础词典和覆盖层中往下查找的游标.修改过的单词以覆盖层为准,删除的单词不是单词的结尾,其他单词以基础词典为准.
+	 */
+	private static final class OverlayCursor extends Cursor {
+
+		private final Cursor base;
+		private final Cursor added;
+		private final Cursor removed;
+		private boolean inBase;
+		private boolean inAdded;
+		private boolean inRemoved;
+
+		OverlayCursor(Cursor base, Cursor added, Cursor removed) {
+			this.base = base;
+			this.added = added;
+			this.removed = removed;
+			reset();
+		}
+
+		@Override
+		public void reset() {
+			base.reset();
+			added.reset();
+			removed.reset();
+			inBase = true;
+			inAdded = true;
+			inRemoved = true;
+		}
+
+		@Override
+		public boolean next(char c) {
+			inBase = inBase && base.next(c);
+			inAdded = inAdded && added.next(c);
+			inRemoved = inRemoved && removed.next(c);
+			return inBase || inAdded;
+		}
+
+		@Override
+		public boolean isTokenEnd() {
+			if (inAdded && added.isTokenEnd()) {
+				return true;
+			}
+			return !(inRemoved && removed.isTokenEnd()) && inBase && base.isTokenEnd();
+		}
+
+		@Override
+		public String getTypes() {
+			if (inAdded && added.isTokenEnd()) {
+				return added.getTypes();
+			}
+			return !(inRemoved && removed.isTokenEnd()) && inBase ? base.getTypes() : null;
+		}
+
+		@Override
+		public char[] getChildChars() {
+			return union(inBase ? base.getChildChars() : new char[0], inAdded ? added.getChildChars() : new char[0]);
+		}
+	}
+}
@@ -0,0 +1,297 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 按单词的第一个字符分区的前缀树.根节点的每个子节点只属于一个分区,每个分区是一个独立的{@link MutableTrie},
+ * 因此不同分区的单词可以在不同的线程中同时添加,见{@link #addAll(String[], String[], int, ForkJoinPool)}.
+ * <p>
+ * 所有分区共享一个根节点,其他节点的状态是<code>(分区中的状态 &lt;&lt; {@link #PARTITION_BITS}) | 分区</code>,
+ * 因此添加完成后不需要合并,直接作为一个前缀树查找,或者编译成{@link DoubleArrayTrie}等.
+ *
+ * @author wuda
+ *
+ */
+public class PartitionedTrie extends MutableTrie {
+
+	/**
+	 * 分区数量的位数.
+	 */
+	private final static int PARTITION_BITS = 6;
+
+	/**
+	 * 分区的数量.比线程数量多一些,使得单词数量不均匀时每个线程的工作量也比较接近.
+	 */
+	private final static int PARTITIONS = 1 << PARTITION_BITS;
+
+	private final static int PARTITION_MASK = PARTITIONS - 1;
+
+	/**
+	 * 分区中的状态的上限.
+	 */
+	private final static int MAX_PARTITION_STATE = Integer.MAX_VALUE >>> PARTITION_BITS;
+
+	/**
+	 * 每个线程至少添加的单词数量,太少时不值得拆分.
+	 */
+	private final static int MIN_TOKENS_PER_TASK = 4096;
+
+	/**
+	 * 根节点的状态.
+	 */
+	private final static int ROOT = 0;
+
+	private final MutableTrie[] partitions;
+
+	/**
+	 * 每个分区使用引擎的{@link DictEngine#newBuilder()}创建.
+	 *
+	 * @param engine
+	 *            词典引擎
+	 */
+	public PartitionedTrie(DictEngine engine) {
+		partitions = new MutableTrie[PARTITIONS];
+		for (int i = 0; i < PARTITIONS; i++) {
+			partitions[i] = engine.newBuilder();
+		}
+	}
+
+	private PartitionedTrie(MutableTrie[] partitions) {
+		this.partitions = partitions;
+	}
+
+	/**
+	 * 字符所在的分区.
+	 *
+	 * @param c
+	 *            单词的第一个字符,已经转换成小写
+	 * @return 分区
+	 */
+	private static int partition(char c) {
+		return (c * 0x9E3779B1) >>> (32 - PARTITION_BITS);
+	}
+
+	/**
+	 * 单词所在的分区.
+	 *
+	 * @param token
+	 *            单词
+	 * @return 分区
+	 */
+	private static int partition(String token) {
+		return partition(Character.toLowerCase(token.charAt(0)));
+	}
+
+	/**
+	 * 把分区中的状态转换成本树中的状态.
+	 *
+	 * @param partition
+	 *            分区
+	 * @param state
+	 *            分区中的状态
+	 * @return 本树中的状态
+	 */
+	private int encode(int partition, int state) {
+		if (state == NO_STATE) {
+			return NO_STATE;
+		} else if (state == partitions[partition].getRootState()) {
+			return ROOT;
+		} else if (state > MAX_PARTITION_STATE) {
+			throw new DictionaryHandleException("词典太大,分区中的节点数量超过了" + MAX_PARTITION_STATE);
+		}
+		return (state << PARTITION_BITS) | partition;
+	}
+
+	@Override
+	public void add(String token, String tokenType) {
+		if (token == null) {
+			throw new NullPointerException();
+		} else if (token.trim().isEmpty()) {
+			throw new IllegalArgumentException("token 不能是空字符");
+		}
+		partitions[partition(token)].add(token, tokenType);
+	}
+
+	/**
+	 * 添加一批token.先按第一个字符分区,然后每个分区在pool中并行添加,同一个分区的token按原来的顺序添加.
+	 * 添加期间不能调用其他的修改方法.
+	 *
+	 * @param tokens
+	 *            token
+	 * @param tokenTypes
+	 *            token类型,和tokens一一对应,可以包含null
+	 * @param count
+	 *            有效的数量
+	 * @param pool
+	 *            线程池
+	 */
+	public void addAll(String[] tokens, String[] tokenTypes, int count, ForkJoinPool pool) {
+		int[] starts = new int[PARTITIONS + 1];
+		for (int i = 0; i < count; i++) {
+			starts[partition(tokens[i]) + 1]++;
+		}
+		for (int i = 0; i < PARTITIONS; i++) {
+			starts[i + 1] += starts[i];
+		}
+		int[] indexes = new int[count];
+		int[] filled = Arrays.copyOf(starts, PARTITIONS);
+		for (int i = 0; i < count; i++) {
+			indexes[filled[partition(tokens[i])]++] = i;
+		}
+		if (count < MIN_TOKENS_PER_TASK) {
+			new AddTask(tokens, tokenTypes, indexes, starts, 0, PARTITIONS).compute();
+		} else {
+			pool.invoke(new AddTask(tokens, tokenTypes, indexes, starts, 0, PARTITIONS));
+		}
+	}
+
+	@Override
+	public boolean remove(String token, String tokenType) {
+		return !token.isEmpty() && partitions[partition(token)].remove(token, tokenType);
+	}
+
+	@Override
+	public PartitionedTrie copy() {
+		MutableTrie[] copies = new MutableTrie[PARTITIONS];
+		for (int i = 0; i < PARTITIONS; i++) {
+			copies[i] = partitions[i].copy();
+		}
+		return new PartitionedTrie(copies);
+	}
+
+	/**
+	 * 按每个分区已经添加的单词比例分配.
+	 */
+	@Override
+	public void ensureCapacity(int tokenCount) {
+		int size = size();
+		for (MutableTrie partition : partitions) {
+			partition.ensureCapacity(size == 0 ? tokenCount / PARTITIONS
+					: (int) ((long) tokenCount * partition.size() / size));
+		}
+	}
+
+	@Override
+	public int getRootState() {
+		return ROOT;
+	}
+
+	@Override
+	public int find(int state, char c) {
+		if (state == ROOT) {
+			int partition = partition(c);
+			MutableTrie trie = partitions[partition];
+			return encode(partition, trie.find(trie.getRootState(), c));
+		}
+		int partition = state & PARTITION_MASK;
+		return encode(partition, partitions[partition].find(state >>> PARTITION_BITS, c));
+	}
+
+	@Override
+	public boolean isTokenEnd(int state) {
+		return state != ROOT && partitions[state & PARTITION_MASK].isTokenEnd(state >>> PARTITION_BITS);
+	}
+
+	@Override
+	public String getTypes(int state) {
+		return state == ROOT ? null : partitions[state & PARTITION_MASK].getTypes(state >>> PARTITION_BITS);
+	}
+
+	@Override
+	public char[] getChildChars(int state) {
+		if (state != ROOT) {
+			return partitions[state & PARTITION_MASK].getChildChars(state >>> PARTITION_BITS);
+		}
+		char[][] children = new char[PARTITIONS][];
+		int count = 0;
+		for (int i = 0; i < PARTITIONS; i++) {
+			children[i] = partitions[i].getChildChars(partitions[i].getRootState());
+			count += children[i].length;
+		}
+		char[] chars = new char[count];
+		int offset = 0;
+		for (char[] partitionChars : children) {
+			System.arraycopy(partitionChars, 0, chars, offset, partitionChars.length);
+			offset += partitionChars.length;
+		}
+		Arrays.sort(chars);
+		return chars;
+	}
+
+	@Override
+	public int getMaxTokenLength() {
+		int max = 0;
+		for (MutableTrie partition : partitions) {
+			max = Math.max(max, partition.getMaxTokenLength());
+		}
+		return max;
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (MutableTrie partition : partitions) {
+			size += partition.size();
+		}
+		return size;
+	}
+
+	@Override
+	public long estimateBytes() {
+		long bytes = 0;
+		for (MutableTrie partition : partitions) {
+			bytes += partition.estimateBytes();
+		}
+		return bytes;
+	}
+
+	/**
+	 * 向一个范围内的分区添加token,范围太大时拆分成两个任务.
+	 */
+	private final class AddTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String[] tokens;
+		private final String[] tokenTypes;
+		/**
+		 * 按分区排列的token的下标.
+		 */
+		private final int[] indexes;
+		/**
+		 * 每个分区在indexes中的开始位置.
+		 */
+		private final int[] starts;
+		private final int from;
+		private final int to;
+
+		AddTask(String[] tokens, String[] tokenTypes, int[] indexes, int[] starts, int from, int to) {
+			this.tokens = tokens;
+			this.tokenTypes = tokenTypes;
+			this.indexes = indexes;
+			this.starts = starts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1 && starts[to] - starts[from] >= MIN_TOKENS_PER_TASK) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new AddTask(tokens, tokenTypes, indexes, starts, from, middle),
+						new AddTask(tokens, tokenTypes, indexes, starts, middle, to));
+				return;
+			}
+			for (int partition = from; partition < to; partition++) {
+				MutableTrie trie = partitions[partition];
+				trie.ensureCapacity(starts[partition + 1] - starts[partition]);
+				for (int i = starts[partition]; i < starts[partition + 1]; i++) {
+					int index = indexes[i];
+					trie.add(tokens[index], tokenTypes[index]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+
+import com.wuda.Constant;
+
+/**
+ * 分词的结果,见{@link YgSegmenter#segment(char[], int, int, SegmentResult)}.每个token只保存开始偏移,结尾偏移和类型的编号,
+ * 分别放在三个int数组中,需要时才生成字符串.同一个对象可以重复使用,每次分词前清空,数组只在不够用时扩大,
+ * 因此分词时不会为每个token创建对象.
+ * <p>
+ * 类型的编号只在这个对象中有效:{@link #NOT_A_WORD}表示不是单词,{@link #NO_TYPE}表示没有类型的单词,其他编号对应词典中的一个类型,
+ * 相同的类型总是同一个编号.
+ *
+ * @author wuda
+ *
+ */
+public final class SegmentResult {
+
+	/**
+	 * 不是单词的文本的类型编号,类型是{@link Constant#NOT_A_WORD}.
+	 */
+	public final static int NOT_A_WORD = 0;
+	/**
+	 * 没有类型的单词的类型编号.
+	 */
+	public final static int NO_TYPE = 1;
+	/**
+	 * 类型超过这个数量时,下一次清空时重新编号.词典不断更新时,不再使用的类型不会一直保留.
+	 */
+	private final static int MAX_TYPE_COUNT = 4096;
+
+	/**
+	 * 分词的输入.
+	 */
+	private char[] chars = null;
+	/**
+	 * 每个token的开始偏移,结尾偏移(包含)和类型编号.
+	 */
+	private int[] startOffsets = new int[64];
+	private int[] endOffsets = new int[64];
+	private int[] typeIds = new int[64];
+	private int count = 0;
+
+	/**
+	 * 类型编号对应的类型.
+	 */
+	private String[] types = new String[16];
+	private int typeCount = 0;
+	/**
+	 * 开放寻址的哈希表,保存类型编号,0表示空位置.长度是2的幂.
+	 */
+	private int[] typeSlots = new int[32];
+
+	public SegmentResult() {
+		clearTypes();
+	}
+
+	/**
+	 * 开始一次新的分词,清空之前的token.
+	 *
+	 * @param chars
+	 *            分词的输入
+	 */
+	void clear(char[] chars) {
+		this.chars = chars;
+		count = 0;
+		if (typeCount > MAX_TYPE_COUNT) {
+			clearTypes();
+		}
+	}
+
+	private void clearTypes() {
+		Arrays.fill(types, null);
+		Arrays.fill(typeSlots, 0);
+		types[NOT_A_WORD] = Constant.NOT_A_WORD;
+		types[NO_TYPE] = null;
+		typeCount = 2;
+	}
+
+	/**
+	 * 追加一个token.
+	 *
+	 * @param startOffset
+	 *            开始偏移
+	 * @param endOffset
+	 *            结尾偏移(包含)
+	 * @param tokenTypes
+	 *            token类型,多个type之间用“,”隔开
+	 * @param isWord
+	 *            是否单词
+	 */
+	void add(int startOffset, int endOffset, String tokenTypes, boolean isWord) {
+		if (count == startOffsets.length) {
+			int length = count * 2;
+			startOffsets = Arrays.copyOf(startOffsets, length);
+			endOffsets = Arrays.copyOf(endOffsets, length);
+			typeIds = Arrays.copyOf(typeIds, length);
+		}
+		startOffsets[count] = startOffset;
+		endOffsets[count] = endOffset;
+		typeIds[count] = isWord ? typeId(tokenTypes) : NOT_A_WORD;
+		count++;
+	}
+
+	/**
+	 * 删除最后一个token.
+	 */
+	void removeLast() {
+		count--;
+	}
+
+	/**
+	 * 获取类型的编号,第一次出现时分配一个新的编号.
+	 *
+	 * @param tokenTypes
+	 *            单词的类型
+	 * @return 编号
+	 */
+	private int typeId(String tokenTypes) {
+		if (tokenTypes == null) {
+			return NO_TYPE;
+		}
+		int mask = typeSlots.length - 1;
+		int slot = tokenTypes.hashCode() & mask;
+		int id;
+		while ((id = typeSlots[slot]) != 0) {
+			String existing = types[id];
+			if (existing == tokenTypes || tokenTypes.equals(existing)) {
+				return id;
+			}
+			slot = (slot + 1) & mask;
+		}
+		id = typeCount++;
+		if (id == types.length) {
+			types = Arrays.copyOf(types, id * 2);
+		}
+		types[id] = tokenTypes;
+		typeSlots[slot] = id;
+		if (typeCount * 2 > typeSlots.length) {
+			rehash();
+		}
+		return id;
+	}
+
+	private void rehash() {
+		typeSlots = new int[typeSlots.length * 2];
+		int mask = typeSlots.length - 1;
+		for (int id = NO_TYPE + 1; id < typeCount; id++) {
+			int slot = types[id].hashCode() & mask;
+			while (typeSlots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			typeSlots[slot] = id;
+		}
+	}
+
+	/**
+	 * @return token的数量
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param index
+	 *            第几个token
+	 * @return 在输入中的开始偏移
+	 */
+	public int getStartOffset(int index) {
+		return startOffsets[index];
+	}
+
+	/**
+	 * @param index
+	 *            第几个token
+	 * @return 在输入中的结尾偏移(包含),和{@link Token#getEndOffset()}一样
+	 */
+	public int getEndOffset(int index) {
+		return endOffsets[index];
+	}
+
+	/**
+	 * @param index
+	 *            第几个token
+	 * @return 字符的数量
+	 */
+	public int getLength(int index) {
+		return endOffsets[index] - startOffsets[index] + 1;
+	}
+
+	/**
+	 * @param index
+	 *            第几个token
+	 * @return 类型编号
+	 */
+	public int getTypeId(int index) {
+		return typeIds[index];
+	}
+
+	/**
+	 * @param index
+	 *            第几个token
+	 * @return true-如果是单词
+	 */
+	public boolean isWord(int index) {
+		return typeIds[index] != NOT_A_WORD;
+	}
+
+	/**
+	 * 获取token的类型,不会创建新的字符串.
+	 *
+	 * @param index
+	 *            第几个token
+	 * @return 和{@link Token#getTypes()}一样,不是单词时是{@link Constant#NOT_A_WORD}
+	 */
+	public String getTypes(int index) {
+		return types[typeIds[index]];
+	}
+
+	/**
+	 * @param typeId
+	 *            类型编号
+	 * @return 类型
+	 */
+	public String getTypesById(int typeId) {
+		return types[typeId];
+	}
+
+	/**
+	 * @return 分词的输入,token的偏移都是在这个数组中的位置
+	 */
+	public char[] getChars() {
+		return chars;
+	}
+
+	/**
+	 * 生成token的字符串.
+	 *
+	 * @param index
+	 *            第几个token
+	 * @return 新的字符串
+	 */
+	public String getValue(int index) {
+		return new String(chars, startOffsets[index], getLength(index));
+	}
+}
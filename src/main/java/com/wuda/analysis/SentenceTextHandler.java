@@ -4,12 +4,29 @@ import java.io.IOException;
 
 /**
  * 将文本分割成句.
- * 
+ * <p>
+ * 文本成块地读入一个环形缓冲区,不会为每个字符调用一次{@link java.io.Reader#read()}.没有标点符号的很长的文本(比如日志,base64)
+ * 不会成为一个很大的句子:句子超过{@link #getMaxSentenceLength()}时被截断成多个窗口,相邻的窗口重叠
+ * {@link TextHandlerSharedAttribute#getWindowOverlap()}个字符,见{@link TextHandlerSharedAttribute#isTruncated()}.
+ * 因此占用的内存只和句子的最大长度有关,和文本的长度无关.
+ * <p>
+ * 句子按{@link CharClass}中的标点符号和空白字符分割,每个字符只查一次表.
+ *
  * @author wuda
  *
  */
 public class SentenceTextHandler extends TextHandler {
 
+	/**
+	 * 默认的句子的最大长度.
+	 */
+	public final static int DEFAULT_MAX_SENTENCE_LENGTH = 4096;
+
+	/**
+	 * 每次最多读取的字符数量.
+	 */
+	private final static int READ_SIZE = 4096;
+
 	public SentenceTextHandler(TextHandlerSharedAttribute attribute) {
 		super(attribute);
 	}
@@ -25,12 +42,32 @@ public class SentenceTextHandler extends TextHandler {
 		return false;
 	}
 
-	private int startOffset = 0;
-	private int currentIndex = 0;// 输入流input当前已经读取到的位置
+	/**
+	 * 句子的最大长度.
+	 */
+	private int maxSentenceLength = DEFAULT_MAX_SENTENCE_LENGTH;
+
+	/**
+	 * 字符的分类,标点符号和空白字符分割句子.
+	 */
+	private CharClass charClass = CharClass.getDefault();
+
+	/**
+	 * 环形缓冲区,保存已经读取但是还没有分割完的字符,长度是2的幂.
+	 */
+	private char[] ring = new char[Integer.highestOneBit(DEFAULT_MAX_SENTENCE_LENGTH + READ_SIZE - 1) << 1];
+
+	/**
+	 * 以下都是在输入流input中的位置,在环形缓冲区中的下标是位置和(ring.length-1)的与.
+	 */
+	private int startOffset = 0;// 当前句子的开始位置
+	private int currentIndex = 0;// 已经检查到的位置
+	private int readIndex = 0;// 输入流input当前已经读取到的位置
+	private boolean endOfInput = false;
 
 	/**
 	 * 将文本分割成句子.
-	 * 
+	 *
 	 * @return true-如果还可以分出句子
 	 * @throws IOException
 	 */
@@ -39,35 +76,127 @@ public class SentenceTextHandler extends TextHandler {
 			return false;
 		}
 		attribute.clearAttributes();
-		int ch = -1;
-		while ((ch = input.read()) != -1) {
-			currentIndex++;
-			if (AnalysisUtil.isSentencePunctuation(ch)/* 是句子标点 */ || Character.isWhitespace(ch)
-					|| Character.isSpaceChar(ch)) {
-				if (attribute.getTokenLength() > 0) {
+		int overlap = attribute.getWindowOverlap();
+		int maxLength = Math.max(maxSentenceLength, overlap * 2);// 窗口至少要比重叠的部分长,才能往前推进
+		ensureCapacity(maxLength);
+		int mask = ring.length - 1;
+		CharClass charClass = this.charClass;
+		boolean truncated = false;
+		while (currentIndex < readIndex || fill()) {
+			if (charClass.isSentenceBoundary(ring[currentIndex & mask])) {// 是句子标点或者空白
+				if (currentIndex > startOffset) {
 					break;
 				} else {
-					startOffset = currentIndex;
+					startOffset = ++currentIndex;
 					continue;
 				}
 			}
-			attribute.tokenAppend((char) ch);
+			if (currentIndex - startOffset == maxLength) {
+				truncated = true;
+				break;
+			}
+			currentIndex++;
 		}
-		if (attribute.getTokenLength() > 0) {
+		int length = currentIndex - startOffset;
+		if (length > 0) {
+			int from = startOffset & mask;
+			int first = Math.min(length, ring.length - from);
+			attribute.tokenAppend(ring, from, first);
+			attribute.tokenAppend(ring, 0, length - first);
 			attribute.setType("sentence");
 			attribute.setStartOffset(startOffset);
-			attribute.setEndOffset(startOffset + attribute.getTokenLength() + 1);// endOffset不一定等于currentIndex,因为如果是标点符号时,标点符号是不包含的
-			startOffset = currentIndex;
+			attribute.setEndOffset(startOffset + length + 1);// endOffset不一定等于currentIndex,因为如果是标点符号时,标点符号是不包含的
+			attribute.setTruncated(truncated);
+			startOffset = truncated ? currentIndex - overlap : currentIndex;// 下一个窗口从重叠的部分开始
 			return true;
 		} else {
 			return false;
 		}
 	}
 
+	/**
+	 * 从输入流读取一块字符,放到环形缓冲区中已经读取的字符之后.
+	 *
+	 * @return true-如果读到了字符,false-如果已经读完
+	 * @throws IOException
+	 *             读取出错
+	 */
+	private boolean fill() throws IOException {
+		if (endOfInput) {
+			return false;
+		}
+		int index = readIndex & (ring.length - 1);
+		int free = ring.length - (readIndex - startOffset);// 当前句子之前的字符已经不再需要
+		int count = input.read(ring, index, Math.min(READ_SIZE, Math.min(free, ring.length - index)));
+		if (count < 0) {
+			endOfInput = true;
+			return false;
+		}
+		readIndex += count;
+		return true;
+	}
+
+	/**
+	 * 保证环形缓冲区可以放下一个最长的句子和一次读取的字符,需要扩大时保留还没有分割完的字符.
+	 *
+	 * @param maxLength
+	 *            句子的最大长度
+	 */
+	private void ensureCapacity(int maxLength) {
+		if (maxLength + READ_SIZE <= ring.length) {
+			return;
+		}
+		char[] larger = new char[Integer.highestOneBit(maxLength + READ_SIZE - 1) << 1];
+		for (int i = startOffset; i < readIndex; i++) {
+			larger[i & (larger.length - 1)] = ring[i & (ring.length - 1)];
+		}
+		ring = larger;
+	}
+
 	@Override
 	public void reset() throws IOException {
 		super.reset();
-		startOffset = currentIndex = 0; // 状态重置,以满足重用
+		startOffset = currentIndex = readIndex = 0; // 状态重置,以满足重用
+		endOfInput = false;
+	}
+
+	/**
+	 * @return 句子的最大长度
+	 */
+	public int getMaxSentenceLength() {
+		return maxSentenceLength;
 	}
 
+	/**
+	 * 设置句子的最大长度.更长的句子被截断成多个窗口,窗口的长度至少是重叠的字符数量的2倍.
+	 *
+	 * @param maxSentenceLength
+	 *            最大长度,必须大于0
+	 */
+	public void setMaxSentenceLength(int maxSentenceLength) {
+		if (maxSentenceLength < 1) {
+			throw new IllegalArgumentException("句子的最大长度必须大于0:" + maxSentenceLength);
+		}
+		this.maxSentenceLength = maxSentenceLength;
+	}
+
+	/**
+	 * @return 字符的分类
+	 */
+	public CharClass getCharClass() {
+		return charClass;
+	}
+
+	/**
+	 * 设置分割句子使用的字符分类,比如{@link CharClass#withPunctuation(String)}.
+	 *
+	 * @param charClass
+	 *            字符的分类
+	 */
+	public void setCharClass(CharClass charClass) {
+		if (charClass == null) {
+			throw new IllegalArgumentException("字符的分类不能为null");
+		}
+		this.charClass = charClass;
+	}
 }
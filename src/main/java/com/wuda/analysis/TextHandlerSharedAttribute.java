@@ -1,5 +1,7 @@
 package com.wuda.analysis;
 
+import java.util.Arrays;
+
 import com.wuda.Constant;
 
 /**
@@ -11,9 +13,15 @@ import com.wuda.Constant;
 public class TextHandlerSharedAttribute {
 
 	/**
-	 * token值.
+	 * 默认的{@link #windowOverlap},还没有获取词典时使用.
 	 */
-	private final StringBuilder token = new StringBuilder();
+	public final static int DEFAULT_WINDOW_OVERLAP = 63;
+
+	/**
+	 * token值,有效的字符是[0,tokenLength).数组只在不够用时扩大,处理链中传递token时直接复制字符,不需要创建字符串.
+	 */
+	private char[] token = new char[64];
+	private int tokenLength = 0;
 	/**
 	 * 范围是[startOffset,endOffset)
 	 */
@@ -28,13 +36,26 @@ public class TextHandlerSharedAttribute {
 	 */
 	private boolean isWord = false;
 
+	/**
+	 * 当此字段值为true时,表示此token是太长的句子被截断后的一个窗口,下一个token是同一个句子的延续,
+	 * 开头和这个token的结尾重叠{@link #windowOverlap}个字符.
+	 */
+	private boolean truncated = false;
+
+	/**
+	 * 相邻的窗口重叠的字符数量,由处理窗口的handler设置,比如词典中最长的单词的长度减1,这样跨越窗口边界的单词在下一个窗口中是完整的.
+	 * 清除属性值时保留.
+	 */
+	private int windowOverlap = DEFAULT_WINDOW_OVERLAP;
+
 	/**
 	 * 清除属性值.
 	 */
 	public void clearAttributes() {
-		token.delete(0, token.length());
+		tokenLength = 0;
 		startOffset = 0;
 		endOffset = 0;
+		truncated = false;
 	}
 
 	/**
@@ -44,7 +65,10 @@ public class TextHandlerSharedAttribute {
 	 *            string
 	 */
 	public void tokenAppend(String str) {
-		token.append(str);
+		int len = str.length();
+		ensureCapacity(tokenLength + len);
+		str.getChars(0, len, token, tokenLength);
+		tokenLength += len;
 	}
 
 	/**
@@ -54,7 +78,10 @@ public class TextHandlerSharedAttribute {
 	 *            char
 	 */
 	public void tokenAppend(char c) {
-		token.append(c);
+		if (tokenLength == token.length) {
+			ensureCapacity(tokenLength + 1);
+		}
+		token[tokenLength++] = c;
 	}
 
 	/**
@@ -68,7 +95,21 @@ public class TextHandlerSharedAttribute {
 	 *            the number of chars to append.
 	 */
 	public void tokenAppend(char[] chars, int offset, int len) {
-		token.append(chars, offset, len);
+		ensureCapacity(tokenLength + len);
+		System.arraycopy(chars, offset, token, tokenLength, len);
+		tokenLength += len;
+	}
+
+	/**
+	 * 保证token的数组至少可以放下这么多字符.
+	 * 
+	 * @param capacity
+	 *            字符的数量
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > token.length) {
+			token = Arrays.copyOf(token, Math.max(capacity, token.length * 2));
+		}
 	}
 
 	/**
@@ -77,16 +118,26 @@ public class TextHandlerSharedAttribute {
 	 * @return 长度
 	 */
 	public int getTokenLength() {
-		return token.length();
+		return tokenLength;
+	}
+
+	/**
+	 * 获取保存token的数组,有效的字符是[0,{@link #getTokenLength()}).数组会被重复使用,追加字符时也可能换成更大的数组,
+	 * 因此只能在处理下一个token之前使用,需要保留时应该复制.
+	 * 
+	 * @return 数组
+	 */
+	public char[] getTokenBuffer() {
+		return token;
 	}
 
 	/**
-	 * 获取token.
+	 * 获取token.会创建新的字符串,处理链中应该使用{@link #getTokenBuffer()}.
 	 * 
 	 * @return string
 	 */
 	public String getTokenString() {
-		return token.toString();
+		return new String(token, 0, tokenLength);
 	}
 
 	/**
@@ -152,4 +203,34 @@ public class TextHandlerSharedAttribute {
 		this.isWord = isWord;
 	}
 
+	/**
+	 * @return true-如果token是被截断的窗口,下一个token是它的延续
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * @param truncated
+	 *            the truncated to set
+	 */
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+
+	/**
+	 * @return 相邻的窗口重叠的字符数量
+	 */
+	public int getWindowOverlap() {
+		return windowOverlap;
+	}
+
+	/**
+	 * @param windowOverlap
+	 *            相邻的窗口重叠的字符数量,不能小于0
+	 */
+	public void setWindowOverlap(int windowOverlap) {
+		this.windowOverlap = windowOverlap;
+	}
+
 }
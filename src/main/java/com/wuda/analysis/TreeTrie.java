@@ -0,0 +1,265 @@
+package com.wuda.analysis;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.wuda.utils.tree.BasicTree;
+import com.wuda.utils.tree.BasicTree.Node;
+import com.wuda.utils.tree.TypeSetRegistry;
+
+/**
+ * 通过常规树型结构实现的前缀树.可以一边添加单词一边查找,节点的状态就是{@link Node#getId()}.
+ *
+ * @author wuda
+ *
+ */
+public class TreeTrie extends MutableTrie {
+
+	/**
+	 * 通过常规树型结构实现前缀树.
+	 */
+	private BasicTree tree = new BasicTree();
+
+	/**
+	 * 节点缓存.随着添加的单词数量自动扩容.
+	 */
+	private ConcurrentHashMap<String, Node> caches_shard_one = new ConcurrentHashMap<>();
+
+	/**
+	 * 所有的节点,下标就是节点的id.
+	 */
+	private volatile Node[] nodes = new Node[1024];
+
+	/**
+	 * 估算内存时每个节点占用的字节数,包括节点对象,缓存中的map entry和key字符串.
+	 */
+	private final static int BYTES_PER_NODE = 150;
+
+	/**
+	 * token(单词)的数量.
+	 */
+	private int size = 0;
+
+	/**
+	 * 添加过的最长的token的长度,删除token时不变.
+	 */
+	private volatile int maxTokenLength = 0;
+
+	public TreeTrie() {
+		nodes[0] = tree.getRoot();
+	}
+
+	/**
+	 * 添加一个token.
+	 *
+	 * @param token
+	 *            token,比如单词,短语等
+	 * @param tokenType
+	 *            toke 类型.
+	 */
+	@Override
+	public void add(String token, String tokenType) {
+		if (token == null) {
+			throw new NullPointerException();
+		} else if (token.trim().isEmpty()) {
+			throw new IllegalArgumentException("token 不能是空字符");
+		}
+		char[] array = token.toCharArray();
+		token = null;
+		Node parent = tree.getRoot();
+		Node child = null;
+		for (char c : array) {
+			c = Character.toLowerCase(c);
+			child = find(parent, c);
+			if (child == null) {
+				child = tree.createNode(c);
+				tree.addFirstChild(parent, child);
+				addNode(child);
+				// 将父子节点的关系放入缓存,加速查找
+				caches_shard_one.put(getCacheKey(parent.getId(), child.getElement()), child);
+			}
+			parent = child;
+		}
+		if (array.length > maxTokenLength) {
+			maxTokenLength = array.length;
+		}
+		array = null;
+		/**
+		 * 因为java是对象引用,所以最后的child对象一定是token的最后一个字符所在的节点.
+		 */
+		if (!child.isTokenEnd()) {
+			size++;
+		}
+		child.setTokenEnd();
+		if (tokenType != null) {
+			child.appendTokenType(tokenType);
+		}
+	}
+
+	@Override
+	public boolean remove(String token, String tokenType) {
+		int state = getState(token);
+		if (state == NO_STATE || !nodes[state].isTokenEnd()) {
+			return false;
+		}
+		Node node = nodes[state];
+		if (tokenType == null) {
+			node.clearTokenEnd();
+			size--;
+			return true;
+		}
+		int typeSetId = TypeSetRegistry.remove(node.getTypeSetId(), tokenType);
+		if (typeSetId == node.getTypeSetId()) {
+			return false;
+		}
+		node.setTypeSetId(typeSetId);
+		return true;
+	}
+
+	@Override
+	public TreeTrie copy() {
+		TreeTrie trie = new TreeTrie();
+		trie.copyChildren(tree.getRoot(), trie.getRoot());
+		trie.size = size;
+		trie.maxTokenLength = maxTokenLength;
+		return trie;
+	}
+
+	/**
+	 * 深度优先复制source的所有子节点.
+	 *
+	 * @param source
+	 *            原来的树中的节点
+	 * @param parent
+	 *            本树中对应的节点
+	 */
+	private void copyChildren(Node source, Node parent) {
+		for (Node sourceChild = source.getFirstChild(); sourceChild != null; sourceChild = sourceChild
+				.getNextSibling()) {
+			Node child = tree.createNode(sourceChild.getElement());
+			tree.addFirstChild(parent, child);
+			addNode(child);
+			caches_shard_one.put(getCacheKey(parent.getId(), child.getElement()), child);
+			if (sourceChild.isTokenEnd()) {
+				child.setTokenEnd();
+				child.setTypeSetId(sourceChild.getTypeSetId());
+			}
+			copyChildren(sourceChild, child);
+		}
+	}
+
+	/**
+	 * 保存节点,使得可以通过id找到节点.
+	 *
+	 * @param node
+	 *            新创建的节点
+	 */
+	private void addNode(Node node) {
+		Node[] current = nodes;
+		int id = node.getId();
+		if (id >= current.length) {
+			current = Arrays.copyOf(current, Math.max(id + 1, current.length + (current.length >> 1)));
+		}
+		current[id] = node;
+		nodes = current;
+	}
+
+	/**
+	 * 获取缓存key.
+	 *
+	 * @param parentId
+	 *            父节点的id
+	 * @param child
+	 *            子节点的数据
+	 * @return key
+	 */
+	private String getCacheKey(int parentId, char child) {
+		return parentId + "" + child;
+	}
+
+	/**
+	 * 在指定的父节点下查找指定的字符.
+	 *
+	 * @param parent
+	 *            父节点
+	 * @param c
+	 *            字符
+	 * @return 字符c所在的节点,null-如果没有找到
+	 */
+	public Node find(Node parent, char c) {
+		/**
+		 * 正常情况肯定是使用:tree.find(parent, c)来查找,但是这里使用了缓存
+		 */
+		return caches_shard_one.get(getCacheKey(parent.getId(), c));
+	}
+
+	@Override
+	public int find(int state, char c) {
+		Node child = caches_shard_one.get(getCacheKey(state, c));
+		return child == null ? NO_STATE : child.getId();
+	}
+
+	/**
+	 * 获取根节点.
+	 *
+	 * @return root
+	 */
+	public Node getRoot() {
+		return tree.getRoot();
+	}
+
+	@Override
+	public int getRootState() {
+		return tree.getRoot().getId();
+	}
+
+	@Override
+	public boolean isTokenEnd(int state) {
+		return nodes[state].isTokenEnd();
+	}
+
+	@Override
+	public String getTypes(int state) {
+		return nodes[state].getTypes();
+	}
+
+	@Override
+	public char[] getChildChars(int state) {
+		Node parent = nodes[state];
+		int count = 0;
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+			count++;
+		}
+		char[] chars = new char[count];
+		int i = 0;
+		for (Node child = parent.getFirstChild(); child != null && i < count; child = child.getNextSibling()) {
+			chars[i++] = child.getElement();
+		}
+		Arrays.sort(chars);
+		return chars;
+	}
+
+	@Override
+	public int getMaxTokenLength() {
+		return maxTokenLength;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long estimateBytes() {
+		return (long) tree.getNodeCount() * BYTES_PER_NODE + (long) nodes.length * 4;
+	}
+
+	/**
+	 * 获取缓存大小,map中key的个数.
+	 *
+	 * @return map中key的个数
+	 */
+	int getCacheSize() {
+		return caches_shard_one.size();
+	}
+}
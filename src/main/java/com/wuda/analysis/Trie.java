@@ -1,118 +1,284 @@
 package com.wuda.analysis;
 
-import java.util.concurrent.ConcurrentHashMap;
-
-import com.wuda.Constant;
-import com.wuda.utils.tree.BasicTree;
-import com.wuda.utils.tree.BasicTree.Node;
+import java.util.Arrays;
 
 /**
  * 前缀树.只用于处理字符串.
- * 
+ * <p>
+ * 树中的每个节点用一个int类型的状态(state)表示,从{@link #getRootState()}开始,调用{@link #find(int, char)}
+ * 一个字符一个字符的往下查找,直到返回{@link #NO_STATE}.不同的实现有不同的存储方式,比如可以边加载边查找的
+ * {@link TreeTrie},以及加载完成后一次性构建的{@link DoubleArrayTrie}.
+ * <p>
+ * 分词时通过{@link #newCursor()}创建的{@link Cursor}查找,这样节点不能用int状态表示的实现,比如{@link FstTrie},也可以使用.
+ *
  * @author wuda
  *
  */
-public class Trie {
+public abstract class Trie {
 
 	/**
-	 * 通过常规树型结构实现前缀树.
+	 * 表示没有找到对应的状态.
 	 */
-	private BasicTree tree = new BasicTree();
+	public final static int NO_STATE = -1;
 
 	/**
-	 * 节点缓存.
+	 * 获取根节点的状态.
+	 *
+	 * @return root state
 	 */
-	private ConcurrentHashMap<String, Node> caches_shard_one = new ConcurrentHashMap<>(Constant.initialCapacity);
+	public abstract int getRootState();
 
 	/**
-	 * 添加一个token.
-	 * 
-	 * @param token
-	 *            token,比如单词,短语等
-	 * @param tokenType
-	 *            toke 类型.
+	 * 在指定的父节点下查找指定的字符.
+	 *
+	 * @param state
+	 *            父节点的状态
+	 * @param c
+	 *            字符
+	 * @return 字符c所在节点的状态,{@link #NO_STATE}-如果没有找到
 	 */
-	public void add(String token, String tokenType) {
-		if (token == null) {
-			throw new NullPointerException();
-		} else if (token.trim().isEmpty()) {
-			throw new IllegalArgumentException("token 不能是空字符");
-		}
-		char[] array = token.toCharArray();
-		token=null;
-		Node parent = tree.getRoot();
-		Node child = null;
-		for (char c : array) {
-			c = Character.toLowerCase(c);
-			child = find(parent, c);
-			if (child == null) {
-				child = tree.createNode(c);
-				try {
-					// tree.createRelationShip(parent, child);数据量大的时候,这里只能注释掉
-
-					// 将父子节点的关系放入缓存,加速查找
-					caches_shard_one.put(getCacheKey(parent, child.getElement()), child);
-				} catch (Exception e) {
-					// 不会发生
-				}
+	public abstract int find(int state, char c);
+
+	/**
+	 * 节点是否token(单词)的结尾.
+	 *
+	 * @param state
+	 *            节点的状态
+	 * @return true-如果是
+	 */
+	public abstract boolean isTokenEnd(int state);
+
+	/**
+	 * 获取token(单词)的类型,多个type之间用“,”隔开.
+	 *
+	 * @param state
+	 *            token(单词)最后一个字符所在节点的状态
+	 * @return types,null-如果没有类型或者不是token(单词)的结尾
+	 */
+	public abstract String getTypes(int state);
+
+	/**
+	 * 获取节点的所有子节点的字符,按字符从小到大排序.
+	 *
+	 * @param state
+	 *            节点的状态
+	 * @return 子节点的字符,没有子节点时返回长度为0的数组
+	 */
+	public abstract char[] getChildChars(int state);
+
+	/**
+	 * 获取token(单词)的数量.
+	 *
+	 * @return token(单词)的数量
+	 */
+	public abstract int size();
+
+	/**
+	 * 获取最长的单词的长度,用于计算分割长句子时相邻的窗口重叠的字符数量.删除单词之后可能偏大,但是不会偏小.
+	 *
+	 * @return 字符数量,没有单词时是0
+	 */
+	public abstract int getMaxTokenLength();
+
+	/**
+	 * 获取这个词典的Aho-Corasick自动机,用于一次扫描找到文本中所有的单词.
+	 *
+	 * @return 自动机,null-如果不支持,或者还没有编译完成
+	 */
+	public AhoCorasick getAutomaton() {
+		return null;
+	}
+
+	/**
+	 * 获取这个词典中单词的第一个字符的过滤器,用于跳过不可能是单词开头的位置.只有构建完成后不再修改的词典才支持.
+	 *
+	 * @return 过滤器,null-如果不支持
+	 */
+	public FirstCharFilter getFirstCharFilter() {
+		return null;
+	}
+
+	/**
+	 * 估算占用的jvm堆内存,只包括数组和哈希表,和{@link MutableTrie#estimateBytes()}一样.
+	 *
+	 * @return 字节数
+	 */
+	public long estimateBytes() {
+		return 0;
+	}
+
+	/**
+	 * 内存映射等不占用jvm堆内存的字节数.
+	 *
+	 * @return 字节数
+	 */
+	public long getOffHeapBytes() {
+		return 0;
+	}
+
+	/**
+	 * 统计单词,节点,深度,扇出,token类型和内存,见{@link DictionaryStats}.默认按状态深度优先遍历所有的节点,
+	 * 不能按状态遍历的实现需要覆盖这个方法.
+	 *
+	 * @return 统计信息
+	 */
+	public DictionaryStats getStats() {
+		DictionaryStats.Builder builder = new DictionaryStats.Builder();
+		int[] states = new int[64];
+		int[] depths = new int[64];
+		int top = 0;
+		states[top] = getRootState();
+		depths[top++] = 0;
+		while (top > 0) {
+			int state = states[--top];
+			int depth = depths[top];
+			char[] chars = getChildChars(state);
+			builder.addNode(depth, chars.length);
+			if (depth > 0 && isTokenEnd(state)) {
+				builder.addToken(getTypes(state));
+			}
+			if (top + chars.length > states.length) {
+				states = Arrays.copyOf(states, (top + chars.length) * 2);
+				depths = Arrays.copyOf(depths, (top + chars.length) * 2);
+			}
+			for (char c : chars) {
+				states[top] = find(state, c);
+				depths[top++] = depth + 1;
 			}
-			parent = child;
 		}
-		array = null;
-		/**
-		 * 因为java是对象引用,所以最后的child对象一定是token的最后一个字符所在的节点.
-		 */
-		child.setTokenEnd();
-		if (tokenType != null) {
-			child.appendTokenType(tokenType);
+		return builder.build(estimateBytes(), getOffHeapBytes());
+	}
+
+	/**
+	 * 遍历所有的token(单词).默认按状态深度优先遍历,不能按状态遍历的实现需要覆盖这个方法.
+	 *
+	 * @param visitor
+	 *            接收每个单词和它的类型
+	 */
+	public void forEachToken(TokenVisitor visitor) {
+		visitChildren(getRootState(), new StringBuilder(), visitor);
+	}
+
+	private void visitChildren(int state, StringBuilder path, TokenVisitor visitor) {
+		for (char c : getChildChars(state)) {
+			int child = find(state, c);
+			path.append(c);
+			if (isTokenEnd(child)) {
+				visitor.visit(path.toString(), getTypes(child));
+			}
+			visitChildren(child, path, visitor);
+			path.setLength(path.length() - 1);
 		}
 	}
 
 	/**
-	 * 获取缓存key.
-	 * 
-	 * @param parent
-	 *            父节点
-	 * @param child
-	 *            子节点的数据
-	 * @return key
+	 * 创建一个游标,从根节点开始一个字符一个字符的往下查找.游标不是线程安全的,每个线程应该使用自己的游标.
+	 *
+	 * @return 游标,位于根节点
 	 */
-	private String getCacheKey(Node parent, char child) {
-		return parent.getId() + "" + child;
+	public Cursor newCursor() {
+		return new StateCursor(this);
 	}
 
 	/**
-	 * 在指定的父节点下查找指定的字符.
-	 * 
-	 * @param parent
-	 *            父节点
-	 * @param c
-	 *            字符
-	 * @return 字符c所在的节点,null-如果没有找到
+	 * 在前缀树中往下查找的游标.
+	 *
+	 * @author wuda
+	 *
 	 */
-	public Node find(Node parent, char c) {
-		String cacheKey = getCacheKey(parent, c);
+	public static abstract class Cursor {
+
+		/**
+		 * 回到根节点.
+		 */
+		public abstract void reset();
+
+		/**
+		 * 从当前节点往下查找一个字符.
+		 *
+		 * @param c
+		 *            字符
+		 * @return true-如果找到,游标移动到字符c所在的节点;false-没有找到,此后需要调用{@link #reset()}才能继续使用
+		 */
+		public abstract boolean next(char c);
+
+		/**
+		 * 当前节点是否token(单词)的结尾.
+		 *
+		 * @return true-如果是
+		 */
+		public abstract boolean isTokenEnd();
+
 		/**
-		 * 正常情况肯定是使用:tree.find(parent, c)来查找,但是这里使用了缓存
+		 * 获取当前节点的token(单词)的类型,多个type之间用“,”隔开.
+		 *
+		 * @return types,null-如果没有类型或者不是token(单词)的结尾
 		 */
-		return caches_shard_one.get(cacheKey);
+		public abstract String getTypes();
+
+		/**
+		 * 获取当前节点的所有子节点的字符,和{@link Trie#getChildChars(int)}一样,只用于统计等不在分词时进行的操作.
+		 *
+		 * @return 子节点的字符,按字符从小到大排序,没有子节点时返回长度为0的数组
+		 */
+		public abstract char[] getChildChars();
 	}
-	
+
 	/**
-	 * 获取根节点.
-	 * 
-	 * @return root
+	 * 接收{@link Trie#forEachToken(TokenVisitor)}遍历的单词.
 	 */
-	public Node getRoot() {
-		return tree.getRoot();
+	public interface TokenVisitor {
+
+		/**
+		 * @param token
+		 *            单词,和前缀树中的字符一样是小写的
+		 * @param types
+		 *            单词的类型,多个类型用“,”隔开,null-没有类型
+		 */
+		void visit(String token, String types);
 	}
 
 	/**
-	 * 获取缓存大小,map中key的个数.
-	 * 
-	 * @return map中key的个数
+	 * 使用int状态的游标.
 	 */
-	int getCacheSize() {
-		return caches_shard_one.size();
+	private static final class StateCursor extends Cursor {
+
+		private final Trie trie;
+		private int state;
+
+		StateCursor(Trie trie) {
+			this.trie = trie;
+			this.state = trie.getRootState();
+		}
+
+		@Override
+		public void reset() {
+			state = trie.getRootState();
+		}
+
+		@Override
+		public boolean next(char c) {
+			int child = trie.find(state, c);
+			if (child == NO_STATE) {
+				return false;
+			}
+			state = child;
+			return true;
+		}
+
+		@Override
+		public boolean isTokenEnd() {
+			return trie.isTokenEnd(state);
+		}
+
+		@Override
+		public String getTypes() {
+			return trie.getTypes(state);
+		}
+
+		@Override
+		public char[] getChildChars() {
+			return trie.getChildChars(state);
+		}
 	}
 }
@@ -1,12 +1,10 @@
 package com.wuda.analysis;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import com.wuda.Constant;
-import com.wuda.utils.tree.BasicTree.Node;
 
 /**
  * 分词器.使用前缀树作为词典.
@@ -20,11 +18,52 @@ public class YgSegmenter {
 	 * 词典.
 	 */
 	private Trie dictionary = null;
+	/**
+	 * 在词典中查找的游标,设置词典时创建.
+	 */
+	private Trie.Cursor cursor = null;
 	/**
 	 * 是否枚举所有的单词.
 	 */
 	private boolean enumerateAll = true;
 
+	/**
+	 * 使用{@link AhoCorasick}时,找到的所有单词的开始偏移,结尾偏移和状态,重复使用.
+	 */
+	private int[] matchStarts = new int[64];
+	private int[] matchEnds = new int[64];
+	private int[] matchStates = new int[64];
+	private int matchCount = 0;
+	/**
+	 * 按开始偏移排序时使用,重复使用.
+	 */
+	private int[] startCounts = new int[64];
+	private int[] sortedMatches = new int[64];
+	/**
+	 * {@link #getTokens(char[])}使用的分词结果,重复使用.
+	 */
+	private final SegmentResult result = new SegmentResult();
+
+	/**
+	 * 接收{@link AhoCorasick}找到的单词.
+	 */
+	private final AhoCorasick.MatchHandler matchCollector = new AhoCorasick.MatchHandler() {
+
+		@Override
+		public void onMatch(int startOffset, int endOffset, int state) {
+			if (matchCount == matchStarts.length) {
+				int length = matchCount * 2;
+				matchStarts = Arrays.copyOf(matchStarts, length);
+				matchEnds = Arrays.copyOf(matchEnds, length);
+				matchStates = Arrays.copyOf(matchStates, length);
+			}
+			matchStarts[matchCount] = startOffset;
+			matchEnds[matchCount] = endOffset;
+			matchStates[matchCount] = state;
+			matchCount++;
+		}
+	};
+
 	/**
 	 * 检查此分词器是否有词典.
 	 */
@@ -61,56 +100,162 @@ public class YgSegmenter {
 		if (input == null || input.length < 1) {
 			return null;
 		}
-		int inputLength = input.length;
+		SegmentResult result = this.result;
+		segment(input, 0, input.length, result);
 		LinkedList<Token> tokens = new LinkedList<>();
-		Node parent = dictionary.getRoot();// 从root开始查找
-		int startOffset = 0;
-		int currentIndex = 0;
+		for (int i = 0; i < result.size(); i++) {
+			Token token = new Token();
+			token.setValue(result.getValue(i));
+			token.setStartOffset(result.getStartOffset(i));
+			token.setEndOffset(result.getEndOffset(i));
+			token.setWord(result.isWord(i));
+			token.setTypes(result.getTypes(i));
+			tokens.addLast(token);
+		}
+		return tokens;
+	}
 
-		int latestTokenEndPosition = -1;// 最近的一个token的结束位置
+	/**
+	 * 对输入的一部分分词,结果和{@link #getTokens(char[])}完全一样,但是放到调用者提供的result中,不会为每个token创建对象.
+	 * result可以重复使用,只在数组不够用时分配内存.
+	 * 
+	 * @param buffer
+	 *            输入
+	 * @param offset
+	 *            开始位置
+	 * @param length
+	 *            字符的数量
+	 * @param result
+	 *            分词的结果,原来的内容会被清空.token的偏移是在buffer中的位置,不是相对于offset的位置
+	 * @return token的数量
+	 */
+	public int segment(char[] buffer, int offset, int length, SegmentResult result) {
+		checkDict();
+		result.clear(buffer);
+		if (length < 1) {
+			return 0;
+		}
+		if (enumerateAll) {
+			AhoCorasick automaton = dictionary.getAutomaton();
+			if (automaton != null) {// 编译完成之前逐个位置查找,结果一样
+				segmentAll(buffer, offset, length, automaton, result);
+				return result.size();
+			}
+		}
+		int limit = offset + length;
+		Trie.Cursor cursor = this.cursor;
+		FirstCharFilter firstCharFilter = dictionary.getFirstCharFilter();
+		int startOffset = offset;
+		int currentIndex = offset;
 
-		while (startOffset < inputLength) {
-			AtomicBoolean everMatch = new AtomicBoolean(false);
-			AtomicInteger firstNotSingleTokenEndPosition = new AtomicInteger(-1);// 当前这次匹配中,第一个token的结束位置
-			parent = dictionary.getRoot();
-			for (currentIndex = startOffset; currentIndex < inputLength; currentIndex++) {
-				char c = input[currentIndex];
-				Node child = dictionary.find(parent, c);
-				if (child == null) { // 没有找到
+		int latestTokenEndPosition = offset - 1;// 最近的一个token的结束位置
+
+		while (startOffset < limit) {
+			boolean everMatch = false;
+			int firstNotSingleTokenEndPosition = -1;// 当前这次匹配中,第一个token的结束位置
+			int endOffset = limit;// 查找到这个位置(不包含)为止
+			if (firstCharFilter != null) {
+				int maxLength = firstCharFilter.getMaxLength(buffer[startOffset]);
+				if (maxLength == 0) {// 不可能是单词的开头,和没有匹配一样
+					startOffset++;
+					continue;
+				}
+				endOffset = Math.min(limit, startOffset + maxLength);// 更长的部分不可能匹配
+			}
+			cursor.reset();// 从root开始查找
+			for (currentIndex = startOffset; currentIndex < endOffset; currentIndex++) {
+				char c = buffer[currentIndex];
+				if (!cursor.next(c)) { // 没有找到
 					break;
 				}
-				if (child.isTokenEnd()) {// 匹配一个单词
+				if (cursor.isTokenEnd()) {// 匹配一个单词
 					/**
 					 * 上一个单词与当前单词之间的文本,并不是单词,但是也要返回.
 					 */
 					if (startOffset > latestTokenEndPosition + 1) {
-						Token token = getToken(input, null, latestTokenEndPosition + 1, startOffset - 1, false);
-						tokens.addLast(token);
-						latestTokenEndPosition = currentIndex;
+						result.add(latestTokenEndPosition + 1, startOffset - 1, null, false);
 					}
 
-					Token token = getToken(input, child, startOffset, currentIndex, true);
-					append(tokens, token, enumerateAll);
+					append(result, cursor.getTypes(), startOffset, currentIndex, enumerateAll);
 					latestTokenEndPosition = currentIndex;
-					everMatch.compareAndSet(false, true);
-					if (currentIndex - startOffset >= 1) {// 不是单字
-						firstNotSingleTokenEndPosition.compareAndSet(-1, currentIndex);
+					everMatch = true;
+					if (currentIndex - startOffset >= 1 && firstNotSingleTokenEndPosition == -1) {// 不是单字
+						firstNotSingleTokenEndPosition = currentIndex;
 					}
 				}
-				parent = child;
 			}
-			startOffset = advance(startOffset, everMatch, firstNotSingleTokenEndPosition.get(), latestTokenEndPosition);
+			startOffset = advance(startOffset, everMatch, firstNotSingleTokenEndPosition, latestTokenEndPosition);
 		}
 		/**
 		 * 最后一个单词与最后一个字符(包含)之间的内容,并不是单词,但是也要返回.
 		 */
-		int lastCharIndex = inputLength - 1;
+		int lastCharIndex = limit - 1;
 		if (lastCharIndex > latestTokenEndPosition) {
-			Token token = getToken(input, null, latestTokenEndPosition + 1, lastCharIndex, false);
-			tokens.addLast(token);
-			latestTokenEndPosition = currentIndex;
+			result.add(latestTokenEndPosition + 1, lastCharIndex, null, false);
+		}
+		return result.size();
+	}
+
+	/**
+	 * 枚举所有的单词时,使用{@link AhoCorasick}扫描一遍找到所有的单词,然后按开始偏移排序,结果和从每个位置开始查找完全一样.
+	 * 
+	 * @param buffer
+	 *            输入
+	 * @param offset
+	 *            开始位置
+	 * @param length
+	 *            字符的数量
+	 * @param automaton
+	 *            词典的自动机
+	 * @param result
+	 *            分词的结果
+	 */
+	private void segmentAll(char[] buffer, int offset, int length, AhoCorasick automaton, SegmentResult result) {
+		matchCount = 0;
+		automaton.findAll(buffer, offset, length, matchCollector);
+		/**
+		 * 按开始偏移计数排序.排序是稳定的,开始偏移相同时仍然按结尾偏移从小到大.
+		 */
+		if (startCounts.length < length + 1) {
+			startCounts = new int[length + 1];
+		} else {
+			Arrays.fill(startCounts, 0, length + 1, 0);
+		}
+		for (int i = 0; i < matchCount; i++) {
+			startCounts[matchStarts[i] - offset + 1]++;
+		}
+		for (int i = 0; i < length; i++) {
+			startCounts[i + 1] += startCounts[i];
+		}
+		if (sortedMatches.length < matchCount) {
+			sortedMatches = new int[matchStarts.length];
+		}
+		for (int i = 0; i < matchCount; i++) {
+			sortedMatches[startCounts[matchStarts[i] - offset]++] = i;
+		}
+
+		Trie dictionary = automaton.getTrie();
+		int latestTokenEndPosition = offset - 1;// 最近的一个token的结束位置
+		for (int k = 0; k < matchCount; k++) {
+			int i = sortedMatches[k];
+			int startOffset = matchStarts[i];
+			int endOffset = matchEnds[i];
+			/**
+			 * 上一个单词与当前单词之间的文本,并不是单词,但是也要返回.
+			 */
+			if (startOffset > latestTokenEndPosition + 1) {
+				result.add(latestTokenEndPosition + 1, startOffset - 1, null, false);
+			}
+			result.add(startOffset, endOffset, dictionary.getTypes(matchStates[i]), true);
+			latestTokenEndPosition = endOffset;
+		}
+		/**
+		 * 最后一个单词与最后一个字符(包含)之间的内容,并不是单词,但是也要返回.
+		 */
+		int lastCharIndex = offset + length - 1;
+		if (lastCharIndex > latestTokenEndPosition) {
+			result.add(latestTokenEndPosition + 1, lastCharIndex, null, false);
 		}
-		return tokens;
 	}
 
 	/**
@@ -121,13 +266,13 @@ public class YgSegmenter {
 	 * @param firstNotSingleTokenEndPosition
 	 * @return 下一次启动的位置
 	 */
-	private int advance(int currentStartOffset, AtomicBoolean everMatch, int firstNotSingleTokenEndPosition,
+	private int advance(int currentStartOffset, boolean everMatch, int firstNotSingleTokenEndPosition,
 			int latestTokenEndPosition) {
 		int nextStartOffset = currentStartOffset;
 		if (enumerateAll) {
 			nextStartOffset++;
 		} else {
-			if (everMatch.get()) {
+			if (everMatch) {
 				nextStartOffset = latestTokenEndPosition + 1;
 			} else {
 				nextStartOffset++;
@@ -137,90 +282,57 @@ public class YgSegmenter {
 	}
 
 	/**
-	 * 追加token.
+	 * 追加单词.
 	 * 
-	 * @param tokens
+	 * @param result
 	 *            已经存在的token
-	 * @param current
-	 *            本次追加的token
+	 * @param types
+	 *            本次追加的单词的类型
+	 * @param startOffset
+	 *            本次追加的单词的开始偏移
+	 * @param endOffset
+	 *            本次追加的单词的结尾偏移
 	 * @param enumerateAll
 	 *            如果是false,则具有包含关系的token只能存在更大者,被包含的token被移除.
 	 */
-	private void append(LinkedList<Token> tokens, Token current, boolean enumerateAll) {
-		if (enumerateAll) {
-			tokens.addLast(current);
-			return;
-		}
-		Token last = tokens.peekLast();
-		if (last == null) {
-			tokens.addLast(current);
+	private void append(SegmentResult result, String types, int startOffset, int endOffset, boolean enumerateAll) {
+		int last = result.size() - 1;
+		if (enumerateAll || last < 0) {
+			result.add(startOffset, endOffset, types, true);
 			return;
 		}
-		String lastTokenTypes = last.getTypes();
-		boolean lastTokenHasImportantType = false;
-		if (lastTokenTypes != null && !lastTokenTypes.isEmpty()) {
-			if (lastTokenTypes.contains(Constant.important_type_npc)) {
-				lastTokenHasImportantType = true;
-			} else if (lastTokenTypes.contains(Constant.important_type_npb)) {
-				lastTokenHasImportantType = true;
-			} else if (lastTokenTypes.contains(Constant.important_type_npu)) {
-				lastTokenHasImportantType = true;
-			}
-		}
-
-		String currentTokenTypes = current.getTypes();
-		boolean currentTokenHasImportantType = false;
-		if (currentTokenTypes != null && !currentTokenTypes.isEmpty()) {
-			if (currentTokenTypes.contains(Constant.important_type_npc)) {
-				currentTokenHasImportantType = true;
-			} else if (currentTokenTypes.contains(Constant.important_type_npb)) {
-				currentTokenHasImportantType = true;
-			} else if (currentTokenTypes.contains(Constant.important_type_npu)) {
-				currentTokenHasImportantType = true;
-			}
-		}
-
-		if (last.getStartOffset() >= current.getStartOffset() && last.getEndOffset() <= current.getEndOffset()) {// 当前token包含上一个token
+		boolean lastTokenHasImportantType = hasImportantType(result.getTypes(last));
+		boolean currentTokenHasImportantType = hasImportantType(types);
+		int lastStartOffset = result.getStartOffset(last);
+		int lastEndOffset = result.getEndOffset(last);
+		if (lastStartOffset >= startOffset && lastEndOffset <= endOffset) {// 当前token包含上一个token
 			if (!lastTokenHasImportantType || currentTokenHasImportantType) {
-				tokens.removeLast();
+				result.removeLast();
 			}
-			tokens.addLast(current);
-		} else if (last.getStartOffset() <= current.getStartOffset() && last.getEndOffset() >= current.getEndOffset()) {// 上一个token包含上当前token
+			result.add(startOffset, endOffset, types, true);
+		} else if (lastStartOffset <= startOffset && lastEndOffset >= endOffset) {// 上一个token包含上当前token
 			if (currentTokenHasImportantType && !lastTokenHasImportantType) {
-				tokens.add(current);
+				result.add(startOffset, endOffset, types, true);
 			}
 		} else {
-			tokens.addLast(current);
+			result.add(startOffset, endOffset, types, true);
 		}
 	}
 
 	/**
-	 * 生成token.
+	 * 是否包含重要的类型.
 	 * 
-	 * @param chars
-	 *            chars
-	 * @param lastNode
-	 *            组成token的最后一个节点
-	 * @param startOffset
-	 *            在chars中的开始偏移
-	 * @param currentOffset
-	 *            在chars中的结尾偏移量
-	 * @param isWord
-	 *            是否单词
-	 * @return Token
+	 * @param types
+	 *            token类型,多个type之间用“,”隔开
+	 * @return true-如果包含{@link Constant#important_type_npc},{@link Constant#important_type_npb}
+	 *         或者{@link Constant#important_type_npu}
 	 */
-	private Token getToken(char[] chars, Node lastNode, int startOffset, int currentOffset, boolean isWord) {
-		Token token = new Token();
-		token.setValue(new String(chars, startOffset, currentOffset - startOffset + 1));
-		token.setStartOffset(startOffset);
-		token.setEndOffset(currentOffset);
-		token.setWord(isWord);
-		if (isWord) {
-			token.setTypes(lastNode.getTypes());
-		} else {
-			token.setTypes(Constant.NOT_A_WORD);
+	private static boolean hasImportantType(String types) {
+		if (types == null || types.isEmpty()) {
+			return false;
 		}
-		return token;
+		return types.contains(Constant.important_type_npc) || types.contains(Constant.important_type_npb)
+				|| types.contains(Constant.important_type_npu);
 	}
 
 	/**
@@ -239,6 +351,9 @@ public class YgSegmenter {
 	 *            the dictionary to set
 	 */
 	public void setDictionary(Trie dictionary) {
+		if (dictionary != this.dictionary) {// 每个文档开始时都会设置,词典没有变化时继续使用原来的游标
+			this.cursor = dictionary == null ? null : dictionary.newCursor();
+		}
 		this.dictionary = dictionary;
 	}
 
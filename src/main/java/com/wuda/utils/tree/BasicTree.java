@@ -1,7 +1,5 @@
 package com.wuda.utils.tree;
 
-import java.util.HashSet;
-import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -19,10 +17,15 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class BasicTree {
 
+	/**
+	 * 节点id生成器.同一颗树中节点的id从0开始连续递增,root节点的id是0.
+	 */
+	private final AtomicInteger idGen = new AtomicInteger(-1);
+
 	/**
 	 * 树的根节点.
 	 */
-	private Node root = new Node((char) -1);
+	private Node root = new Node((char) -1, idGen.incrementAndGet());
 
 	/**
 	 * 创建一个新的节点.
@@ -33,7 +36,31 @@ public class BasicTree {
 	 * @return a new node
 	 */
 	public Node createNode(char element) {
-		return new Node(element);
+		return new Node(element, idGen.incrementAndGet());
+	}
+
+	/**
+	 * 把child作为parent的第一个子节点.与{@link #createRelationShip(Node, Node)}不同,
+	 * 这里不检查child是否已经拥有父节点,也不检查元素是否重复,由调用者保证,因此时间复杂度是O(1).
+	 * 
+	 * @param parent
+	 *            父节点
+	 * @param child
+	 *            子节点
+	 */
+	public void addFirstChild(Node parent, Node child) {
+		child.nextSibling = parent.firstChild;
+		parent.firstChild = child;
+		child.parent = parent;
+	}
+
+	/**
+	 * 树中节点的数量,包括root节点.
+	 * 
+	 * @return 节点数量
+	 */
+	public int getNodeCount() {
+		return idGen.get() + 1;
 	}
 
 	/**
@@ -114,9 +141,7 @@ public class BasicTree {
 	 */
 	public static class Node {
 
-		private final static AtomicInteger idGen = new AtomicInteger(-1);
-
-		private int id = 0;
+		private final int id;
 
 		/**
 		 * 当前节点的第一个子节点.
@@ -140,25 +165,27 @@ public class BasicTree {
 		 */
 		private boolean isTokenEnd = false;
 		/**
-		 * 如果是token的结尾,此token的所有类型.
+		 * 如果是token的结尾,此token的所有类型在{@link TypeSetRegistry}中的id.
 		 */
-		private Set<String> tokenTypes = null;
+		private int typeSetId = TypeSetRegistry.EMPTY;
 
 		/**
 		 * 构建一个节点.
 		 * 
 		 * @param element
 		 *            节点的元素.
+		 * @param id
+		 *            节点的id
 		 */
-		Node(char element) {
+		Node(char element, int id) {
 			this.element = element;
-			id = idGen.incrementAndGet();
+			this.id = id;
 		}
 
 		/**
 		 * @return the firstChild
 		 */
-		Node getFirstChild() {
+		public Node getFirstChild() {
 			return firstChild;
 		}
 
@@ -173,7 +200,7 @@ public class BasicTree {
 		/**
 		 * @return the nextSibling
 		 */
-		Node getNextSibling() {
+		public Node getNextSibling() {
 			return nextSibling;
 		}
 
@@ -226,6 +253,14 @@ public class BasicTree {
 			this.isTokenEnd = true;
 		}
 
+		/**
+		 * 不再是token end,同时清除所有的TokenType.节点本身仍然保留在树中.
+		 */
+		public void clearTokenEnd() {
+			this.isTokenEnd = false;
+			this.typeSetId = TypeSetRegistry.EMPTY;
+		}
+
 		/**
 		 * 追加TokenType.
 		 * 
@@ -233,17 +268,22 @@ public class BasicTree {
 		 *            token type
 		 */
 		public void appendTokenType(String tokenType) {
-			if (tokenTypes == null) {
-				tokenTypes = new HashSet<>();
-			}
-			tokenTypes.add(tokenType);
+			typeSetId = TypeSetRegistry.add(typeSetId, tokenType);
 		}
 
 		/**
-		 * @return the tokenTypes
+		 * @return the typeSetId
 		 */
-		public Set<String> getTokenTypes() {
-			return tokenTypes;
+		public int getTypeSetId() {
+			return typeSetId;
+		}
+
+		/**
+		 * @param typeSetId
+		 *            the typeSetId to set
+		 */
+		public void setTypeSetId(int typeSetId) {
+			this.typeSetId = typeSetId;
 		}
 
 		/**
@@ -252,18 +292,7 @@ public class BasicTree {
 		 * @return types
 		 */
 		public String getTypes() {
-			if (tokenTypes != null && !tokenTypes.isEmpty()) {
-				if (tokenTypes.size() == 1) {
-					return tokenTypes.iterator().next();
-				}
-				StringBuilder builder = new StringBuilder();
-				for (String type : tokenTypes) {
-					builder.append(type);
-					builder.append(",");
-				}
-				return builder.substring(0, builder.length() - 1);
-			}
-			return null;
+			return TypeSetRegistry.getTypes(typeSetId);
 		}
 
 		/**
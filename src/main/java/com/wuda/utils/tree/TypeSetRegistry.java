@@ -0,0 +1,197 @@
+package com.wuda.utils.tree;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * token类型组合的全局注册表.每一种不同的类型组合分配一个int id,节点上只需要保存这个id,不需要保存类型的集合.
+ * 组合中的类型按字典序排列,用“,”隔开的字符串在注册时生成一次,之后查询时直接返回.
+ *
+ * @author wuda
+ *
+ */
+public final class TypeSetRegistry {
+
+	/**
+	 * 没有任何类型的组合.
+	 */
+	public final static int EMPTY = 0;
+
+	/**
+	 * 组合(用“,”隔开的字符串)和id.注册时加锁,查询不需要加锁.
+	 */
+	private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+	/**
+	 * 组合中的类型,下标就是id.
+	 */
+	private static String[][] members = new String[16][];
+
+	/**
+	 * 用“,”隔开的类型,下标就是id.扩容时整体替换,查询不需要加锁.
+	 */
+	private static volatile String[] joinedTypes = new String[16];
+
+	/**
+	 * 组合的数量.
+	 */
+	private static int size = 1;
+
+	static {
+		members[EMPTY] = new String[0];
+	}
+
+	/**
+	 * 禁止实例化.
+	 */
+	private TypeSetRegistry() {
+
+	}
+
+	/**
+	 * 向组合中追加一个类型,得到新的组合.
+	 *
+	 * @param typeSetId
+	 *            原来的组合
+	 * @param type
+	 *            类型
+	 * @return 追加后的组合,如果原来的组合已经包含这个类型,返回原来的组合
+	 */
+	public static int add(int typeSetId, String type) {
+		if (type == null) {
+			throw new NullPointerException("type 不能为空");
+		}
+		if (typeSetId == EMPTY) {// 多个线程同时加载词典时,绝大多数情况不需要加锁
+			Integer id = ids.get(type);
+			if (id != null) {
+				return id;
+			}
+		} else if (type.equals(joinedTypes[typeSetId])) {
+			return typeSetId;
+		}
+		return addLocked(typeSetId, type);
+	}
+
+	private static synchronized int addLocked(int typeSetId, String type) {
+		String[] current = members[typeSetId];
+		if (current.length == 0) {// 单个类型最常见,不需要创建数组
+			Integer id = ids.get(type);
+			if (id != null) {
+				return id;
+			}
+		}
+		int index = Arrays.binarySearch(current, type);
+		if (index >= 0) {
+			return typeSetId;
+		}
+		index = -index - 1;
+		String[] types = new String[current.length + 1];
+		System.arraycopy(current, 0, types, 0, index);
+		types[index] = type;
+		System.arraycopy(current, index, types, index + 1, current.length - index);
+		StringBuilder builder = new StringBuilder();
+		for (String t : types) {
+			if (builder.length() > 0) {
+				builder.append(",");
+			}
+			builder.append(t);
+		}
+		String joined = builder.toString();
+		Integer id = ids.get(joined);
+		if (id != null) {
+			return id;
+		}
+		return register(types, joined);
+	}
+
+	/**
+	 * 从组合中删除一个类型,得到新的组合.
+	 *
+	 * @param typeSetId
+	 *            原来的组合
+	 * @param type
+	 *            类型
+	 * @return 删除后的组合,如果原来的组合不包含这个类型,返回原来的组合
+	 */
+	public static synchronized int remove(int typeSetId, String type) {
+		String[] current = members[typeSetId];
+		int index = type == null ? -1 : Arrays.binarySearch(current, type);
+		if (index < 0) {
+			return typeSetId;
+		}
+		int typeSet = EMPTY;
+		for (int i = 0; i < current.length; i++) {
+			if (i != index) {
+				typeSet = addLocked(typeSet, current[i]);
+			}
+		}
+		return typeSet;
+	}
+
+	/**
+	 * 注册一个新的组合.
+	 *
+	 * @param types
+	 *            组合中的类型,已经排序
+	 * @param joined
+	 *            用“,”隔开的类型
+	 * @return id
+	 */
+	private static int register(String[] types, String joined) {
+		int id = size;
+		if (id == members.length) {
+			members = Arrays.copyOf(members, id * 2);
+			joinedTypes = Arrays.copyOf(joinedTypes, id * 2);
+		}
+		members[id] = types;
+		String[] current = joinedTypes;
+		current[id] = joined;
+		joinedTypes = current;// volatile写,保证查询的线程能看到
+		ids.put(joined, id);
+		size++;
+		return id;
+	}
+
+	/**
+	 * 根据用“,”隔开的类型获取组合.
+	 *
+	 * @param types
+	 *            用“,”隔开的类型,比如{@link #getTypes(int)}的返回值
+	 * @return 组合,{@link #EMPTY}-如果types是null
+	 */
+	public static synchronized int getId(String types) {
+		if (types == null) {
+			return EMPTY;
+		}
+		Integer id = ids.get(types);
+		if (id != null) {
+			return id;
+		}
+		int typeSetId = EMPTY;
+		for (String type : types.split(",")) {
+			typeSetId = addLocked(typeSetId, type);
+		}
+		return typeSetId;
+	}
+
+	/**
+	 * 获取组合的类型,多个type之间用“,”隔开.
+	 *
+	 * @param typeSetId
+	 *            组合
+	 * @return types,null-如果是{@link #EMPTY}
+	 */
+	public static String getTypes(int typeSetId) {
+		return joinedTypes[typeSetId];
+	}
+
+	/**
+	 * 组合的数量,包括{@link #EMPTY}.
+	 *
+	 * @return 组合的数量
+	 */
+	public static synchronized int size() {
+		return size;
+	}
+}
@@ -0,0 +1,310 @@
+package org.apache.lucene.analysis;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.util.CharsRef;
+
+import com.wuda.analysis.CharClass;
+
+/**
+ * 在一个token中依次查找多个pattern的捕获组.每次返回开始位置最小的捕获组,开始位置相同时返回排在前面的pattern的捕获组.
+ * 调用者可以把返回的捕获组替换成其他字符,替换之后的字符对之后的查找可见.
+ * <p>
+ * 除了正则表达式之外,还可以捕获连续的属于某些分类的字符,见{@link CharClass},每个字符只查一次表.
+ * {@link PatternCaptureGroupAndReplaceTokenFilter}和{@link YgFusedTokenizer}使用同一个实现,因此结果完全一样.
+ *
+ * @author wuda
+ *
+ */
+final class CaptureGroups {
+
+	private final Capture[] matchers;
+	private final int[] groupCounts;
+	private final int[] currentGroup;
+	private int currentMatcher = -1;
+	private final String[] patternNames;
+
+	/**
+	 * @param patterns
+	 *            正则表达式
+	 * @param patternNames
+	 *            pattern 的名称,可以是null
+	 * @param charClass
+	 *            字符的分类,null-不捕获连续的字符
+	 * @param classMask
+	 *            一个或者多个分类,比如{@link CharClass#LETTER}|{@link CharClass#DIGIT}
+	 * @param className
+	 *            捕获的连续字符的名称,排在所有的pattern之后,patternNames不是null时使用
+	 */
+	CaptureGroups(Pattern[] patterns, String[] patternNames, CharClass charClass, int classMask, String className) {
+		int count = charClass == null ? patterns.length : patterns.length + 1;
+		this.matchers = new Capture[count];
+		this.groupCounts = new int[count];
+		this.currentGroup = new int[count];
+		for (int i = 0; i < patterns.length; i++) {
+			this.matchers[i] = new PatternCapture(patterns[i]);
+		}
+		if (charClass != null) {
+			this.matchers[patterns.length] = new CharClassCapture(charClass, classMask);
+			if (patternNames != null) {
+				String[] names = new String[count];
+				System.arraycopy(patternNames, 0, names, 0, patternNames.length);
+				names[patterns.length] = className;
+				patternNames = names;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			this.groupCounts[i] = this.matchers[i].groupCount();
+			this.currentGroup[i] = -1;
+		}
+		this.patternNames = patternNames;
+	}
+
+	/**
+	 * 开始在新的字符中查找.
+	 *
+	 * @param chars
+	 *            字符,替换时直接修改其中的字符
+	 */
+	void reset(CharsRef chars) {
+		for (int i = 0; i < matchers.length; i++) {
+			matchers[i].reset(chars);
+			currentGroup[i] = -1;
+		}
+	}
+
+	/**
+	 * 查找下一个捕获组.
+	 *
+	 * @param preserveOriginal
+	 *            true-跳过和整个token一样的捕获组
+	 * @param length
+	 *            token的长度
+	 * @return true-如果找到了
+	 */
+	boolean next(boolean preserveOriginal, int length) {
+		int min_offset = Integer.MAX_VALUE;
+		currentMatcher = -1;
+		Capture matcher;
+
+		for (int i = 0; i < matchers.length; i++) {
+			matcher = matchers[i];
+			if (currentGroup[i] == -1) {
+				currentGroup[i] = matcher.find() ? 1 : 0;
+			}
+			if (currentGroup[i] != 0) {
+				while (currentGroup[i] < groupCounts[i] + 1) {
+					final int start = matcher.start(currentGroup[i]);
+					final int end = matcher.end(currentGroup[i]);
+					if (start == end || preserveOriginal && start == 0 && length == end) {
+						currentGroup[i]++;
+						continue;
+					}
+					if (start < min_offset) {
+						min_offset = start;
+						currentMatcher = i;
+					}
+					break;
+				}
+				if (currentGroup[i] == groupCounts[i] + 1) {
+					currentGroup[i] = -1;
+					i--;
+				}
+			}
+		}
+		return currentMatcher != -1;
+	}
+
+	/**
+	 * @return true-如果上一次{@link #next(boolean, int)}找到了捕获组,或者调用了{@link #setPending()}
+	 */
+	boolean isPending() {
+		return currentMatcher != -1;
+	}
+
+	/**
+	 * 标记为还需要继续查找.
+	 */
+	void setPending() {
+		currentMatcher = 0;
+	}
+
+	/**
+	 * 标记为不再查找.
+	 */
+	void clearPending() {
+		currentMatcher = -1;
+	}
+
+	/**
+	 * @return 当前捕获组的开始位置
+	 */
+	int start() {
+		return matchers[currentMatcher].start(currentGroup[currentMatcher]);
+	}
+
+	/**
+	 * @return 当前捕获组的结束位置(不包含)
+	 */
+	int end() {
+		return matchers[currentMatcher].end(currentGroup[currentMatcher]);
+	}
+
+	/**
+	 * 当前捕获组已经处理,下一次从同一个pattern的下一个捕获组开始.
+	 */
+	void advance() {
+		currentGroup[currentMatcher]++;
+	}
+
+	/**
+	 * @return 当前捕获组的pattern的名称,null-如果没有指定名称
+	 */
+	String name() {
+		if (patternNames == null) {
+			return null;
+		}
+		if (patternNames.length != matchers.length) {
+			throw new IllegalStateException("pattren和它的名称不对应");
+		}
+		return patternNames[currentMatcher];
+	}
+
+	/**
+	 * @return true-如果指定了pattern的名称
+	 */
+	boolean hasNames() {
+		return patternNames != null;
+	}
+
+	/**
+	 * 在token中查找匹配,和{@link Matcher}一样,每次{@link #find()}从上一次匹配的结尾继续查找.
+	 * 替换之后的字符对之后的查找可见.
+	 */
+	private static abstract class Capture {
+
+		/**
+		 * 重新开始在新的字符中查找.
+		 *
+		 * @param chars
+		 *            字符,替换时直接修改其中的字符
+		 */
+		abstract void reset(CharsRef chars);
+
+		/**
+		 * @return true-如果找到了下一个匹配
+		 */
+		abstract boolean find();
+
+		/**
+		 * @return 捕获组的数量
+		 */
+		abstract int groupCount();
+
+		/**
+		 * @param group
+		 *            捕获组
+		 * @return 当前匹配中捕获组的开始位置
+		 */
+		abstract int start(int group);
+
+		/**
+		 * @param group
+		 *            捕获组
+		 * @return 当前匹配中捕获组的结束位置(不包含)
+		 */
+		abstract int end(int group);
+	}
+
+	/**
+	 * 正则表达式.
+	 */
+	private static final class PatternCapture extends Capture {
+
+		private final Matcher matcher;
+
+		PatternCapture(Pattern pattern) {
+			this.matcher = pattern.matcher("");
+		}
+
+		@Override
+		void reset(CharsRef chars) {
+			matcher.reset(chars);
+		}
+
+		@Override
+		boolean find() {
+			return matcher.find();
+		}
+
+		@Override
+		int groupCount() {
+			return matcher.groupCount();
+		}
+
+		@Override
+		int start(int group) {
+			return matcher.start(group);
+		}
+
+		@Override
+		int end(int group) {
+			return matcher.end(group);
+		}
+	}
+
+	/**
+	 * 连续的属于指定分类的字符,只有一个捕获组,就是整个匹配.
+	 */
+	private static final class CharClassCapture extends Capture {
+
+		private final CharClass charClass;
+		private final int mask;
+		private CharsRef chars;
+		private int position;
+		private int start;
+		private int end;
+
+		CharClassCapture(CharClass charClass, int mask) {
+			this.charClass = charClass;
+			this.mask = mask;
+		}
+
+		@Override
+		void reset(CharsRef chars) {
+			this.chars = chars;
+			this.position = 0;
+		}
+
+		@Override
+		boolean find() {
+			int offset = chars.offset;
+			int limit = offset + chars.length;
+			int from = charClass.find(chars.chars, offset + position, limit, mask);
+			if (from == limit) {
+				position = chars.length;
+				return false;
+			}
+			start = from - offset;
+			end = charClass.skip(chars.chars, from, limit, mask) - offset;
+			position = end;
+			return true;
+		}
+
+		@Override
+		int groupCount() {
+			return 1;
+		}
+
+		@Override
+		int start(int group) {
+			return start;
+		}
+
+		@Override
+		int end(int group) {
+			return end;
+		}
+	}
+}
@@ -2,7 +2,6 @@ package org.apache.lucene.analysis;
 
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.lucene.analysis.TokenFilter;
@@ -13,6 +12,7 @@ import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 import org.apache.lucene.util.CharsRefBuilder;
 
 import com.wuda.Constant;
+import com.wuda.analysis.CharClass;
 
 /**
  * CaptureGroup uses Java regexes to emit multiple tokens - one for each capture
@@ -28,6 +28,9 @@ import com.wuda.Constant;
  * 
  * </pre>
  * 
+ * 形如"([a-zA-Z\\d]+)"的正则表达式,即连续的属于某些分类的字符,可以用{@link CharClass}代替,每个字符只查一次表,
+ * 见{@link #PatternCaptureGroupAndReplaceTokenFilter(TokenStream, boolean, boolean, Pattern[], String[], CharClass, int, String)}.
+ * 
  */
 public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 
@@ -35,14 +38,10 @@ public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 	private final PositionIncrementAttribute posAttr = addAttribute(PositionIncrementAttribute.class);
 	private final TypeAttribute typeAttr = addAttribute(TypeAttribute.class);
 	private State state;
-	private final Matcher[] matchers;
+	private final CaptureGroups captures;
 	private final CharsRefBuilder spare = new CharsRefBuilder();
-	private final int[] groupCounts;
 	private final boolean preserveOriginal;
 	private final boolean returnReplaced;
-	private int[] currentGroup;
-	private int currentMatcher;
-	private String[] patternNames;
 
 	private AtomicBoolean everMatch = new AtomicBoolean(false);
 
@@ -67,69 +66,59 @@ public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 
 	public PatternCaptureGroupAndReplaceTokenFilter(TokenStream input, boolean preserveOriginal, boolean returnReplaced,
 			Pattern[] patterns, String[] patternNames) {
+		this(input, preserveOriginal, returnReplaced, patterns, patternNames, null, 0, null);
+	}
+
+	/**
+	 * token filter,除了正则表达式之外,还捕获连续的属于指定分类的字符,相当于在patterns的最后加上一个"([...]+)",但是不需要正则表达式.
+	 * 
+	 * @param input
+	 *            the input {@link TokenStream}
+	 * @param preserveOriginal
+	 *            set to true to return the original token even if one of the
+	 *            patterns matches
+	 * @param returnReplaced
+	 *            设置为true时,返回替换后的token
+	 * @param patterns
+	 *            an array of {@link Pattern} objects to match against each token
+	 * @param patternNames
+	 *            pattern 的名称,见{@link TypeAttribute#type()}
+	 * @param charClass
+	 *            字符的分类,null-不捕获连续的字符
+	 * @param classMask
+	 *            一个或者多个分类,比如{@link CharClass#LETTER}|{@link CharClass#DIGIT}
+	 * @param className
+	 *            捕获的连续字符的名称,patternNames不是null时使用
+	 */
+	public PatternCaptureGroupAndReplaceTokenFilter(TokenStream input, boolean preserveOriginal, boolean returnReplaced,
+			Pattern[] patterns, String[] patternNames, CharClass charClass, int classMask, String className) {
 		super(input);
 		this.preserveOriginal = preserveOriginal;
 		this.returnReplaced = returnReplaced;
-		this.matchers = new Matcher[patterns.length];
-		this.groupCounts = new int[patterns.length];
-		this.currentGroup = new int[patterns.length];
-		for (int i = 0; i < patterns.length; i++) {
-			this.matchers[i] = patterns[i].matcher("");
-			this.groupCounts[i] = this.matchers[i].groupCount();
-			this.currentGroup[i] = -1;
-		}
-		this.patternNames = patternNames;
+		this.captures = new CaptureGroups(patterns, patternNames, charClass, classMask, className);
 	}
 
 	private boolean nextCapture() {
-		int min_offset = Integer.MAX_VALUE;
-		currentMatcher = -1;
-		Matcher matcher;
-
-		for (int i = 0; i < matchers.length; i++) {
-			matcher = matchers[i];
-			if (currentGroup[i] == -1) {
-				currentGroup[i] = matcher.find() ? 1 : 0;
-			}
-			if (currentGroup[i] != 0) {
-				while (currentGroup[i] < groupCounts[i] + 1) {
-					final int start = matcher.start(currentGroup[i]);
-					final int end = matcher.end(currentGroup[i]);
-					if (start == end || preserveOriginal && start == 0 && spare.length() == end) {
-						currentGroup[i]++;
-						continue;
-					}
-					if (start < min_offset) {
-						min_offset = start;
-						currentMatcher = i;
-					}
-					break;
-				}
-				if (currentGroup[i] == groupCounts[i] + 1) {
-					currentGroup[i] = -1;
-					i--;
-				}
-			}
-		}
-		if (currentMatcher != -1) {
+		if (captures.next(preserveOriginal, spare.length())) {
 			everMatch.compareAndSet(false, true);
+			return true;
 		}
-		return currentMatcher != -1;
+		return false;
 	}
 
 	@Override
 	public boolean incrementToken() throws IOException {
 
-		if (currentMatcher != -1 && nextCapture()) {
+		if (captures.isPending() && nextCapture()) {
 			assert state != null;
 			clearAttributes();
 			restoreState(state);
-			final int start = matchers[currentMatcher].start(currentGroup[currentMatcher]);
-			final int end = matchers[currentMatcher].end(currentGroup[currentMatcher]);
+			final int start = captures.start();
+			final int end = captures.end();
 
 			posAttr.setPositionIncrement(0);
 			charTermAttr.copyBuffer(spare.chars(), start, end - start);
-			currentGroup[currentMatcher]++;
+			captures.advance();
 
 			setTypeAttr();
 
@@ -152,7 +141,7 @@ public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 		}else {
 			String type=typeAttr.type();
 			if(type==null || !type.equals(Constant.NOT_A_WORD)) {//是单词,不进行正则表达式匹配
-				currentMatcher=-1;
+				captures.clearPending();
 				everMatch.set(false);
 				return true;
 			}
@@ -163,16 +152,13 @@ public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 		spare.copyChars(buffer, 0, length);
 		state = captureState();
 
-		for (int i = 0; i < matchers.length; i++) {
-			matchers[i].reset(spare.get());
-			currentGroup[i] = -1;
-		}
+		captures.reset(spare.get());
 
 		if (preserveOriginal) {
-			currentMatcher = 0;
+			captures.setPending();
 		} else if (nextCapture()) {
-			final int start = matchers[currentMatcher].start(currentGroup[currentMatcher]);
-			final int end = matchers[currentMatcher].end(currentGroup[currentMatcher]);
+			final int start = captures.start();
+			final int end = captures.end();
 
 			// if we start at 0 we can simply set the length and save the copy
 			if (start == 0) {
@@ -180,7 +166,7 @@ public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 			} else {
 				charTermAttr.copyBuffer(spare.chars(), start, end - start);
 			}
-			currentGroup[currentMatcher]++;
+			captures.advance();
 
 			setTypeAttr();
 
@@ -194,7 +180,7 @@ public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 	public void reset() throws IOException {
 		super.reset();
 		state = null;
-		currentMatcher = -1;
+		captures.clearPending();
 	}
 
 	private void replaceCapture(int start, int end) {
@@ -204,11 +190,8 @@ public class PatternCaptureGroupAndReplaceTokenFilter extends TokenFilter {
 	}
 
 	private void setTypeAttr() {
-		if (patternNames != null) {
-			if (patternNames.length != matchers.length) {
-				throw new IllegalStateException("pattren和它的名称不对应");
-			}
-			typeAttr.setType(patternNames[currentMatcher]);
+		if (captures.hasNames()) {
+			typeAttr.setType(captures.name());
 		}
 
 	}
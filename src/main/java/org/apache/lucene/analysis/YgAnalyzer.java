@@ -3,6 +3,7 @@ package org.apache.lucene.analysis;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -24,7 +25,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.wuda.Constant;
+import com.wuda.analysis.CharClass;
 import com.wuda.analysis.FileDictionaryHandler;
+import com.wuda.analysis.SentenceTextHandler;
 
 /**
  * lucene analyzer实现,完成分词在lucene中的使用.
@@ -36,44 +39,98 @@ public class YgAnalyzer extends Analyzer {
 
 	private Logger logger = LoggerFactory.getLogger(getClass());
 
+	/**
+	 * 词典.同义词文件和停止词文件也在词典目录中.
+	 */
+	private final FileDictionaryHandler dictionaryHandler;
 	/**
 	 * 同义词factory.
 	 */
-	public static SynonymFilterFactory synonymFilterFactory = null;
+	private SynonymFilterFactory synonymFilterFactory = null;
 	/**
 	 * 同义词factory是否已经创建过.
 	 */
-	private static final AtomicBoolean synonymFilterFactoryCreated = new AtomicBoolean(false);
+	private final AtomicBoolean synonymFilterFactoryCreated = new AtomicBoolean(false);
 	/**
 	 * 停止词factory.
 	 */
-	public static StopFilterFactory stopFilterFactory = null;
+	private StopFilterFactory stopFilterFactory = null;
 	/**
 	 * 停止词factory是否已经创建过.
 	 */
-	private static final AtomicBoolean stopFilterFactoryCreated = new AtomicBoolean(false);
+	private final AtomicBoolean stopFilterFactoryCreated = new AtomicBoolean(false);
 
 	/**
 	 * 是否枚举所有的单词.
 	 */
 	private boolean enumerateAll = true;
 
+	/**
+	 * 句子的最大长度,更长的句子被截断成多个窗口.
+	 */
+	private int maxSentenceLength = SentenceTextHandler.DEFAULT_MAX_SENTENCE_LENGTH;
+
+	/**
+	 * 字符的分类,用于分割句子和捕获英文和数字.
+	 */
+	private CharClass charClass = CharClass.getDefault();
+
+	/**
+	 * 捕获的英文和数字的字符分类.
+	 */
+	private final static int enn_char_classes = CharClass.LETTER | CharClass.DIGIT;
+
+	/**
+	 * 是否使用{@link YgFusedTokenizer}代替{@link YgTokenizer},{@link PatternCaptureGroupAndReplaceTokenFilter}和
+	 * {@link YgTokenFilter}组成的链.
+	 */
+	private boolean fused = true;
+
+	/**
+	 * 使用最近一次{@link FileDictionaryHandler#setDirectory(String)}指定的词典目录.
+	 */
+	public YgAnalyzer() {
+		this(new FileDictionaryHandler());
+	}
+
+	/**
+	 * @param dictionaryHandler
+	 *            使用的词典,关闭analyzer时同时关闭
+	 */
+	public YgAnalyzer(FileDictionaryHandler dictionaryHandler) {
+		this.dictionaryHandler = dictionaryHandler;
+	}
+
 	@Override
 	protected TokenStreamComponents createComponents(String fieldName) {
-		YgTokenizer source = new YgTokenizer();
-		source.setEnumerateAll(enumerateAll);
-		PatternCaptureGroupAndReplaceTokenFilter patternCaptureGroupAndReplaceTokenFilter = null;
 		getPatterns();
 		getPatternNames();
-		if (patternArray != null && patternNamesArray != null && patternArray.length == patternNamesArray.length) {
-			patternCaptureGroupAndReplaceTokenFilter = new PatternCaptureGroupAndReplaceTokenFilter(source, false, true,
-					getPatterns(), getPatternNames());
-		}
-		YgTokenFilter ygTokenFilter = null;
-		if (patternCaptureGroupAndReplaceTokenFilter != null) {
-			ygTokenFilter = new YgTokenFilter(patternCaptureGroupAndReplaceTokenFilter);
+		boolean hasPatterns = patternArray != null && patternNamesArray != null
+				&& patternArray.length == patternNamesArray.length;
+		Tokenizer source = null;
+		TokenStream ygTokenFilter = null;
+		if (fused) {// 一个tokenizer完成分词,捕获和拆分
+			YgFusedTokenizer fusedTokenizer = new YgFusedTokenizer(dictionaryHandler, charClass,
+					hasPatterns ? getPatterns() : null, hasPatterns ? getPatternNames() : null, enn_char_classes,
+					Constant.type_enn);
+			fusedTokenizer.setEnumerateAll(enumerateAll);
+			fusedTokenizer.setMaxSentenceLength(maxSentenceLength);
+			source = fusedTokenizer;
+			ygTokenFilter = fusedTokenizer;
 		} else {
-			ygTokenFilter = new YgTokenFilter(source);
+			YgTokenizer tokenizer = new YgTokenizer(dictionaryHandler);
+			tokenizer.setEnumerateAll(enumerateAll);
+			tokenizer.setMaxSentenceLength(maxSentenceLength);
+			tokenizer.setCharClass(charClass);
+			source = tokenizer;
+			if (hasPatterns) {
+				PatternCaptureGroupAndReplaceTokenFilter patternCaptureGroupAndReplaceTokenFilter = new PatternCaptureGroupAndReplaceTokenFilter(
+						tokenizer, false, true, getPatterns(), getPatternNames(), charClass, enn_char_classes,
+						Constant.type_enn);// 英文和数字查表捕获,不使用正则表达式
+				ygTokenFilter = new YgTokenFilter(patternCaptureGroupAndReplaceTokenFilter);
+			} else {
+				ygTokenFilter = new YgTokenFilter(tokenizer);
+			}
 		}
 		TokenStream stopFilter = createStopFilter(ygTokenFilter);// 停止词filter
 		LowerCaseFilter lowerCaseFilter = null;
@@ -106,7 +163,7 @@ public class YgAnalyzer extends Analyzer {
 		if (synonymFileName == null) {
 			return null;
 		}
-		File file = new File(FileDictionaryHandler.directory, synonymFileName);
+		File file = new File(dictionaryHandler.getDirectory(), synonymFileName);
 		if (!file.exists() || file.isDirectory()) {
 			return null;
 		}
@@ -115,7 +172,7 @@ public class YgAnalyzer extends Analyzer {
 		filterArgs.put("synonyms", synonymFileName);
 		filterArgs.put("expand", "true");
 		SynonymFilterFactory factory = new SynonymFilterFactory(filterArgs);
-		factory.inform(new FilesystemResourceLoader(Paths.get(FileDictionaryHandler.directory)));
+		factory.inform(new FilesystemResourceLoader(Paths.get(dictionaryHandler.getDirectory())));
 		return factory;
 	}
 
@@ -156,14 +213,14 @@ public class YgAnalyzer extends Analyzer {
 		if (stopwordFileName == null) {
 			return null;
 		}
-		File file = new File(FileDictionaryHandler.directory, stopwordFileName);
+		File file = new File(dictionaryHandler.getDirectory(), stopwordFileName);
 		if (!file.exists() || file.isDirectory()) {
 			return null;
 		}
 		Map<String, String> filterArgs = new HashMap<String, String>();
 		filterArgs.put("words", stopwordFileName);
 		StopFilterFactory factory = new StopFilterFactory(filterArgs);
-		factory.inform(new FilesystemResourceLoader(Paths.get(FileDictionaryHandler.directory)));
+		factory.inform(new FilesystemResourceLoader(Paths.get(dictionaryHandler.getDirectory())));
 		return factory;
 	}
 
@@ -191,6 +248,19 @@ public class YgAnalyzer extends Analyzer {
 		return null;
 	}
 
+	/**
+	 * @return 使用的词典
+	 */
+	public FileDictionaryHandler getDictionaryHandler() {
+		return dictionaryHandler;
+	}
+
+	@Override
+	public void close() {
+		super.close();
+		dictionaryHandler.close();
+	}
+
 	/**
 	 * @return the enumerateAll
 	 */
@@ -206,10 +276,64 @@ public class YgAnalyzer extends Analyzer {
 		this.enumerateAll = enumerateAll;
 	}
 
+	/**
+	 * @return 句子的最大长度
+	 */
+	public int getMaxSentenceLength() {
+		return maxSentenceLength;
+	}
+
+	/**
+	 * 设置句子的最大长度,见{@link SentenceTextHandler#setMaxSentenceLength(int)}.只对之后创建的tokenizer有效.
+	 * 
+	 * @param maxSentenceLength
+	 *            最大长度,必须大于0
+	 */
+	public void setMaxSentenceLength(int maxSentenceLength) {
+		this.maxSentenceLength = maxSentenceLength;
+	}
+
+	/**
+	 * @return true-如果使用{@link YgFusedTokenizer}
+	 */
+	public boolean isFused() {
+		return fused;
+	}
+
+	/**
+	 * 设置是否使用{@link YgFusedTokenizer},默认使用.两种方式返回的token完全一样,只对之后创建的tokenizer有效.
+	 * 
+	 * @param fused
+	 *            false-使用{@link YgTokenizer},{@link PatternCaptureGroupAndReplaceTokenFilter}和{@link YgTokenFilter}组成的链
+	 */
+	public void setFused(boolean fused) {
+		this.fused = fused;
+	}
+
+	/**
+	 * @return 字符的分类
+	 */
+	public CharClass getCharClass() {
+		return charClass;
+	}
+
+	/**
+	 * 设置字符的分类,比如使用{@link CharClass#withPunctuation(String)}配置的标点符号分割句子.只对之后创建的tokenizer有效.
+	 * 
+	 * @param charClass
+	 *            字符的分类
+	 */
+	public void setCharClass(CharClass charClass) {
+		if (charClass == null) {
+			throw new IllegalArgumentException("字符的分类不能为null");
+		}
+		this.charClass = charClass;
+	}
+
 	/**
 	 * 生成pattern的次数.
 	 */
-	private static AtomicInteger actualGenPatternCount = new AtomicInteger(0);
+	private final AtomicInteger actualGenPatternCount = new AtomicInteger(0);
 
 	/**
 	 * 尝试获取生成正则表达式的机会.
@@ -226,22 +350,16 @@ public class YgAnalyzer extends Analyzer {
 		return false;
 	}
 
-	private static LinkedList<Pattern> patterns = new LinkedList<>();
-	private static Pattern[] patternArray = null;
-	private static LinkedList<String> patternNames = new LinkedList<>();
-	private static String[] patternNamesArray = null;
-
-	static {
-		Pattern pattern1 = Pattern.compile("([a-zA-z\\d]+)");// 英文和数字
-		patterns.addLast(pattern1);
-		patternNames.addLast(Constant.type_enn);
-	}
+	private final LinkedList<Pattern> patterns = new LinkedList<>();
+	private Pattern[] patternArray = null;
+	private final LinkedList<String> patternNames = new LinkedList<>();
+	private String[] patternNamesArray = null;
 
 	private Pattern[] getPatterns() {
-		if (patternArray != null && patternArray.length == 2) {
+		if (patternArray != null && patternArray.length == 1) {
 			return patternArray;
 		}
-		if (FileDictionaryHandler.quantifierLoadComplete.get() == true && !patternNames.contains(Constant.type_dw)) {
+		if (dictionaryHandler.isQuantifierLoadComplete() && !patternNames.contains(Constant.type_dw)) {
 			if (tryGetGenPatternChance()) {
 				Pattern quantifierPattern = Pattern.compile(getQuantifierPatternRegex(), Pattern.CASE_INSENSITIVE);
 				patterns.addFirst(quantifierPattern);
@@ -253,7 +371,7 @@ public class YgAnalyzer extends Analyzer {
 	}
 
 	private String[] getPatternNames() {
-		if (patternNamesArray != null && patternNamesArray.length == 2) {
+		if (patternNamesArray != null && patternNamesArray.length == 1) {
 			return patternNamesArray;
 		}
 		patternNamesArray = new String[patternNames.size()];
@@ -266,8 +384,7 @@ public class YgAnalyzer extends Analyzer {
 	 * @return 数量词正则表达式
 	 */
 	private String getQuantifierPatternRegex() {
-		FileDictionaryHandler handler = new FileDictionaryHandler();
-		List<String> quantifiers = handler.getQuantifiers();
+		List<String> quantifiers = new ArrayList<>(dictionaryHandler.getQuantifiers());// 快照中的量词不可修改
 		Collections.sort(quantifiers, new Comparator<String>() {// 按单位长短排序,长的拍前面
 			@Override
 			public int compare(String o1, String o2) {
@@ -0,0 +1,254 @@
+package org.apache.lucene.analysis;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.CharsRef;
+
+import com.wuda.Constant;
+import com.wuda.analysis.CharClass;
+import com.wuda.analysis.DictBasedTextHandlerFilter;
+import com.wuda.analysis.FileDictionaryHandler;
+import com.wuda.analysis.SentenceTextHandler;
+import com.wuda.analysis.TextHandlerSharedAttribute;
+
+/**
+ * {@link YgTokenizer},{@link PatternCaptureGroupAndReplaceTokenFilter}和{@link YgTokenFilter}合并成的一个tokenizer,
+ * 返回的token和这三个组成的链完全一样.
+ * <p>
+ * 文本分割成句子,根据词典分词之后,单词直接返回;不是单词的文本只复制一次,在其中捕获数量词和英文数字,
+ * 然后剩下的字符逐个返回.不需要在每个过滤器之间保存和恢复属性的状态,也不需要为每个字符创建字符串.
+ *
+ * @author wuda
+ *
+ */
+public final class YgFusedTokenizer extends Tokenizer {
+
+	private final CharTermAttribute charTermAttr = addAttribute(CharTermAttribute.class);
+	private final TypeAttribute typeAttr = addAttribute(TypeAttribute.class);
+
+	/**
+	 * 文本处理器.
+	 */
+	private final DictBasedTextHandlerFilter textHandler;
+	private final SentenceTextHandler bottomHandler;
+	/**
+	 * 文本处理器处理的结果保存在此实例中.
+	 */
+	private final TextHandlerSharedAttribute textHandlerSharedAttribute = new TextHandlerSharedAttribute();
+
+	/**
+	 * 捕获数量词和英文数字,null-不捕获.
+	 */
+	private final CaptureGroups captures;
+
+	/**
+	 * 当前不是单词的文本,捕获的内容被替换成{@link PatternCaptureGroupAndReplaceTokenFilter#replacement}.
+	 */
+	private char[] span = new char[64];
+	private int spanLength = 0;
+	private final CharsRef spanRef = new CharsRef();
+	/**
+	 * 是否还在当前文本中捕获.
+	 */
+	private boolean capturing = false;
+
+	/**
+	 * 需要逐个返回的字符,和它们的类型.
+	 */
+	private char[] chars = new char[64];
+	private int charsLength = 0;
+	private int charsIndex = 0;
+	private String charsType = null;
+
+	/**
+	 * @param dictionaryHandler
+	 *            使用的词典
+	 * @param charClass
+	 *            字符的分类,用于分割句子和捕获连续的字符
+	 * @param patterns
+	 *            捕获的正则表达式,null-不捕获,不是单词的文本直接逐个字符返回
+	 * @param patternNames
+	 *            pattern 的名称,是捕获的token的类型
+	 * @param classMask
+	 *            捕获的连续字符的分类,比如{@link CharClass#LETTER}|{@link CharClass#DIGIT},排在所有的pattern之后
+	 * @param className
+	 *            捕获的连续字符的名称
+	 */
+	public YgFusedTokenizer(FileDictionaryHandler dictionaryHandler, CharClass charClass, Pattern[] patterns,
+			String[] patternNames, int classMask, String className) {
+		super();
+		bottomHandler = new SentenceTextHandler(textHandlerSharedAttribute);
+		bottomHandler.setCharClass(charClass);
+		textHandler = new DictBasedTextHandlerFilter(bottomHandler, textHandlerSharedAttribute);
+		textHandler.setDictionaryHandler(dictionaryHandler);
+		captures = patterns == null ? null
+				: new CaptureGroups(patterns, patternNames, charClass, classMask, className);
+	}
+
+	@Override
+	public boolean incrementToken() throws IOException {
+		while (true) {
+			if (charsIndex < charsLength) {
+				if (nextChar()) {
+					return true;
+				}
+				continue;
+			}
+			if (capturing) {
+				if (captures.next(false, spanLength)) {
+					int start = captures.start();
+					int end = captures.end();
+					String type = captures.hasNames() ? captures.name() : Constant.NOT_A_WORD;
+					captures.advance();
+					boolean emitted = offer(span, start, end - start, type);// 替换之前返回
+					for (int i = start; i < end; i++) {
+						span[i] = PatternCaptureGroupAndReplaceTokenFilter.replacement;
+					}
+					if (emitted) {
+						return true;
+					}
+					continue;
+				}
+				capturing = false;
+				if (offer(span, 0, spanLength, Constant.NOT_A_WORD)) {// 剩下的字符
+					return true;
+				}
+				continue;
+			}
+			if (!textHandler.incrementToken()) {
+				return false;
+			}
+			char[] buffer = textHandlerSharedAttribute.getTokenBuffer();
+			int length = textHandlerSharedAttribute.getTokenLength();
+			String type = textHandlerSharedAttribute.getType();
+			if (captures != null && type != null && type.equals(Constant.NOT_A_WORD)) {// 不是单词,捕获数量词和英文数字
+				if (span.length < length) {
+					span = new char[Math.max(length, span.length * 2)];
+				}
+				System.arraycopy(buffer, 0, span, 0, length);
+				spanLength = length;
+				spanRef.chars = span;
+				spanRef.offset = 0;
+				spanRef.length = length;
+				captures.reset(spanRef);
+				capturing = true;
+				continue;
+			}
+			if (offer(buffer, 0, length, type)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 和{@link YgTokenFilter}一样处理一个token:不是单词的文本逐个字符返回,捕获的内容包含替换字符时不返回,其他的直接返回.
+	 *
+	 * @param buffer
+	 *            字符
+	 * @param offset
+	 *            开始位置
+	 * @param length
+	 *            字符的数量
+	 * @param type
+	 *            token的类型
+	 * @return true-如果已经填充了属性,false-如果还没有,逐个返回的字符在{@link #nextChar()}中返回
+	 */
+	private boolean offer(char[] buffer, int offset, int length, String type) {
+		if (type != null && type.equalsIgnoreCase(Constant.NOT_A_WORD)) {
+			if (chars.length < length) {
+				chars = new char[Math.max(length, chars.length * 2)];
+			}
+			System.arraycopy(buffer, offset, chars, 0, length);
+			charsLength = length;
+			charsIndex = 0;
+			charsType = type;
+			return false;
+		}
+		if (type != null && (type.equalsIgnoreCase(Constant.type_dw) || type.equalsIgnoreCase(Constant.type_enn))) {
+			for (int i = offset; i < offset + length; i++) {
+				if (buffer[i] == PatternCaptureGroupAndReplaceTokenFilter.replacement) {
+					return false;
+				}
+			}
+		}
+		fillAttr(buffer, offset, length, type);
+		return true;
+	}
+
+	/**
+	 * 返回下一个不是替换字符的字符.
+	 *
+	 * @return true-如果已经填充了属性
+	 */
+	private boolean nextChar() {
+		while (charsIndex < charsLength) {
+			int index = charsIndex++;
+			if (chars[index] != PatternCaptureGroupAndReplaceTokenFilter.replacement) {
+				fillAttr(chars, index, 1, charsType);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 填充属性.和{@link YgTokenFilter}一样只设置token和类型,其他属性都是默认值.
+	 */
+	private void fillAttr(char[] buffer, int offset, int length, String type) {
+		clearAttributes();
+		charTermAttr.copyBuffer(buffer, offset, length);
+		typeAttr.setType(type);
+	}
+
+	@Override
+	public void close() throws IOException {
+		super.close();
+		textHandler.close();
+	}
+
+	@Override
+	public void reset() throws IOException {
+		super.reset();
+		bottomHandler.setReader(input);
+		textHandler.reset();
+		capturing = false;
+		spanLength = 0;
+		charsLength = charsIndex = 0;
+		charsType = null;
+	}
+
+	/**
+	 * @param enumerateAll
+	 *            是否枚举所有的单词
+	 */
+	public void setEnumerateAll(boolean enumerateAll) {
+		textHandler.setEnumerateAll(enumerateAll);
+	}
+
+	/**
+	 * @return 是否枚举所有的单词
+	 */
+	public boolean isEnumerateAll() {
+		return textHandler.isEnumerateAll();
+	}
+
+	/**
+	 * 设置句子的最大长度,见{@link SentenceTextHandler#setMaxSentenceLength(int)}.
+	 *
+	 * @param maxSentenceLength
+	 *            最大长度,必须大于0
+	 */
+	public void setMaxSentenceLength(int maxSentenceLength) {
+		bottomHandler.setMaxSentenceLength(maxSentenceLength);
+	}
+
+	/**
+	 * @return 句子的最大长度
+	 */
+	public int getMaxSentenceLength() {
+		return bottomHandler.getMaxSentenceLength();
+	}
+}
@@ -9,7 +9,9 @@ import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
 
+import com.wuda.analysis.CharClass;
 import com.wuda.analysis.DictBasedTextHandlerFilter;
+import com.wuda.analysis.FileDictionaryHandler;
 import com.wuda.analysis.SentenceTextHandler;
 import com.wuda.analysis.TextHandlerSharedAttribute;
 
@@ -50,11 +52,23 @@ public class YgTokenizer extends Tokenizer {
 		tryInitTextHandler();
 	}
 
+	/**
+	 * yg tokenizer 构造实例.
+	 * 
+	 * @param dictionaryHandler
+	 *            使用的词典
+	 */
+	public YgTokenizer(FileDictionaryHandler dictionaryHandler) {
+		this();
+		textHandler.setDictionaryHandler(dictionaryHandler);
+	}
+
 	@Override
 	public boolean incrementToken() throws IOException {
 		if (textHandler.incrementToken()) {// 文本处理器表示有token返回
 			clearAttributes();
-			charTermAttr.append(textHandlerSharedAttribute.getTokenString());
+			charTermAttr.copyBuffer(textHandlerSharedAttribute.getTokenBuffer(), 0,
+					textHandlerSharedAttribute.getTokenLength());
 			offsetAttr.setOffset(textHandlerSharedAttribute.getStartOffset(),
 					textHandlerSharedAttribute.getEndOffset());
 			typeAttr.setType(textHandlerSharedAttribute.getType());
@@ -115,4 +129,38 @@ public class YgTokenizer extends Tokenizer {
 		this.enumerateAll = enumerateAll;
 		textHandler.setEnumerateAll(enumerateAll);
 	}
+
+	/**
+	 * @return 句子的最大长度
+	 */
+	public int getMaxSentenceLength() {
+		return bottomHandler.getMaxSentenceLength();
+	}
+
+	/**
+	 * 设置句子的最大长度,见{@link SentenceTextHandler#setMaxSentenceLength(int)}.
+	 * 
+	 * @param maxSentenceLength
+	 *            最大长度,必须大于0
+	 */
+	public void setMaxSentenceLength(int maxSentenceLength) {
+		bottomHandler.setMaxSentenceLength(maxSentenceLength);
+	}
+
+	/**
+	 * @return 分割句子使用的字符分类
+	 */
+	public CharClass getCharClass() {
+		return bottomHandler.getCharClass();
+	}
+
+	/**
+	 * 设置分割句子使用的字符分类,见{@link SentenceTextHandler#setCharClass(CharClass)}.
+	 * 
+	 * @param charClass
+	 *            字符的分类
+	 */
+	public void setCharClass(CharClass charClass) {
+		bottomHandler.setCharClass(charClass);
+	}
 }
@@ -1,9 +1,19 @@
 package org.elasticsearch;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.lucene.analysis.YgAnalyzer;
 import org.apache.lucene.analysis.YgTokenizer;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.unit.ByteSizeValue;
 
+import com.wuda.analysis.CharClass;
+import com.wuda.analysis.DictEngine;
+import com.wuda.analysis.DictLoadScheduler;
+import com.wuda.analysis.DictionaryState;
 import com.wuda.analysis.FileDictionaryHandler;
 
 /**
@@ -44,6 +54,131 @@ public class YgUtil {
 	 */
 	private final static String yg_is_asyn_load_dict_short_name = "is_asyn_load_dict";
 
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中词典引擎的参数名称.
+	 */
+	private final static String yg_dict_engine_default = "index.analysis.analyzer.default.dict_engine";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中词典引擎的参数名称.
+	 */
+	private final static String yg_dict_engine_yg = "index.analysis.analyzer.yg.dict_engine";
+
+	/**
+	 * 在配置文件中除去分组后词典引擎的参数名称.
+	 */
+	private final static String yg_dict_engine_short_name = "dict_engine";
+
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中加载词典的内存预算的参数名称.
+	 */
+	private final static String yg_dict_memory_budget_default = "index.analysis.analyzer.default.dict_memory_budget";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中加载词典的内存预算的参数名称.
+	 */
+	private final static String yg_dict_memory_budget_yg = "index.analysis.analyzer.yg.dict_memory_budget";
+
+	/**
+	 * 在配置文件中除去分组后加载词典的内存预算的参数名称.
+	 */
+	private final static String yg_dict_memory_budget_short_name = "dict_memory_budget";
+
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中加载词典的线程数量的参数名称.
+	 */
+	private final static String yg_dict_load_threads_default = "index.analysis.analyzer.default.dict_load_threads";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中加载词典的线程数量的参数名称.
+	 */
+	private final static String yg_dict_load_threads_yg = "index.analysis.analyzer.yg.dict_load_threads";
+
+	/**
+	 * 在配置文件中除去分组后加载词典的线程数量的参数名称.
+	 */
+	private final static String yg_dict_load_threads_short_name = "dict_load_threads";
+
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中最先加载的词典文件的参数名称.
+	 */
+	private final static String yg_dict_load_priority_default = "index.analysis.analyzer.default.dict_load_priority";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中最先加载的词典文件的参数名称.
+	 */
+	private final static String yg_dict_load_priority_yg = "index.analysis.analyzer.yg.dict_load_priority";
+
+	/**
+	 * 在配置文件中除去分组后最先加载的词典文件的参数名称.
+	 */
+	private final static String yg_dict_load_priority_short_name = "dict_load_priority";
+
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中加载词典线程的CPU比例的参数名称.
+	 */
+	private final static String yg_dict_load_cpu_ratio_default = "index.analysis.analyzer.default.dict_load_cpu_ratio";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中加载词典线程的CPU比例的参数名称.
+	 */
+	private final static String yg_dict_load_cpu_ratio_yg = "index.analysis.analyzer.yg.dict_load_cpu_ratio";
+
+	/**
+	 * 在配置文件中除去分组后加载词典线程的CPU比例的参数名称.
+	 */
+	private final static String yg_dict_load_cpu_ratio_short_name = "dict_load_cpu_ratio";
+
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中等待词典达到的状态的参数名称.
+	 */
+	private final static String yg_dict_wait_for_default = "index.analysis.analyzer.default.dict_wait_for";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中等待词典达到的状态的参数名称.
+	 */
+	private final static String yg_dict_wait_for_yg = "index.analysis.analyzer.yg.dict_wait_for";
+
+	/**
+	 * 在配置文件中除去分组后等待词典达到的状态的参数名称.
+	 */
+	private final static String yg_dict_wait_for_short_name = "dict_wait_for";
+
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中等待词典的最长时间的参数名称.
+	 */
+	private final static String yg_dict_wait_timeout_default = "index.analysis.analyzer.default.dict_wait_timeout";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中等待词典的最长时间的参数名称.
+	 */
+	private final static String yg_dict_wait_timeout_yg = "index.analysis.analyzer.yg.dict_wait_timeout";
+
+	/**
+	 * 在配置文件中除去分组后等待词典的最长时间的参数名称.
+	 */
+	private final static String yg_dict_wait_timeout_short_name = "dict_wait_timeout";
+
+	/**
+	 * 如果把此分词组件设置成[defualt]时,在配置文件中分割句子的标点符号的参数名称.
+	 */
+	private final static String yg_sentence_punctuation_default = "index.analysis.analyzer.default.sentence_punctuation";
+
+	/**
+	 * 如果把此分词组件设置成[yg]时,在配置文件中分割句子的标点符号的参数名称.
+	 */
+	private final static String yg_sentence_punctuation_yg = "index.analysis.analyzer.yg.sentence_punctuation";
+
+	/**
+	 * 在配置文件中除去分组后分割句子的标点符号的参数名称.
+	 */
+	private final static String yg_sentence_punctuation_short_name = "sentence_punctuation";
+
+	/**
+	 * 默认等待词典的最长时间,和elasticsearch发布集群状态的默认超时时间一样,见{@link #prepareDict(FileDictionaryHandler, Settings)}.
+	 */
+	private final static TimeValue default_dict_wait_timeout = TimeValue.timeValueSeconds(30);
+
 	/**
 	 * 获取YgAnalyzer实例.
 	 * 
@@ -52,29 +187,106 @@ public class YgUtil {
 	 * @return YgAnalyzer实例
 	 */
 	public static YgAnalyzer getYgAnalyzer(Settings settings) {
-		String dictDir = getDictDir(settings);// 获取词典目录
-		YgAnalyzer analyzer = new YgAnalyzer();
+		FileDictionaryHandler handler = getDictionaryHandler(settings);
+		YgAnalyzer analyzer = new YgAnalyzer(handler);
+		try {
+			analyzer.setCharClass(getCharClass(settings));
+			prepareDict(handler, settings);
+		} catch (RuntimeException e) {
+			analyzer.close();// 创建索引失败,释放词典目录
+			throw e;
+		}
+		return analyzer;
+	}
+
+	/**
+	 * 按配置提前加载词典,并等待词典达到【dict_wait_for】配置的状态.analyzer和tokenizer在创建时都会调用,
+	 * 因此自定义的analyzer使用【yg_tokenizer】时也一样提前加载和等待.
+	 * <p>
+	 * 等待发生在创建分词组件的线程中:索引的分词组件在节点应用集群状态,创建索引的时候创建,等待期间这个节点不能处理之后的集群状态;
+	 * 节点级别的【yg】和【yg_tokenizer】在节点启动时创建,等待期间节点不会启动完成.因此最长只等待【dict_wait_timeout】,
+	 * 默认30秒,需要更长时间加载的词典应该配置更长的超时时间,或者使用{@link com.wuda.analysis.DictionaryCompiler}离线编译.
+	 * 
+	 * @param handler
+	 *            词典,超时的时候不会关闭,由调用者关闭
+	 * @param settings
+	 *            配置信息
+	 */
+	public static void prepareDict(FileDictionaryHandler handler, Settings settings) {
 		boolean isAsynLoadDict = isAsynLoadDict(settings);// 是否异步加载词典
-		if (isAsynLoadDict) {
-			FileDictionaryHandler handler = new FileDictionaryHandler();
-			handler.setDirectory(dictDir);
+		DictionaryState waitFor = getDictWaitFor(settings);
+		if (isAsynLoadDict || waitFor != null) {
 			handler.loadAll();// 提前加载词典,es启动时,此方法就会执行
+			if (waitFor != null) {
+				awaitDict(handler, waitFor, getDictWaitTimeout(settings));
+			}
 		}
-		return analyzer;
 	}
 
 	/**
 	 * 获取YgTokenizer实例.
 	 * 
-	 * @param settings
-	 *            从elasticsearch配置文件中获取的配置信息
+	 * @param handler
+	 *            使用的词典,见{@link #getDictionaryHandler(Settings)}
+	 * @param charClass
+	 *            字符的分类,见{@link #getCharClass(Settings)}
 	 * @return YgTokenizer实例
 	 */
-	public static YgTokenizer getYgTokenizer(Settings settings) {
-		YgTokenizer tokenizer = new YgTokenizer();
+	public static YgTokenizer getYgTokenizer(FileDictionaryHandler handler, CharClass charClass) {
+		YgTokenizer tokenizer = new YgTokenizer(handler);
+		tokenizer.setCharClass(charClass);
 		return tokenizer;
 	}
 
+	/**
+	 * 获取字符的分类.配置了【sentence_punctuation】时,用其中的每个字符代替默认的标点符号分割句子,
+	 * 创建分词组件时编译成表,这个索引的所有tokenizer共享.
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @return 字符的分类,没有配置时使用默认的标点符号
+	 */
+	public static CharClass getCharClass(Settings settings) {
+		String punctuation = settings.get(yg_sentence_punctuation_default);
+		if (punctuation == null) {
+			punctuation = settings.get(yg_sentence_punctuation_yg);
+		}
+		if (punctuation == null) {
+			punctuation = settings.get(yg_sentence_punctuation_short_name);
+		}
+		if (punctuation == null || punctuation.isEmpty()) {
+			return CharClass.getDefault();
+		}
+		return CharClass.withPunctuation(punctuation);
+	}
+
+	/**
+	 * 获取配置的词典目录的词典.每个索引的分词组件使用自己配置的目录,同一个目录只加载一次,
+	 * 不同目录中完全相同的词典文件共享同一个词典.引擎,内存预算等只在这个目录第一次加载之前设置有效.
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @return 词典,没有配置词典目录时使用最近一次指定的目录
+	 */
+	public static FileDictionaryHandler getDictionaryHandler(Settings settings) {
+		String dictDir = getDictDir(settings);// 获取词典目录
+		FileDictionaryHandler handler = dictDir == null ? new FileDictionaryHandler()
+				: new FileDictionaryHandler(dictDir);
+		if (dictDir == null) {
+			return handler;
+		}
+		DictEngine engine = getDictEngine(settings);
+		if (engine != null) {
+			handler.setEngine(engine);
+		}
+		long memoryBudget = getDictMemoryBudget(settings);
+		if (memoryBudget > 0) {
+			handler.setMemoryBudget(memoryBudget);
+		}
+		handler.setLoadScheduler(getDictLoadScheduler(settings));
+		return handler;
+	}
+
 	/**
 	 * 是否异步加载词典.
 	 * 
@@ -99,6 +311,171 @@ public class YgUtil {
 		return true;// 默认true
 	}
 
+	/**
+	 * 获取词典引擎.
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @return 词典引擎,null-如果没有配置
+	 */
+	private static DictEngine getDictEngine(Settings settings) {
+		String engine = settings.get(yg_dict_engine_default);
+		if (engine == null) {
+			engine = settings.get(yg_dict_engine_yg);
+		}
+		if (engine == null) {
+			engine = settings.get(yg_dict_engine_short_name);
+		}
+		if (engine == null || engine.isEmpty()) {
+			return null;
+		}
+		DictEngine dictEngine = DictEngine.getByEngineKey(engine);
+		if (dictEngine == null) {
+			throw new IllegalArgumentException("不支持的dict_engine:" + engine);
+		}
+		return dictEngine;
+	}
+
+	/**
+	 * 获取加载词典的内存预算,比如【512mb】.
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @return 内存预算的字节数,0-如果没有配置
+	 */
+	private static long getDictMemoryBudget(Settings settings) {
+		String settingName = yg_dict_memory_budget_default;
+		String budget = settings.get(settingName);
+		if (budget == null) {
+			settingName = yg_dict_memory_budget_yg;
+			budget = settings.get(settingName);
+		}
+		if (budget == null) {
+			settingName = yg_dict_memory_budget_short_name;
+			budget = settings.get(settingName);
+		}
+		if (budget == null || budget.isEmpty()) {
+			return 0;
+		}
+		return ByteSizeValue.parseBytesSizeValue(budget.trim(), settingName).bytes();
+	}
+
+	/**
+	 * 获取加载词典文件的安排.
+	 * <ul>
+	 * <li>【dict_load_threads】:加载的线程数量,默认是CPU核数的一半</li>
+	 * <li>【dict_load_priority】:最先加载的词典文件名称,用“,”隔开,其他文件按大小从小到大加载</li>
+	 * <li>【dict_load_cpu_ratio】:每个加载线程最多使用的CPU比例,比如【0.5】,默认不限制</li>
+	 * </ul>
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @return 加载词典文件的安排
+	 */
+	private static DictLoadScheduler getDictLoadScheduler(Settings settings) {
+		String threads = getSetting(settings, yg_dict_load_threads_default, yg_dict_load_threads_yg,
+				yg_dict_load_threads_short_name);
+		String priority = getSetting(settings, yg_dict_load_priority_default, yg_dict_load_priority_yg,
+				yg_dict_load_priority_short_name);
+		String cpuRatio = getSetting(settings, yg_dict_load_cpu_ratio_default, yg_dict_load_cpu_ratio_yg,
+				yg_dict_load_cpu_ratio_short_name);
+		List<String> priorityFileNames = new ArrayList<>();
+		if (priority != null) {
+			for (String fileName : priority.split(",")) {
+				if (!fileName.trim().isEmpty()) {
+					priorityFileNames.add(fileName.trim());
+				}
+			}
+		}
+		try {
+			return new DictLoadScheduler(threads == null ? DictLoadScheduler.DEFAULT_THREADS
+					: Integer.parseInt(threads), priorityFileNames,
+					cpuRatio == null ? 1.0 : Double.parseDouble(cpuRatio));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("dict_load_threads或dict_load_cpu_ratio不是数字", e);
+		}
+	}
+
+	/**
+	 * 等待词典达到指定的状态.在创建索引的分词组件时等待,因此分片恢复和写入都要等到词典达到这个状态之后,
+	 * 不会用不完整的词典给文档分词.超时的时候抛出异常,创建索引失败,elasticsearch之后会重新分配分片,不会使用不完整的词典.
+	 * 
+	 * @param handler
+	 *            词典处理类,已经开始加载
+	 * @param waitFor
+	 *            需要达到的状态
+	 * @param timeout
+	 *            最长的等待时间
+	 */
+	private static void awaitDict(FileDictionaryHandler handler, DictionaryState waitFor, TimeValue timeout) {
+		try {
+			if (!handler.awaitState(waitFor, timeout.millis(), TimeUnit.MILLISECONDS)) {
+				throw new ElasticsearchTimeoutException("等待词典超时,超过了" + timeout + ",需要的状态是" + waitFor.getStateKey()
+						+ ",当前的状态是" + handler.getState().getStateKey());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ElasticsearchTimeoutException("等待词典时被中断,需要的状态是" + waitFor.getStateKey(), e);
+		}
+	}
+
+	/**
+	 * 获取等待词典达到的状态,比如【ready】.
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @return 状态,null-如果没有配置,不等待
+	 */
+	private static DictionaryState getDictWaitFor(Settings settings) {
+		String waitFor = getSetting(settings, yg_dict_wait_for_default, yg_dict_wait_for_yg,
+				yg_dict_wait_for_short_name);
+		if (waitFor == null) {
+			return null;
+		}
+		DictionaryState state = DictionaryState.getByStateKey(waitFor);
+		if (state == null) {
+			throw new IllegalArgumentException("不支持的dict_wait_for:" + waitFor);
+		}
+		return state;
+	}
+
+	/**
+	 * 获取等待词典的最长时间,比如【10m】.
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @return 最长时间,默认30秒
+	 */
+	private static TimeValue getDictWaitTimeout(Settings settings) {
+		String timeout = getSetting(settings, yg_dict_wait_timeout_default, yg_dict_wait_timeout_yg,
+				yg_dict_wait_timeout_short_name);
+		return TimeValue.parseTimeValue(timeout, default_dict_wait_timeout, yg_dict_wait_timeout_short_name);
+	}
+
+	/**
+	 * 依次按三种名称获取配置.
+	 * 
+	 * @param settings
+	 *            配置信息
+	 * @param defaultName
+	 *            设置成[default]时的名称
+	 * @param ygName
+	 *            设置成[yg]时的名称
+	 * @param shortName
+	 *            除去分组后的名称
+	 * @return 去掉空白字符后的值,null-如果没有配置
+	 */
+	private static String getSetting(Settings settings, String defaultName, String ygName, String shortName) {
+		String value = settings.get(defaultName);
+		if (value == null) {
+			value = settings.get(ygName);
+		}
+		if (value == null) {
+			value = settings.get(shortName);
+		}
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
 	/**
 	 * 获取词典目录
 	 * 
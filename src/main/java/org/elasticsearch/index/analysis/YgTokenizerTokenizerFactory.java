@@ -26,20 +26,52 @@ import org.elasticsearch.common.inject.assistedinject.Assisted;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.settings.IndexSettingsService;
+import org.elasticsearch.indices.IndicesLifecycle;
+
+import com.wuda.analysis.CharClass;
+import com.wuda.analysis.FileDictionaryHandler;
 
 public class YgTokenizerTokenizerFactory extends AbstractTokenizerFactory {
 	
-	private Settings settings=null;
+	/**
+	 * 配置的词典目录的词典,这个factory创建的所有tokenizer共享,索引关闭或者删除时释放.
+	 */
+	private final FileDictionaryHandler dictionaryHandler;
+
+	/**
+	 * 配置的标点符号编译成的字符分类表,这个factory创建的所有tokenizer共享.
+	 */
+	private final CharClass charClass;
 
 	@Inject
-	public YgTokenizerTokenizerFactory(Index index, IndexSettingsService indexSettingsService, @Assisted String name,
-			@Assisted Settings settings) {
+	public YgTokenizerTokenizerFactory(Index index, IndexSettingsService indexSettingsService,
+			final IndicesLifecycle indicesLifecycle, @Assisted String name, @Assisted Settings settings) {
 		super(index, indexSettingsService.getSettings(), name, settings);
-		this.settings=settings;
+		this.charClass = YgUtil.getCharClass(settings);
+		this.dictionaryHandler = YgUtil.getDictionaryHandler(settings);
+		try {
+			YgUtil.prepareDict(dictionaryHandler, settings);// 和analyzer一样提前加载和等待词典
+		} catch (RuntimeException e) {
+			dictionaryHandler.close();// 创建索引失败,释放词典目录
+			throw e;
+		}
+		/**
+		 * tokenizer factory没有close方法,elasticsearch关闭索引的分词组件时只关闭analyzer,因此在索引关闭(包括删除)之后释放词典目录.
+		 */
+		indicesLifecycle.addListener(new IndicesLifecycle.Listener() {
+
+			@Override
+			public void afterIndexClosed(Index closedIndex, Settings indexSettings) {
+				if (closedIndex.equals(index())) {
+					indicesLifecycle.removeListener(this);
+					dictionaryHandler.close();
+				}
+			}
+		});
 	}
 
 	@Override
 	public Tokenizer create() {
-		return YgUtil.getYgTokenizer(settings);
+		return YgUtil.getYgTokenizer(dictionaryHandler, charClass);
 	}
 }
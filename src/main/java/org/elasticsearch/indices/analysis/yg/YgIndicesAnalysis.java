@@ -27,6 +27,9 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.analysis.*;
 import org.elasticsearch.indices.analysis.IndicesAnalysisService;
 
+import com.wuda.analysis.CharClass;
+import com.wuda.analysis.FileDictionaryHandler;
+
 /**
  * Registers indices level analysis components so, if not explicitly configured,
  * will be shared among all indices.
@@ -42,6 +45,9 @@ public class YgIndicesAnalysis extends AbstractComponent {
 				new PreBuiltAnalyzerProviderFactory("yg", AnalyzerScope.INDICES, YgUtil.getYgAnalyzer(settings)));
 
 		// Register yg_tokenizer tokenizer
+		final FileDictionaryHandler dictionaryHandler = YgUtil.getDictionaryHandler(settings);
+		final CharClass charClass = YgUtil.getCharClass(settings);
+		YgUtil.prepareDict(dictionaryHandler, settings);
 		indicesAnalysisService.tokenizerFactories().put("yg_tokenizer",
 				new PreBuiltTokenizerFactoryFactory(new TokenizerFactory() {
 					@Override
@@ -51,7 +57,7 @@ public class YgIndicesAnalysis extends AbstractComponent {
 
 					@Override
 					public Tokenizer create() {
-						return YgUtil.getYgTokenizer(settings);
+						return YgUtil.getYgTokenizer(dictionaryHandler, charClass);
 					}
 				}));
 	}
@@ -0,0 +1,130 @@
+package com.wuda;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.wuda.analysis.DictEngine;
+import com.wuda.analysis.DoubleArrayTrie;
+import com.wuda.analysis.FstTrie;
+import com.wuda.analysis.HashTrie;
+import com.wuda.analysis.MutableTrie;
+import com.wuda.analysis.TreeTrie;
+import com.wuda.analysis.Trie;
+import com.wuda.analysis.YgSegmenter;
+
+/**
+ * 比较不同词典引擎的构建时间,内存占用和分词速度.
+ */
+public class DictEngineBenchmark {
+
+	private static String dictDir = "e:/dict"; // 词典所在的目录,不存在时随机生成单词
+
+	public static void main(String[] args) throws IOException {
+		List<String[]> words = loadWords();
+		List<String> sentences = randomSentences(words, 20000);
+		System.out.println("单词数量:" + words.size() + ",句子数量:" + sentences.size());
+		for (DictEngine engine : new DictEngine[] { DictEngine.TREE, DictEngine.HASH, DictEngine.DOUBLE_ARRAY,
+				DictEngine.FST }) {
+			long usedBefore = usedMemory();
+			long startTime = System.currentTimeMillis();
+			MutableTrie builder = engine == DictEngine.TREE ? new TreeTrie() : new HashTrie(words.size());
+			for (String[] word : words) {
+				builder.add(word[0], word[1]);
+			}
+			Trie trie = builder;
+			if (engine == DictEngine.DOUBLE_ARRAY) {
+				trie = DoubleArrayTrie.build(builder);
+			} else if (engine == DictEngine.FST) {
+				trie = FstTrie.build(builder);
+			}
+			builder = null;
+			long buildTime = System.currentTimeMillis() - startTime;
+			long memory = usedMemory() - usedBefore;
+
+			YgSegmenter segmenter = new YgSegmenter();
+			segmenter.setDictionary(trie);
+			long tokenCount = 0;
+			for (String sentence : sentences) { // 预热
+				tokenCount += segmenter.getTokens(sentence).size();
+			}
+			startTime = System.currentTimeMillis();
+			for (int i = 0; i < 5; i++) {
+				for (String sentence : sentences) {
+					tokenCount += segmenter.getTokens(sentence).size();
+				}
+			}
+			long segmentTime = System.currentTimeMillis() - startTime;
+			System.out.println(engine.getEngineKey() + "\t构建:" + buildTime + "ms\t内存:" + (memory >> 20) + "M\t分词:"
+					+ segmentTime + "ms\ttoken:" + tokenCount + "\t单词:" + trie.size());
+			trie = null;
+			segmenter = null;
+		}
+	}
+
+	/**
+	 * 加载词典目录中的单词,单词与词性之间用水平制表符分割.
+	 */
+	private static List<String[]> loadWords() throws IOException {
+		List<String[]> words = new ArrayList<>();
+		File[] files = new File(dictDir).listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.isFile() || file.getName().startsWith(Constant.compiled_dict_file_name)) {
+					continue;
+				}
+				for (String line : FileUtils.readLines(file, Constant.CHARSET_UTF8)) {
+					line = line.trim();
+					if (!line.isEmpty()) {
+						String[] elements = line.split("\t");
+						words.add(new String[] { elements[0].trim(), elements.length > 1 ? elements[1].trim() : null });
+					}
+				}
+			}
+		}
+		if (words.isEmpty()) {
+			Random random = new Random(1);
+			for (int i = 0; i < 500000; i++) {
+				words.add(new String[] { randomChinese(random, 2 + random.nextInt(4)), "n" + random.nextInt(8) });
+			}
+		}
+		return words;
+	}
+
+	private static List<String> randomSentences(List<String[]> words, int count) {
+		Random random = new Random(2);
+		List<String> sentences = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			StringBuilder sentence = new StringBuilder();
+			while (sentence.length() < 30) {
+				if (random.nextBoolean()) {
+					sentence.append(words.get(random.nextInt(words.size()))[0]);
+				} else {
+					sentence.append(randomChinese(random, 1 + random.nextInt(3)));
+				}
+			}
+			sentences.add(sentence.toString());
+		}
+		return sentences;
+	}
+
+	private static String randomChinese(Random random, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) (0x4e00 + (int) Math.abs(random.nextGaussian() * 800));
+		}
+		return new String(chars);
+	}
+
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
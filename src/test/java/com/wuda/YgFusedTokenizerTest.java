@@ -0,0 +1,146 @@
+package com.wuda;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.YgAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import com.wuda.analysis.CharClass;
+import com.wuda.analysis.FileDictionaryHandler;
+
+/**
+ * 比较{@link org.apache.lucene.analysis.YgFusedTokenizer}和YgTokenizer,PatternCaptureGroupAndReplaceTokenFilter,
+ * YgTokenFilter组成的链,两者返回的token(内容,位置,类型,位置增量和长度,以及end()之后的状态)必须完全一样.
+ * 修改其中任何一个之后都应该运行一次.
+ */
+public class YgFusedTokenizerTest {
+
+	private static String dictDir = "e:/dict"; // 词典所在的目录,不存在时随机生成词典
+
+	/**
+	 * 随机文本使用的字符,包括汉字,英文数字,全角字符,标点符号和空白字符.
+	 */
+	private static final String alphabet = "中华人民共和国家世界的了是在有大小上下手机壳苹果华为abcxX013ml个kg.，,。!  \t　Ａ０[]_^`'|c";
+
+	public static void main(String[] args) throws IOException {
+		File dir = new File(dictDir);
+		boolean generated = !dir.isDirectory();
+		if (generated) {
+			dir = randomDict();
+		}
+		FileDictionaryHandler handler = new FileDictionaryHandler(dir.getPath());
+		handler.setIsAsynLoadDict(false);
+		handler.loadAll();
+		try {
+			long tokens = 0;
+			for (int mode = 0; mode < 4; mode++) {
+				YgAnalyzer chain = new YgAnalyzer(handler);
+				YgAnalyzer fused = new YgAnalyzer(handler);
+				chain.setFused(false);
+				configure(chain, mode);
+				configure(fused, mode);
+				Random random = new Random(mode);
+				for (int i = 0; i < 20000; i++) {
+					String text = randomText(random, i % 500 == 0 ? 5000 : 120);
+					List<String> expected = tokens(chain, text);
+					List<String> actual = tokens(fused, text);
+					if (!expected.equals(actual)) {
+						throw new IllegalStateException("模式" + mode + "的结果不同,文本:[" + text + "]\n链:" + expected
+								+ "\n合并:" + actual);
+					}
+					tokens += expected.size();
+				}
+			}
+			System.out.println("结果完全相同,token数量:" + tokens);
+		} finally {
+			handler.close();// 两个analyzer共享这个词典,不需要分别关闭
+			if (generated) {
+				FileUtils.deleteQuietly(dir);
+			}
+		}
+	}
+
+	/**
+	 * 0-默认设置,1-不枚举所有的单词,2-较短的句子,3-自定义的标点符号.
+	 */
+	private static void configure(YgAnalyzer analyzer, int mode) {
+		if (mode == 1) {
+			analyzer.setEnumerateAll(false);
+		} else if (mode == 2) {
+			analyzer.setMaxSentenceLength(20);
+		} else if (mode == 3) {
+			analyzer.setCharClass(CharClass.withPunctuation("。|"));
+			analyzer.setMaxSentenceLength(50);
+		}
+	}
+
+	/**
+	 * 分词,每个token的所有属性拼成一个字符串,最后一个元素是end()之后的状态.
+	 */
+	private static List<String> tokens(YgAnalyzer analyzer, String text) throws IOException {
+		List<String> tokens = new ArrayList<>();
+		try (TokenStream stream = analyzer.tokenStream("content", text)) {
+			CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+			OffsetAttribute offset = stream.addAttribute(OffsetAttribute.class);
+			TypeAttribute type = stream.addAttribute(TypeAttribute.class);
+			PositionIncrementAttribute increment = stream.addAttribute(PositionIncrementAttribute.class);
+			PositionLengthAttribute length = stream.addAttribute(PositionLengthAttribute.class);
+			stream.reset();
+			while (stream.incrementToken()) {
+				tokens.add(term + "|" + offset.startOffset() + "|" + offset.endOffset() + "|" + type.type() + "|"
+						+ increment.getPositionIncrement() + "|" + length.getPositionLength());
+			}
+			stream.end();
+			tokens.add("end|" + offset.startOffset() + "|" + offset.endOffset() + "|"
+					+ increment.getPositionIncrement());
+		}
+		return tokens;
+	}
+
+	private static String randomText(Random random, int maxLength) {
+		int length = random.nextInt(maxLength);
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * 随机生成词典:用文本中的汉字组成的单词和词性,加上类型是notw,dw和enn的单词,以及量词.
+	 */
+	private static File randomDict() throws IOException {
+		File dir = Files.createTempDirectory("yg-fused").toFile();
+		String chinese = "中华人民共和国家世界的了是在有大小上下手机壳苹果";
+		String[] types = { null, "n", "ns", "npb" };
+		Random random = new Random(25);
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 30000; i++) {
+			StringBuilder word = new StringBuilder();
+			int length = 2 + random.nextInt(4);
+			for (int j = 0; j < length; j++) {
+				word.append(chinese.charAt(random.nextInt(chinese.length())));
+			}
+			String type = types[random.nextInt(types.length)];
+			lines.add(type == null ? word.toString() : word + "\t" + type);
+		}
+		FileUtils.writeLines(new File(dir, "base.dict"), Constant.CHARSET_UTF8, lines);
+		FileUtils.writeLines(new File(dir, "typed.dict"), Constant.CHARSET_UTF8, Arrays.asList("华为手机\tNOTW",
+				"苹果x\tnotw", "3ml\tdw", "abc\tDW", "上下\tnotw", "x1\tenn", "ab3\tn", "机壳\tenn"));
+		FileUtils.writeLines(new File(dir, Constant.quantifier_file_name), Constant.CHARSET_UTF8,
+				Arrays.asList("ml", "mm", "kg", "c", "个"));
+		return dir;
+	}
+}